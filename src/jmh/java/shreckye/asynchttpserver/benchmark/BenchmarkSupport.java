@@ -0,0 +1,249 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver.benchmark;
+
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.util.CharsetUtil;
+import shreckye.asynchttpserver.AsyncHttpServer;
+import shreckye.asynchttpserver.ConnectionContext;
+import shreckye.asynchttpserver.ServiceConnectionHandler;
+import shreckye.asynchttpserver.codec.DefaultOutboundFullResponse;
+import shreckye.asynchttpserver.codec.RequestWithoutBody;
+import shreckye.asynchttpserver.service.Service;
+
+import java.io.*;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The servers and clients shared by the benchmarks, which serve real requests over loopback connections.
+ *
+ * @author Yongshun Ye
+ */
+public final class BenchmarkSupport {
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Returns a port that's free at the moment.
+     *
+     * @return the port
+     * @throws IOException when no port can be found
+     */
+    public static int freePort() throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            return serverSocket.getLocalPort();
+        }
+    }
+
+    /**
+     * Waits until a port accepts connections, as {@link AsyncHttpServer.Builder#buildAndStart()} binds asynchronously.
+     *
+     * @param port the port
+     * @throws IOException when the port doesn't accept connections in 10 seconds
+     */
+    public static void awaitListening(int port) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (true)
+            try {
+                new Socket("127.0.0.1", port).close();
+                return;
+            } catch (ConnectException e) {
+                if (System.nanoTime() - deadline > 0)
+                    throw e;
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+            }
+    }
+
+    /**
+     * Creates a builder of a server on a port with a {@link QuietConnectionHandler}, so that nothing is logged for each request.
+     *
+     * @param port the port
+     * @return the builder
+     */
+    public static AsyncHttpServer.Builder newServerBuilder(int port) {
+        return new AsyncHttpServer.Builder().port(port).hanlderFactory(QuietConnectionHandler::new);
+    }
+
+    /**
+     * A connection handler that only responds to service throwables.
+     */
+    public static class QuietConnectionHandler extends ServiceConnectionHandler {
+        @Override
+        public void onConnected(ConnectionContext connectionContext) {
+        }
+
+        @Override
+        public void onDisconnected(ConnectionContext connectionContext) {
+        }
+
+        @Override
+        public void onServiceCreated(ConnectionContext connectionContext, RequestWithoutBody requestWithoutBody, Service service) {
+        }
+
+        @Override
+        public void onConnectionThrowable(ConnectionContext connectionContext, Throwable t) {
+        }
+
+        @Override
+        public void onServiceThrowable(ConnectionContext connectionContext, Service service, Throwable t) {
+            connectionContext.forceSendFullResponse(new DefaultOutboundFullResponse(HttpResponseStatus.INTERNAL_SERVER_ERROR));
+        }
+    }
+
+    /**
+     * A persistent HTTP/1.1 client connection that sends the same request again and again
+     * and reads each response through its body.
+     */
+    public static class HttpConnection implements Closeable {
+        static final byte[] CONTENT_LENGTH = "content-length:".getBytes(CharsetUtil.US_ASCII);
+
+        final Socket socket;
+        final InputStream in;
+        final OutputStream out;
+        final byte[] request;
+        final byte[] line = new byte[8192];
+
+        /**
+         * Opens a connection to a port on the loopback address.
+         *
+         * @param port    the port
+         * @param method  the request method
+         * @param uri     the URI
+         * @param body    the request body, or {@code null} for none
+         * @throws IOException when the connection can't be opened
+         */
+        public HttpConnection(int port, String method, String uri, byte[] body) throws IOException {
+            this(port, request(method, uri, body));
+        }
+
+        /**
+         * Opens a connection to a port on the loopback address that sends a request as it is.
+         *
+         * @param port    the port
+         * @param request the whole encoded request
+         * @throws IOException when the connection can't be opened
+         */
+        public HttpConnection(int port, byte[] request) throws IOException {
+            socket = new Socket("127.0.0.1", port);
+            socket.setTcpNoDelay(true);
+            in = new BufferedInputStream(socket.getInputStream());
+            out = new BufferedOutputStream(socket.getOutputStream());
+            this.request = request;
+        }
+
+        static byte[] request(String method, String uri, byte[] body) throws IOException {
+            ByteArrayOutputStream request = new ByteArrayOutputStream();
+            String head = method + ' ' + uri + " HTTP/1.1\r\nhost: 127.0.0.1\r\n" +
+                    (body == null ? "" : "content-type: application/octet-stream\r\ncontent-length: " + body.length + "\r\n") + "\r\n";
+            request.write(head.getBytes(CharsetUtil.US_ASCII));
+            if (body != null)
+                request.write(body);
+            return request.toByteArray();
+        }
+
+        /**
+         * Encodes a request with a body in chunked transfer coding.
+         *
+         * @param method the request method
+         * @param uri    the URI
+         * @param chunks the chunks of the body
+         * @return the encoded request
+         * @throws IOException never
+         */
+        public static byte[] chunkedRequest(String method, String uri, byte[]... chunks) throws IOException {
+            ByteArrayOutputStream request = new ByteArrayOutputStream();
+            request.write((method + ' ' + uri + " HTTP/1.1\r\nhost: 127.0.0.1\r\n" +
+                    "content-type: application/octet-stream\r\ntransfer-encoding: chunked\r\n\r\n").getBytes(CharsetUtil.US_ASCII));
+            for (byte[] chunk : chunks) {
+                request.write((Integer.toHexString(chunk.length) + "\r\n").getBytes(CharsetUtil.US_ASCII));
+                request.write(chunk);
+                request.write("\r\n".getBytes(CharsetUtil.US_ASCII));
+            }
+            request.write("0\r\n\r\n".getBytes(CharsetUtil.US_ASCII));
+            return request.toByteArray();
+        }
+
+        /**
+         * Sends the request and reads the response without allocating,
+         * so that the allocations measured per request are the server's.
+         *
+         * @return the response status code
+         * @throws IOException when the connection fails or the response is invalid
+         */
+        public int send() throws IOException {
+            out.write(request);
+            out.flush();
+
+            int length = readLine();
+            if (length < 12)
+                throw new IOException("invalid status line");
+            int status = (line[9] - '0') * 100 + (line[10] - '0') * 10 + (line[11] - '0');
+            long contentLength = 0;
+            while ((length = readLine()) != 0)
+                if (length > CONTENT_LENGTH.length && startsWithIgnoreCase(CONTENT_LENGTH)) {
+                    contentLength = 0;
+                    for (int i = CONTENT_LENGTH.length; i < length; i++)
+                        if (line[i] >= '0' && line[i] <= '9')
+                            contentLength = contentLength * 10 + line[i] - '0';
+                }
+            while (contentLength > 0) {
+                long skipped = in.skip(contentLength);
+                if (skipped <= 0) {
+                    if (in.read() == -1)
+                        throw new EOFException();
+                    skipped = 1;
+                }
+                contentLength -= skipped;
+            }
+            return status;
+        }
+
+        /**
+         * Reads a line without its line break into {@link #line} and returns its length.
+         */
+        int readLine() throws IOException {
+            int length = 0;
+            int b;
+            while ((b = in.read()) != '\n') {
+                if (b == -1)
+                    throw new EOFException();
+                if (b != '\r') {
+                    if (length == line.length)
+                        throw new IOException("response header line too long");
+                    line[length++] = (byte) b;
+                }
+            }
+            return length;
+        }
+
+        boolean startsWithIgnoreCase(byte[] prefix) {
+            for (int i = 0; i < prefix.length; i++)
+                if (Character.toLowerCase(line[i]) != prefix[i])
+                    return false;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
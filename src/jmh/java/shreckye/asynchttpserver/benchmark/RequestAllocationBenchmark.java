@@ -0,0 +1,108 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver.benchmark;
+
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.openjdk.jmh.annotations.*;
+import shreckye.asynchttpserver.AsyncHttpServer;
+import shreckye.asynchttpserver.ConnectionContext;
+import shreckye.asynchttpserver.codec.*;
+import shreckye.asynchttpserver.service.GeneralService;
+import shreckye.asynchttpserver.service.NoResourcesService;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the bytes allocated per request, which is reported as "gc.alloc.rate.norm" when run with "-prof gc".
+ * The requests are sent one at a time on a persistent connection, either without a body,
+ * or with a body in {@link #chunks} chunks that a {@link GeneralService} receives block by block.
+ * The client reads the responses without allocating, so the numbers are the server's allocations
+ * plus a small constant of the JMH harness, and are best compared between two runs.
+ *
+ * @author Yongshun Ye
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(1)
+@Fork(value = 1, jvmArgsAppend = "-Dio.netty.leakDetection.level=disabled")
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class RequestAllocationBenchmark {
+    @Param("16")
+    public int chunks;
+    @Param("256")
+    public int chunkSize;
+
+    AsyncHttpServer server;
+    BenchmarkSupport.HttpConnection getConnection;
+    BenchmarkSupport.HttpConnection chunkedConnection;
+
+    public static class CountingService extends GeneralService implements NoResourcesService {
+        long length;
+
+        @Override
+        public void onServeRequestWithoutBody(RequestWithoutBody requestWithoutBody, ConnectionContext connectionContext) {
+        }
+
+        @Override
+        public void onServeContentBlock(ContentBlock contentBlock, ConnectionContext connectionContext) {
+            length += contentBlock.content().readableBytes();
+        }
+
+        @Override
+        public void onServeLastContentBlock(LastContentBlock lastContentBlock, ConnectionContext connectionContext) {
+            length += lastContentBlock.content().readableBytes();
+            connectionContext.sendFullResponse(new DefaultOutboundFullResponse(HttpResponseStatus.NO_CONTENT));
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        int port = BenchmarkSupport.freePort();
+        server = BenchmarkSupport.newServerBuilder(port)
+                .registerUriPath("/count", CountingService::new)
+                .buildAndStart();
+        BenchmarkSupport.awaitListening(port);
+
+        byte[] chunk = new byte[chunkSize];
+        Arrays.fill(chunk, (byte) 'a');
+        byte[][] body = new byte[chunks][];
+        Arrays.fill(body, chunk);
+        getConnection = new BenchmarkSupport.HttpConnection(port, "GET", "/count", null);
+        chunkedConnection = new BenchmarkSupport.HttpConnection(port, BenchmarkSupport.HttpConnection.chunkedRequest("POST", "/count", body));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, InterruptedException {
+        getConnection.close();
+        chunkedConnection.close();
+        server.close();
+    }
+
+    @Benchmark
+    public int requestWithoutBody() throws IOException {
+        return getConnection.send();
+    }
+
+    @Benchmark
+    public int chunkedRequest() throws IOException {
+        return chunkedConnection.send();
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver.benchmark;
+
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.openjdk.jmh.annotations.*;
+import shreckye.asynchttpserver.AsyncHttpServer;
+import shreckye.asynchttpserver.ServiceExecutor;
+import shreckye.asynchttpserver.codec.FullRequest;
+import shreckye.asynchttpserver.codec.FullResponse;
+import shreckye.asynchttpserver.codec.StaticFullResponse;
+import shreckye.asynchttpserver.service.LightweightService;
+import shreckye.asynchttpserver.service.NoResourcesService;
+import shreckye.asynchttpserver.service.SingletonService;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares running blocking services on a fixed pool of platform threads and on virtual threads,
+ * with more concurrent connections than platform threads. Each service blocks for {@link #blockMillis},
+ * like a call to a database or another service would.
+ * The platform thread pool is bounded by {@link #platformThreads}, so the requests beyond it wait in the queue,
+ * while each request gets its own virtual thread.
+ * Virtual threads require Java 21 and above, and the benchmark fails on older JVMs.
+ *
+ * @author Yongshun Ye
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(256)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class ServiceExecutorBenchmark {
+    public enum Executor {
+        PLATFORM, VIRTUAL
+    }
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    public Executor executor;
+    @Param("32")
+    public int platformThreads;
+    @Param("10")
+    public long blockMillis;
+
+    ServiceExecutor serviceExecutor;
+    AsyncHttpServer server;
+    int port;
+
+    public static class BlockingService extends LightweightService implements NoResourcesService, SingletonService {
+        static final StaticFullResponse RESPONSE = StaticFullResponse.newHtmlInstance(HttpResponseStatus.OK, "Hello, world!");
+
+        final long blockMillis;
+
+        public BlockingService(long blockMillis) {
+            this.blockMillis = blockMillis;
+        }
+
+        @Override
+        public FullResponse onServeFullRequest(FullRequest fullRequest) {
+            try {
+                Thread.sleep(blockMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return RESPONSE;
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        // The queue holds all the requests the client threads can have in flight, so none are rejected
+        serviceExecutor = executor == Executor.VIRTUAL ?
+                ServiceExecutor.newVirtualThreadInstance() : new ServiceExecutor(platformThreads, 1024);
+        port = BenchmarkSupport.freePort();
+        server = BenchmarkSupport.newServerBuilder(port)
+                .defaultServiceExecutor(serviceExecutor)
+                .registerUriPath("/block", new BlockingService(blockMillis))
+                .buildAndStart();
+        BenchmarkSupport.awaitListening(port);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        server.close();
+        serviceExecutor.close();
+        if (serviceExecutor.rejectedCount() != 0)
+            throw new IllegalStateException(serviceExecutor.rejectedCount() + " requests rejected");
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        BenchmarkSupport.HttpConnection connection;
+
+        @Setup
+        public void setUp(ServiceExecutorBenchmark benchmark) throws IOException {
+            connection = new BenchmarkSupport.HttpConnection(benchmark.port, "GET", "/block", null);
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            connection.close();
+        }
+    }
+
+    @Benchmark
+    public int request(Client client) throws IOException {
+        return client.connection.send();
+    }
+}
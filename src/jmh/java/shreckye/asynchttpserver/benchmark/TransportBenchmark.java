@@ -0,0 +1,100 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver.benchmark;
+
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.openjdk.jmh.annotations.*;
+import shreckye.asynchttpserver.AsyncHttpServer;
+import shreckye.asynchttpserver.Transport;
+import shreckye.asynchttpserver.codec.FullRequest;
+import shreckye.asynchttpserver.codec.FullResponse;
+import shreckye.asynchttpserver.codec.StaticFullResponse;
+import shreckye.asynchttpserver.service.LightweightService;
+import shreckye.asynchttpserver.service.NoResourcesService;
+import shreckye.asynchttpserver.service.SingletonService;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link Transport#NIO} and {@link Transport#EPOLL} end to end,
+ * with many client threads each sending small requests on its own persistent connection.
+ * The throughput is reported by default. Run it with "-bm sample -tu us" for the latency percentiles,
+ * and with "-t" to change the number of connections.
+ *
+ * @author Yongshun Ye
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(64)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class TransportBenchmark {
+    @Param({"NIO", "EPOLL"})
+    public Transport transport;
+
+    AsyncHttpServer server;
+    int port;
+
+    public static class HelloService extends LightweightService implements NoResourcesService, SingletonService {
+        static final StaticFullResponse RESPONSE = StaticFullResponse.newHtmlInstance(HttpResponseStatus.OK, "Hello, world!");
+
+        @Override
+        public FullResponse onServeFullRequest(FullRequest fullRequest) {
+            return RESPONSE;
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        port = BenchmarkSupport.freePort();
+        server = BenchmarkSupport.newServerBuilder(port)
+                .transport(transport)
+                .registerUriPath("/hello", new HelloService())
+                .buildAndStart();
+        if (server.transport() != transport)
+            throw new IllegalStateException(transport + " is not available");
+        BenchmarkSupport.awaitListening(port);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        server.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        BenchmarkSupport.HttpConnection connection;
+
+        @Setup
+        public void setUp(TransportBenchmark benchmark) throws IOException {
+            connection = new BenchmarkSupport.HttpConnection(benchmark.port, "GET", "/hello", null);
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            connection.close();
+        }
+    }
+
+    @Benchmark
+    public int request(Client client) throws IOException {
+        return client.connection.send();
+    }
+}
@@ -17,20 +17,24 @@
 package shreckye.asynchttpserver;
 
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.ChannelGroupFuture;
+import io.netty.channel.group.DefaultChannelGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.handler.codec.http.*;
-import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.flow.FlowControlHandler;
 import io.netty.handler.stream.ChunkedWriteHandler;
-import shreckye.asynchttpserver.codec.*;
+import io.netty.util.concurrent.GlobalEventExecutor;
 import shreckye.asynchttpserver.service.*;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.LinkedHashMap;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -40,189 +44,127 @@ import java.util.regex.PatternSyntaxException;
  * <p>
  * This server is registered with Services to serve different request. The server will find service matches in the following order:
  * 1. ones registered to URIs
- * 2. ones registered to URI paths
- * 3. ones registered to URI directory paths
+ * 2. ones registered to URI paths or path templates
+ * 3. ones registered to the longest URI directory paths or path templates with wildcard tails
  * 4. ones registered to URI path regular expressions
  * 5. the default one
- * and choose the first match to serve the request.
+ * and choose the first match to serve the request. See {@link Router} for details.
+ * The requests to the hosts registered with their own {@link Router}s are routed by those instead.
+ * A registration can also be limited to a request method,
+ * and a request that matches only by its URI is responded to with "405 Method Not Allowed" right away.
  *
  * @author Yongshun Ye
  */
 public class AsyncHttpServer implements AutoCloseable {
     public final static int DEFAULT_PORT = 80;
     public final static int DEFAULT_MAX_FULL_MESSAGE_LENGTH = 65536;
-
-    NioEventLoopGroup bossGroup, workerGroup;
-    Channel serverChannel;
-
-    private AsyncHttpServer(Integer port,
-                            Integer nThreads,
-                            Integer maxFullContentLength,
-                            ConnectionHandlerFactory handlerFactory,
-                            HashMap<String, ServiceFactory> uriServices,
-                            HashMap<String, ServiceFactory> uriPathServices,
-                            TreeMap<String, ServiceFactory> uriDirectoryPathServices,
-                            ArrayList<PatternServiceFactoryEntry> urlRegexServices,
-                            ServiceFactory defaultService) {
-        port = port == null ? DEFAULT_PORT : port;
-        bossGroup = new NioEventLoopGroup(1);
-        workerGroup = nThreads == null ? new NioEventLoopGroup() : new NioEventLoopGroup(nThreads);
-        int maxLength = maxFullContentLength == null ? DEFAULT_MAX_FULL_MESSAGE_LENGTH : maxFullContentLength;
+    public final static int DEFAULT_MAX_INITIAL_LINE_LENGTH = 4096;
+    public final static int DEFAULT_MAX_HEADER_SIZE = 8192;
+    public final static int DEFAULT_MAX_CHUNK_SIZE = 8192;
+    public final static int DEFAULT_INITIAL_BUFFER_SIZE = 128;
+    public final static int FAST_PATH_MAX_CHUNK_SIZE = 65536;
+
+    Transport transport;
+    EventLoopGroup bossGroup, workerGroup;
+    ChannelGroup serverChannels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+    // Read once for each request, so that the requests in progress keep the routes they are routed with
+    volatile RoutingTable routingTable;
+    ServiceExecutor defaultServiceExecutor;
+
+    private AsyncHttpServer(Builder builder) {
+        int port = builder.port == null ? DEFAULT_PORT : builder.port;
+        transport = builder.transport == null ? Transport.NIO : builder.transport.resolve();
+        // SO_REUSEPORT is only supported by the epoll transport, so there can only be one acceptor otherwise
+        int nAcceptors = builder.reusePortAcceptors != null && transport == Transport.EPOLL ? builder.reusePortAcceptors : 1;
+        bossGroup = transport.newEventLoopGroup(nAcceptors);
+        workerGroup = transport.newEventLoopGroup(builder.nThreads == null ? 0 : builder.nThreads);
+        int maxLength = builder.maxFullMessageLength == null ? DEFAULT_MAX_FULL_MESSAGE_LENGTH : builder.maxFullMessageLength;
+        int maxInitialLineLength = builder.maxInitialLineLength == null ? DEFAULT_MAX_INITIAL_LINE_LENGTH : builder.maxInitialLineLength;
+        int maxHeaderSize = builder.maxHeaderSize == null ? DEFAULT_MAX_HEADER_SIZE : builder.maxHeaderSize;
+        int maxChunkSize = builder.maxChunkSize == null ? DEFAULT_MAX_CHUNK_SIZE : builder.maxChunkSize;
+        boolean validateHeaders = builder.validateHeaders == null ? true : builder.validateHeaders;
+        int initialBufferSize = builder.initialBufferSize == null ? DEFAULT_INITIAL_BUFFER_SIZE : builder.initialBufferSize;
+        String server = builder.server;
+        ConnectionHandlerFactory finalHandlerFactory = builder.handlerFactory == null ? DefaultServiceConnectionHandler::new : builder.handlerFactory;
+        routingTable = builder.routingTableBuilder.defaultRouter(builder.routerBuilder.build()).build();
+        defaultServiceExecutor = builder.defaultServiceExecutor;
         ServerBootstrap serverBootstrap = new ServerBootstrap();
-        ConnectionHandlerFactory finalHandlerFactory = handlerFactory == null ? DefaultServiceConnectionHandler::new : handlerFactory;
-        ServiceFactory finalDefaultService = defaultService == null ? new DefaultNotFoundService() : defaultService;
+        builder.serverOptions.values().forEach(option -> option.accept(serverBootstrap));
+        builder.childOptions.values().forEach(option -> option.accept(serverBootstrap));
+        if (transport == Transport.EPOLL) {
+            if (builder.reusePortAcceptors != null)
+                serverBootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+            if (builder.epollTcpDeferAccept != null)
+                serverBootstrap.option(EpollChannelOption.TCP_DEFER_ACCEPT, builder.epollTcpDeferAccept);
+            if (builder.epollTcpFastOpen != null)
+                serverBootstrap.option(EpollChannelOption.TCP_FASTOPEN, builder.epollTcpFastOpen);
+            if (builder.epollTcpQuickAck != null)
+                serverBootstrap.childOption(EpollChannelOption.TCP_QUICKACK, builder.epollTcpQuickAck);
+        }
         serverBootstrap.group(bossGroup, workerGroup)
-                .channel(NioServerSocketChannel.class)
+                .channel(transport.serverChannelClass())
                 .childHandler(new ChannelInitializer<SocketChannel>() {
-                    ConnectionHandler handler = finalHandlerFactory.createConnectionHandler();
-                    Service currentService;
-                    FullResponse fullResponse;
-
-                    private void resetService(ConnectionContext connectionContext) {
-                        if (handler.serviceResponseState() != ConnectionHandler.STATE_LAST_CONTENT_BLOCK_SENT)
-                            handler.onServiceThrowable(connectionContext, currentService, new Exception("response data hasn't been not completely sent"));
-
-                        handler.setServiceResponseState(ConnectionHandler.STATE_INITIAL);
-                        currentService = null;
-                        fullResponse = null;
-                    }
-
                     @Override
                     protected void initChannel(SocketChannel ch) throws Exception {
+                        // All the serving state of a connection is held by its own instance
+                        ServiceConnection serviceConnection = new ServiceConnection(AsyncHttpServer.this, finalHandlerFactory.createConnectionHandler());
                         ChannelPipeline channelPipeline = ch.pipeline();
-                        channelPipeline.addLast(new HttpServerCodec())
+                        channelPipeline.addLast(new ServerHttpCodec(maxInitialLineLength, maxHeaderSize, maxChunkSize, validateHeaders, initialBufferSize, server))
+                                // Holds the decoded pipelined requests while reading is paused for a response in progress
+                                .addLast(new FlowControlHandler())
                                 .addLast(new ChunkedWriteHandler())
-                                .addLast(new ChannelOutboundHandlerAdapter() {
-                                    @Override
-                                    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
-                                        super.write(ctx, msg, promise);
-
-                                        System.out.println("Written: " + ctx + ", " + msg);
-                                    }
-
-                                    @Override
-                                    public void flush(ChannelHandlerContext ctx) throws Exception {
-                                        super.flush(ctx);
-
-                                        System.out.println("Flushed: " + ctx);
-                                    }
-                                })
-                                .addLast(new SimpleChannelInboundHandler<HttpObject>() {
-
-                                    @Override
-                                    public void channelActive(ChannelHandlerContext ctx) throws Exception {
-                                        handler.onConnected(new ConnectionContext(handler, ctx));
-                                    }
-
-                                    @Override
-                                    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
-                                        handler.onDisconnected(new ConnectionContext(handler, ctx));
-                                    }
-
-                                    @Override
-                                    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
-                                        handler.onConnectionThrowable(new ConnectionContext(handler, ctx), cause);
-                                    }
-
-                                    @Override
-                                    protected void channelRead0(ChannelHandlerContext ctx, HttpObject msg) throws Exception {
-                                        HttpResponse httpResponse = null;
-
-                                        ConnectionContext connectionContext = new ConnectionContext(handler, ctx);
-                                        try {
-                                            if (msg instanceof HttpRequest) {
-                                                HttpRequest httpRequest = (HttpRequest) msg;
-                                                DefaultInboundRequestWithoutBody requestWithoutBody = DefaultInboundRequestWithoutBody.fromNettyHttpRequest(httpRequest);
-
-                                                ServiceFactory serviceFactory;
-                                                if ((serviceFactory = uriServices.get(requestWithoutBody.uri())) == null) {
-
-                                                    String path = requestWithoutBody.path();
-                                                    if ((serviceFactory = uriPathServices.get(path)) == null) {
-
-                                                        Map.Entry<String, ServiceFactory> floorEntry = uriDirectoryPathServices.floorEntry(path);
-                                                        if (floorEntry != null && path.startsWith(floorEntry.getKey()))
-                                                            serviceFactory = floorEntry.getValue();
-
-                                                        else {
-                                                            for (PatternServiceFactoryEntry entry : urlRegexServices)
-                                                                if (entry.pattern.matcher(path).matches()) {
-                                                                    serviceFactory = entry.serviceFactory;
-                                                                    break;
-                                                                }
-
-                                                            if (serviceFactory == null)
-                                                                serviceFactory = finalDefaultService;
-                                                        }
-                                                    }
-                                                }
-                                                currentService = serviceFactory.createService();
-                                                handler.onServiceCreated(connectionContext, requestWithoutBody, currentService);
-
-                                                if (currentService instanceof FullResponseService) {
-                                                    FullResponseService fullResponseService = (FullResponseService) currentService;
-                                                    fullResponse = fullResponseService.onCreateFullResponse();
-                                                    fullResponseService.onServeRequestWithoutBody(DefaultInboundRequestWithoutBody.fromNettyHttpRequest(httpRequest), fullResponse);
-                                                } else if (currentService instanceof GeneralService)
-                                                    ((GeneralService) currentService).onServeRequestWithoutBody(DefaultInboundRequestWithoutBody.fromNettyHttpRequest(httpRequest), connectionContext);
-                                                else if (currentService instanceof LightweightService || currentService instanceof FullRequestService)
-                                                    ctx.fireChannelRead(httpRequest);
-                                                else
-                                                    throw new Exception("invalid service");
-                                            } else if (msg instanceof HttpContent) {
-                                                if (msg instanceof LastHttpContent) {
-                                                    LastHttpContent lastHttpContent = (LastHttpContent) msg;
-                                                    if (currentService instanceof FullResponseService) {
-                                                        ((FullResponseService) currentService).onServeLastContentBlock(DefaultLastContentBlock.fromNettyLastHttpContent(lastHttpContent), fullResponse);
-                                                        connectionContext.sendFullResponse(fullResponse);
-                                                        resetService(connectionContext);
-                                                    } else if (currentService instanceof GeneralService) {
-                                                        ((GeneralService) currentService).onServeLastContentBlock(DefaultLastContentBlock.fromNettyLastHttpContent(lastHttpContent), connectionContext);
-                                                        resetService(connectionContext);
-                                                    } else if (currentService instanceof LightweightService || currentService instanceof FullRequestService)
-                                                        ctx.fireChannelRead(lastHttpContent);
-                                                } else {
-                                                    HttpContent httpContent = (HttpContent) msg;
-                                                    if (currentService instanceof FullResponseService)
-                                                        ((FullResponseService) currentService).onServeContentBlock(DefaultContentBlock.fromNettyHttpContent(httpContent), fullResponse);
-                                                    else if (currentService instanceof GeneralService)
-                                                        ((GeneralService) currentService).onServeContentBlock(DefaultContentBlock.fromNettyHttpContent(httpContent), connectionContext);
-                                                    else if (currentService instanceof LightweightService || currentService instanceof FullRequestService)
-                                                        ctx.fireChannelRead(httpContent);
-                                                }
-                                            } else
-                                                handler.onConnectionThrowable(connectionContext, new Exception("an unknown object received"));
-                                        } catch (Throwable t) {
-                                            handler.onServiceThrowable(connectionContext, currentService, t);
-                                        }
-                                    }
-                                })
+                                .addLast(serviceConnection.requestHandler)
                                 .addLast(new HttpObjectAggregator(maxLength))
-                                .addLast(new SimpleChannelInboundHandler<FullHttpRequest>() {
-                                    @Override
-                                    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
-                                        handler.onConnectionThrowable(new ConnectionContext(handler, ctx), cause);
-                                    }
-
-                                    @Override
-                                    protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest msg) throws Exception {
-                                        ConnectionContext connectionContext = new ConnectionContext(handler, ctx);
-                                        try {
-                                            if (currentService instanceof LightweightService)
-                                                connectionContext.sendFullResponse(((LightweightService) currentService).onServeFullRequest(DefaultInboundFullRequest.fromNettyFullHttpResponse(msg)));
-                                            else if (currentService instanceof FullRequestService)
-                                                ((FullRequestService) currentService).onServeFullRequest(DefaultInboundFullRequest.fromNettyFullHttpResponse(msg), connectionContext);
-                                        } catch (Throwable t) {
-                                            handler.onServiceThrowable(connectionContext, currentService, t);
-                                        }
-                                        resetService(connectionContext);
-                                    }
-                                });
+                                .addLast(serviceConnection.fullRequestHandler);
                     }
                 });
 
-        serverChannel = serverBootstrap.bind(port)
-                .channel();
+        // Each bind registers a new listening socket to the next event loop of the boss group
+        for (int i = 0; i < nAcceptors; i++)
+            serverChannels.add(serverBootstrap.bind(port)
+                    .channel());
+    }
+
+    /**
+     * Returns the {@link RoutingTable} that routes the new requests.
+     * A copy of it can be modified with {@link RoutingTable.Builder#Builder(RoutingTable)} and swapped in.
+     *
+     * @return the {@link RoutingTable}
+     */
+    public RoutingTable routingTable() {
+        return routingTable;
+    }
+
+    /**
+     * Swaps in a {@link RoutingTable} to route the new requests without restarting the server or closing any connection.
+     * The requests already routed finish with the services of the old one.
+     *
+     * @param routingTable the new {@link RoutingTable}
+     */
+    public void setRoutingTable(RoutingTable routingTable) {
+        this.routingTable = routingTable;
+    }
+
+    /**
+     * Atomically replaces the {@link RoutingTable} with the result of a function of the current one.
+     * The function may build a modified copy of the current one with {@link RoutingTable.Builder#Builder(RoutingTable)}
+     * and {@link Router.Builder#Builder(Router)}. The concurrent updates are applied one by one.
+     *
+     * @param update the function that returns the new {@link RoutingTable}
+     * @return the new {@link RoutingTable}
+     */
+    public synchronized RoutingTable updateRoutingTable(UnaryOperator<RoutingTable> update) {
+        return routingTable = update.apply(routingTable);
+    }
+
+    /**
+     * Returns the transport that this server actually runs on,
+     * which is {@link Transport#NIO} if the requested one is not available.
+     *
+     * @return the transport
+     */
+    public Transport transport() {
+        return transport;
     }
 
     /**
@@ -232,7 +174,7 @@ public class AsyncHttpServer implements AutoCloseable {
      */
     @Override
     public void close() throws InterruptedException {
-        serverChannel.close().sync();
+        serverChannels.close().sync();
     }
 
     /**
@@ -240,8 +182,8 @@ public class AsyncHttpServer implements AutoCloseable {
      *
      * @return the future of this operation
      */
-    public ChannelFuture closeAsync() {
-        return serverChannel.close();
+    public ChannelGroupFuture closeAsync() {
+        return serverChannels.close();
     }
 
     /**
@@ -251,12 +193,24 @@ public class AsyncHttpServer implements AutoCloseable {
         Integer port = null;
         Integer nThreads = null;
         Integer maxFullMessageLength = null;
+        Integer maxInitialLineLength = null;
+        Integer maxHeaderSize = null;
+        Integer maxChunkSize = null;
+        Boolean validateHeaders = null;
+        Integer initialBufferSize = null;
+        String server = null;
+        Transport transport = null;
+        Integer epollTcpDeferAccept = null;
+        Integer epollTcpFastOpen = null;
+        Boolean epollTcpQuickAck = null;
+        Integer reusePortAcceptors = null;
+        ServiceExecutor defaultServiceExecutor = null;
+        // Each option is kept as the call that sets it, so that its value type is checked when it's specified
+        LinkedHashMap<ChannelOption<?>, Consumer<ServerBootstrap>> serverOptions = new LinkedHashMap<>();
+        LinkedHashMap<ChannelOption<?>, Consumer<ServerBootstrap>> childOptions = new LinkedHashMap<>();
         ConnectionHandlerFactory handlerFactory = null;
-        HashMap<String, ServiceFactory> uriServices = new HashMap<>();
-        HashMap<String, ServiceFactory> uriPathServices = new HashMap<>();
-        TreeMap<String, ServiceFactory> uriDirectoryPathServices = new TreeMap<>();
-        ArrayList<PatternServiceFactoryEntry> urlRegexServices = new ArrayList<>();
-        ServiceFactory defaultService = null;
+        Router.Builder routerBuilder = new Router.Builder();
+        RoutingTable.Builder routingTableBuilder = new RoutingTable.Builder();
 
 
         /**
@@ -271,7 +225,7 @@ public class AsyncHttpServer implements AutoCloseable {
          * @return the {@link AsyncHttpServer} instance
          */
         public AsyncHttpServer buildAndStart() {
-            return new AsyncHttpServer(port, nThreads, maxFullMessageLength, handlerFactory, uriServices, uriPathServices, uriDirectoryPathServices, urlRegexServices, defaultService);
+            return new AsyncHttpServer(this);
         }
 
         /**
@@ -286,9 +240,9 @@ public class AsyncHttpServer implements AutoCloseable {
         }
 
         /**
-         * Specifies the number of threads of the NIO thread pool.
+         * Specifies the number of threads of the worker event loop group.
          *
-         * @param nThreads the number of threads of the NIO thread pool
+         * @param nThreads the number of threads of the worker event loop group
          * @return this {@link Builder}
          */
         public Builder nThreads(int nThreads) {
@@ -308,6 +262,316 @@ public class AsyncHttpServer implements AutoCloseable {
             return this;
         }
 
+        /**
+         * Specifies the maximum length of the request line of a request.
+         * A request with a longer request line is rejected by the decoder.
+         *
+         * @param maxInitialLineLength the maximum length of the request line, {@link #DEFAULT_MAX_INITIAL_LINE_LENGTH} by default
+         * @return this {@link Builder}
+         */
+        public Builder maxInitialLineLength(int maxInitialLineLength) {
+            this.maxInitialLineLength = maxInitialLineLength;
+            return this;
+        }
+
+        /**
+         * Specifies the maximum total size of the headers of a request.
+         * A request with larger headers is rejected by the decoder.
+         *
+         * @param maxHeaderSize the maximum total size of the headers, {@link #DEFAULT_MAX_HEADER_SIZE} by default
+         * @return this {@link Builder}
+         */
+        public Builder maxHeaderSize(int maxHeaderSize) {
+            this.maxHeaderSize = maxHeaderSize;
+            return this;
+        }
+
+        /**
+         * Specifies the maximum size of a {@link ContentBlock} that the request content is split into.
+         * Larger blocks mean fewer {@link GeneralService#onServeContentBlock(ContentBlock, ConnectionContext)}
+         * and {@link FullResponseService#onServeContentBlock(ContentBlock, FullResponse)} calls for large uploads.
+         * Note that a block is never larger than the data read from the socket at once, which is decided by {@link #recvByteBufAllocator(RecvByteBufAllocator)}.
+         *
+         * @param maxChunkSize the maximum size of a {@link ContentBlock}, {@link #DEFAULT_MAX_CHUNK_SIZE} by default
+         * @return this {@link Builder}
+         */
+        public Builder maxChunkSize(int maxChunkSize) {
+            this.maxChunkSize = maxChunkSize;
+            return this;
+        }
+
+        /**
+         * Specifies whether the names and values of the request headers are validated.
+         * Turning it off saves some decoding work, but should only be done for trusted traffic.
+         *
+         * @param validateHeaders whether to validate the request headers, {@code true} by default
+         * @return this {@link Builder}
+         */
+        public Builder validateHeaders(boolean validateHeaders) {
+            this.validateHeaders = validateHeaders;
+            return this;
+        }
+
+        /**
+         * Specifies the initial size of the buffer that a request line or a header line is decoded into.
+         *
+         * @param initialBufferSize the initial buffer size, {@link #DEFAULT_INITIAL_BUFFER_SIZE} by default
+         * @return this {@link Builder}
+         */
+        public Builder initialBufferSize(int initialBufferSize) {
+            this.initialBufferSize = initialBufferSize;
+            return this;
+        }
+
+        /**
+         * Specifies the value of the "server" header added to every response. No "server" header is added by default.
+         *
+         * @param server the value of the "server" header, or {@code null} to add none
+         * @return this {@link Builder}
+         */
+        public Builder server(String server) {
+            this.server = server;
+            return this;
+        }
+
+        /**
+         * Configures the request decoder for trusted internal traffic:
+         * header validation is turned off and the maximum {@link ContentBlock} size is raised to {@link #FAST_PATH_MAX_CHUNK_SIZE}.
+         * Options specified after this method override the ones set here.
+         *
+         * @return this {@link Builder}
+         */
+        public Builder fastPathDecoder() {
+            return validateHeaders(false)
+                    .maxChunkSize(FAST_PATH_MAX_CHUNK_SIZE);
+        }
+
+        /**
+         * Specifies the transport that the server runs on.
+         * If the transport is not available on the current platform, the server falls back to {@link Transport#NIO}.
+         *
+         * @param transport the transport
+         * @return this {@link Builder}
+         */
+        public Builder transport(Transport transport) {
+            this.transport = transport;
+            return this;
+        }
+
+        /**
+         * Specifies the TCP_DEFER_ACCEPT option of the listening socket,
+         * so that a connection is only accepted when its first data arrives.
+         * This option only takes effect on {@link Transport#EPOLL}.
+         *
+         * @param seconds the number of seconds to wait for the first data
+         * @return this {@link Builder}
+         */
+        public Builder epollTcpDeferAccept(int seconds) {
+            this.epollTcpDeferAccept = seconds;
+            return this;
+        }
+
+        /**
+         * Specifies the TCP_FASTOPEN option of the listening socket.
+         * This option only takes effect on {@link Transport#EPOLL}.
+         *
+         * @param queueLength the maximum length of pending TCP Fast Open requests
+         * @return this {@link Builder}
+         */
+        public Builder epollTcpFastOpen(int queueLength) {
+            this.epollTcpFastOpen = queueLength;
+            return this;
+        }
+
+        /**
+         * Specifies the TCP_QUICKACK option of the accepted connections.
+         * This option only takes effect on {@link Transport#EPOLL}.
+         *
+         * @param tcpQuickAck whether to send ACKs immediately
+         * @return this {@link Builder}
+         */
+        public Builder epollTcpQuickAck(boolean tcpQuickAck) {
+            this.epollTcpQuickAck = tcpQuickAck;
+            return this;
+        }
+
+        /**
+         * Enables SO_REUSEPORT and binds the specified number of listening sockets to the same port,
+         * each accepting on its own thread, so that the kernel spreads new connections across them.
+         * With SO_REUSEPORT enabled, another server process can also bind the same port, for example during a rolling restart.
+         * This option only takes effect on {@link Transport#EPOLL}. Otherwise a single listening socket is bound.
+         *
+         * @param nAcceptors the number of listening sockets, which is typically the same as {@link #nThreads(int)}
+         * @return this {@link Builder}
+         * @throws IllegalArgumentException if the number is not positive
+         */
+        public Builder reusePort(int nAcceptors) throws IllegalArgumentException {
+            if (nAcceptors <= 0)
+                throw new IllegalArgumentException("the number of acceptors must be positive");
+            this.reusePortAcceptors = nAcceptors;
+            return this;
+        }
+
+        /**
+         * Specifies a {@link ChannelOption} of the listening sockets.
+         *
+         * @param option the option
+         * @param value  the value of the option, or {@code null} to remove it
+         * @param <T>    the type of the value
+         * @return this {@link Builder}
+         * @see ServerBootstrap#option(ChannelOption, Object)
+         */
+        public <T> Builder serverOption(ChannelOption<T> option, T value) {
+            if (value == null)
+                serverOptions.remove(option);
+            else
+                serverOptions.put(option, serverBootstrap -> serverBootstrap.option(option, value));
+            return this;
+        }
+
+        /**
+         * Specifies a {@link ChannelOption} of the accepted connections.
+         *
+         * @param option the option
+         * @param value  the value of the option, or {@code null} to remove it
+         * @param <T>    the type of the value
+         * @return this {@link Builder}
+         * @see ServerBootstrap#childOption(ChannelOption, Object)
+         */
+        public <T> Builder childOption(ChannelOption<T> option, T value) {
+            if (value == null)
+                childOptions.remove(option);
+            else
+                childOptions.put(option, serverBootstrap -> serverBootstrap.childOption(option, value));
+            return this;
+        }
+
+        /**
+         * Specifies the maximum length of the queue of connections waiting to be accepted.
+         *
+         * @param soBacklog the SO_BACKLOG value
+         * @return this {@link Builder}
+         */
+        public Builder soBacklog(int soBacklog) {
+            return serverOption(ChannelOption.SO_BACKLOG, soBacklog);
+        }
+
+        /**
+         * Specifies whether Nagle's algorithm is disabled on the accepted connections.
+         *
+         * @param tcpNoDelay the TCP_NODELAY value
+         * @return this {@link Builder}
+         */
+        public Builder tcpNoDelay(boolean tcpNoDelay) {
+            return childOption(ChannelOption.TCP_NODELAY, tcpNoDelay);
+        }
+
+        /**
+         * Specifies whether TCP keep-alive probes are sent on the accepted connections.
+         *
+         * @param soKeepAlive the SO_KEEPALIVE value
+         * @return this {@link Builder}
+         */
+        public Builder soKeepAlive(boolean soKeepAlive) {
+            return childOption(ChannelOption.SO_KEEPALIVE, soKeepAlive);
+        }
+
+        /**
+         * Specifies the socket receive buffer size.
+         * It's set on the listening sockets as well so that the accepted connections inherit it before the TCP handshake,
+         * which is required for receive windows larger than 64 KiB.
+         *
+         * @param soRcvBuf the SO_RCVBUF value in bytes
+         * @return this {@link Builder}
+         */
+        public Builder soRcvBuf(int soRcvBuf) {
+            serverOption(ChannelOption.SO_RCVBUF, soRcvBuf);
+            return childOption(ChannelOption.SO_RCVBUF, soRcvBuf);
+        }
+
+        /**
+         * Specifies the socket send buffer size of the accepted connections.
+         *
+         * @param soSndBuf the SO_SNDBUF value in bytes
+         * @return this {@link Builder}
+         */
+        public Builder soSndBuf(int soSndBuf) {
+            return childOption(ChannelOption.SO_SNDBUF, soSndBuf);
+        }
+
+        /**
+         * Specifies the write buffer water marks of the accepted connections.
+         * A connection becomes unwritable when its outbound buffer exceeds the high water mark,
+         * and writable again when it drops below the low water mark.
+         *
+         * @param low  the low water mark in bytes
+         * @param high the high water mark in bytes
+         * @return this {@link Builder}
+         */
+        public Builder writeBufferWaterMark(int low, int high) {
+            return childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(low, high));
+        }
+
+        /**
+         * Specifies the {@link RecvByteBufAllocator} that decides the buffer sizes for reading from the accepted connections.
+         *
+         * @param recvByteBufAllocator the {@link RecvByteBufAllocator}
+         * @return this {@link Builder}
+         * @see AdaptiveRecvByteBufAllocator
+         * @see FixedRecvByteBufAllocator
+         */
+        public Builder recvByteBufAllocator(RecvByteBufAllocator recvByteBufAllocator) {
+            return childOption(ChannelOption.RCVBUF_ALLOCATOR, recvByteBufAllocator);
+        }
+
+        /**
+         * Specifies the {@link ByteBufAllocator} of the listening sockets and the accepted connections,
+         * for example a pooled or an unpooled one, preferring direct or heap buffers.
+         *
+         * @param allocator the {@link ByteBufAllocator}
+         * @return this {@link Builder}
+         * @see PooledByteBufAllocator
+         * @see io.netty.buffer.UnpooledByteBufAllocator
+         */
+        public Builder allocator(ByteBufAllocator allocator) {
+            serverOption(ChannelOption.ALLOCATOR, allocator);
+            return childOption(ChannelOption.ALLOCATOR, allocator);
+        }
+
+        /**
+         * Applies a set of options suitable for production servers with many concurrent keep-alive connections:
+         * <ul>
+         * <li>SO_BACKLOG 1024, so connection bursts are queued instead of refused</li>
+         * <li>TCP_NODELAY on, so small responses are not delayed by Nagle's algorithm</li>
+         * <li>SO_KEEPALIVE on, so dead idle connections are eventually detected and closed</li>
+         * <li>write buffer water marks of 32 KiB and 64 KiB, to bound the memory held by slow clients</li>
+         * <li>the pooled {@link PooledByteBufAllocator#DEFAULT} allocator, which prefers direct buffers</li>
+         * </ul>
+         * Options specified after this method override the preset ones.
+         *
+         * @return this {@link Builder}
+         */
+        public Builder productionPreset() {
+            return soBacklog(1024)
+                    .tcpNoDelay(true)
+                    .soKeepAlive(true)
+                    .writeBufferWaterMark(32 * 1024, 64 * 1024)
+                    .allocator(PooledByteBufAllocator.DEFAULT);
+        }
+
+        /**
+         * Specifies the {@link ServiceExecutor} to run the {@link LightweightService}s and {@link FullRequestService}s on
+         * for the registrations without their own {@link ServiceExecutor}.
+         * Pass {@link ServiceExecutor#newVirtualThreadInstance()} to run each of them on its own virtual thread.
+         *
+         * @param defaultServiceExecutor the default {@link ServiceExecutor}, or {@code null} to run the services on the event loops
+         * @return this {@link Builder}
+         */
+        public Builder defaultServiceExecutor(ServiceExecutor defaultServiceExecutor) {
+            this.defaultServiceExecutor = defaultServiceExecutor;
+            return this;
+        }
+
         /**
          * Specifies the {@link ConnectionHandlerFactory} that generates {@link ConnectionHandler}s for this server.
          *
@@ -328,8 +592,50 @@ public class AsyncHttpServer implements AutoCloseable {
          * @throws IllegalArgumentException if the URI conflicts with an existing one
          */
         public Builder registerUri(String uri, ServiceFactory serviceFactory) throws IllegalArgumentException {
-            if (uriServices.putIfAbsent(uri, serviceFactory) != null)
-                throw new IllegalArgumentException("the URI conflicts with an existing one");
+            return registerUri(uri, serviceFactory, null);
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve all requests to a certain URI with a {@link ServiceExecutor}.
+         *
+         * @param uri             the URI
+         * @param serviceFactory  the {@link ServiceFactory} to register
+         * @param serviceExecutor the {@link ServiceExecutor} to run the services on, or {@code null} to run them on the event loops
+         * @return this {@link Builder}
+         * @throws IllegalArgumentException if the URI conflicts with an existing one
+         */
+        public Builder registerUri(String uri, ServiceFactory serviceFactory, ServiceExecutor serviceExecutor) throws IllegalArgumentException {
+            routerBuilder.registerUri(uri, serviceFactory, serviceExecutor);
+            return this;
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve the requests with a request method to a certain URI.
+         *
+         * @param method         the request method, or {@code null} for any request method
+         * @param uri            the URI
+         * @param serviceFactory the {@link ServiceFactory} to register
+         * @return this {@link Builder}
+         * @throws IllegalArgumentException if it conflicts with an existing one for the request method
+         * @see Router.Builder
+         */
+        public Builder registerUri(HttpMethod method, String uri, ServiceFactory serviceFactory) throws IllegalArgumentException {
+            return registerUri(method, uri, serviceFactory, null);
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve the requests with a request method to a certain URI with a {@link ServiceExecutor}.
+         *
+         * @param method          the request method, or {@code null} for any request method
+         * @param uri             the URI
+         * @param serviceFactory  the {@link ServiceFactory} to register
+         * @param serviceExecutor the {@link ServiceExecutor} to run the services on, or {@code null} to run them on the event loops
+         * @return this {@link Builder}
+         * @throws IllegalArgumentException if it conflicts with an existing one for the request method
+         * @see Router.Builder
+         */
+        public Builder registerUri(HttpMethod method, String uri, ServiceFactory serviceFactory, ServiceExecutor serviceExecutor) throws IllegalArgumentException {
+            routerBuilder.registerUri(method, uri, serviceFactory, serviceExecutor);
             return this;
         }
 
@@ -342,8 +648,50 @@ public class AsyncHttpServer implements AutoCloseable {
          * @throws IllegalArgumentException if the path conflicts with an existing one
          */
         public Builder registerUriPath(String path, ServiceFactory serviceFactory) throws IllegalArgumentException {
-            if (uriPathServices.putIfAbsent(path, serviceFactory) != null)
-                throw new IllegalArgumentException("the URI path conflicts with an existing one");
+            return registerUriPath(path, serviceFactory, null);
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve all requests to a URIs with a certain path with a {@link ServiceExecutor}.
+         *
+         * @param path            the path
+         * @param serviceFactory  the {@link ServiceFactory} to register
+         * @param serviceExecutor the {@link ServiceExecutor} to run the services on, or {@code null} to run them on the event loops
+         * @return this {@link Builder}
+         * @throws IllegalArgumentException if the path conflicts with an existing one
+         */
+        public Builder registerUriPath(String path, ServiceFactory serviceFactory, ServiceExecutor serviceExecutor) throws IllegalArgumentException {
+            routerBuilder.registerUriPath(path, serviceFactory, serviceExecutor);
+            return this;
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve the requests with a request method to URIs with a certain path.
+         *
+         * @param method         the request method, or {@code null} for any request method
+         * @param path           the path
+         * @param serviceFactory the {@link ServiceFactory} to register
+         * @return this {@link Builder}
+         * @throws IllegalArgumentException if it conflicts with an existing one for the request method
+         * @see Router.Builder
+         */
+        public Builder registerUriPath(HttpMethod method, String path, ServiceFactory serviceFactory) throws IllegalArgumentException {
+            return registerUriPath(method, path, serviceFactory, null);
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve the requests with a request method to URIs with a certain path with a {@link ServiceExecutor}.
+         *
+         * @param method          the request method, or {@code null} for any request method
+         * @param path            the path
+         * @param serviceFactory  the {@link ServiceFactory} to register
+         * @param serviceExecutor the {@link ServiceExecutor} to run the services on, or {@code null} to run them on the event loops
+         * @return this {@link Builder}
+         * @throws IllegalArgumentException if it conflicts with an existing one for the request method
+         * @see Router.Builder
+         */
+        public Builder registerUriPath(HttpMethod method, String path, ServiceFactory serviceFactory, ServiceExecutor serviceExecutor) throws IllegalArgumentException {
+            routerBuilder.registerUriPath(method, path, serviceFactory, serviceExecutor);
             return this;
         }
 
@@ -356,8 +704,110 @@ public class AsyncHttpServer implements AutoCloseable {
          * @throws IllegalArgumentException if the path conflicts with an existing one
          */
         public Builder registerUriDirectoryPath(String directoryPath, ServiceFactory serviceFactory) throws IllegalArgumentException {
-            if (uriDirectoryPathServices.putIfAbsent(directoryPath, serviceFactory) != null)
-                throw new IllegalArgumentException("the URI directory path conflicts with an existing one");
+            return registerUriDirectoryPath(directoryPath, serviceFactory, null);
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve all requests to URIs with a certain directory path prefix with a {@link ServiceExecutor}.
+         *
+         * @param directoryPath   the directory path
+         * @param serviceFactory  the {@link ServiceFactory} to register
+         * @param serviceExecutor the {@link ServiceExecutor} to run the services on, or {@code null} to run them on the event loops
+         * @return this {@link Builder}
+         * @throws IllegalArgumentException if the path conflicts with an existing one
+         */
+        public Builder registerUriDirectoryPath(String directoryPath, ServiceFactory serviceFactory, ServiceExecutor serviceExecutor) throws IllegalArgumentException {
+            routerBuilder.registerUriDirectoryPath(directoryPath, serviceFactory, serviceExecutor);
+            return this;
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve the requests with a request method to URIs with a certain directory path prefix.
+         *
+         * @param method         the request method, or {@code null} for any request method
+         * @param directoryPath  the directory path
+         * @param serviceFactory the {@link ServiceFactory} to register
+         * @return this {@link Builder}
+         * @throws IllegalArgumentException if it conflicts with an existing one for the request method
+         * @see Router.Builder
+         */
+        public Builder registerUriDirectoryPath(HttpMethod method, String directoryPath, ServiceFactory serviceFactory) throws IllegalArgumentException {
+            return registerUriDirectoryPath(method, directoryPath, serviceFactory, null);
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve the requests with a request method to URIs with a certain directory path prefix with a {@link ServiceExecutor}.
+         *
+         * @param method          the request method, or {@code null} for any request method
+         * @param directoryPath   the directory path
+         * @param serviceFactory  the {@link ServiceFactory} to register
+         * @param serviceExecutor the {@link ServiceExecutor} to run the services on, or {@code null} to run them on the event loops
+         * @return this {@link Builder}
+         * @throws IllegalArgumentException if it conflicts with an existing one for the request method
+         * @see Router.Builder
+         */
+        public Builder registerUriDirectoryPath(HttpMethod method, String directoryPath, ServiceFactory serviceFactory, ServiceExecutor serviceExecutor) throws IllegalArgumentException {
+            routerBuilder.registerUriDirectoryPath(method, directoryPath, serviceFactory, serviceExecutor);
+            return this;
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve all requests to URIs with a path that matches a template.
+         * A segment of the template written as "{name}" matches any non-empty segment and captures it as a path parameter,
+         * and a "*" at the end of the template matches anything and captures it as the path parameter named "*".
+         *
+         * @param template       the path template
+         * @param serviceFactory the {@link ServiceFactory} to register
+         * @return this {@link Builder}
+         * @throws IllegalArgumentException if the template is invalid or conflicts with an existing one
+         * @see Router.Builder#registerPathTemplate(String, ServiceFactory)
+         */
+        public Builder registerPathTemplate(String template, ServiceFactory serviceFactory) throws IllegalArgumentException {
+            return registerPathTemplate(template, serviceFactory, null);
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve all requests to URIs with a path that matches a template with a {@link ServiceExecutor}.
+         *
+         * @param template        the path template
+         * @param serviceFactory  the {@link ServiceFactory} to register
+         * @param serviceExecutor the {@link ServiceExecutor} to run the services on, or {@code null} to run them on the event loops
+         * @return this {@link Builder}
+         * @throws IllegalArgumentException if the template is invalid or conflicts with an existing one
+         * @see Router.Builder#registerPathTemplate(String, ServiceFactory)
+         */
+        public Builder registerPathTemplate(String template, ServiceFactory serviceFactory, ServiceExecutor serviceExecutor) throws IllegalArgumentException {
+            routerBuilder.registerPathTemplate(template, serviceFactory, serviceExecutor);
+            return this;
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve the requests with a request method to URIs with a path that matches a template.
+         *
+         * @param method         the request method, or {@code null} for any request method
+         * @param template       the path template
+         * @param serviceFactory the {@link ServiceFactory} to register
+         * @return this {@link Builder}
+         * @throws IllegalArgumentException if the template is invalid or conflicts with an existing one for the request method
+         * @see Router.Builder
+         */
+        public Builder registerPathTemplate(HttpMethod method, String template, ServiceFactory serviceFactory) throws IllegalArgumentException {
+            return registerPathTemplate(method, template, serviceFactory, null);
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve the requests with a request method to URIs with a path that matches a template with a {@link ServiceExecutor}.
+         *
+         * @param method          the request method, or {@code null} for any request method
+         * @param template        the path template
+         * @param serviceFactory  the {@link ServiceFactory} to register
+         * @param serviceExecutor the {@link ServiceExecutor} to run the services on, or {@code null} to run them on the event loops
+         * @return this {@link Builder}
+         * @throws IllegalArgumentException if the template is invalid or conflicts with an existing one for the request method
+         * @see Router.Builder
+         */
+        public Builder registerPathTemplate(HttpMethod method, String template, ServiceFactory serviceFactory, ServiceExecutor serviceExecutor) throws IllegalArgumentException {
+            routerBuilder.registerPathTemplate(method, template, serviceFactory, serviceExecutor);
             return this;
         }
 
@@ -373,38 +823,136 @@ public class AsyncHttpServer implements AutoCloseable {
             return registerPathRegex(Pattern.compile(regex), serviceFactory);
         }
 
+        /**
+         * Registers a {@link ServiceFactory} to serve all requests to URIs that match a regular expression with a {@link ServiceExecutor}.
+         *
+         * @param regex           the regular expression string
+         * @param serviceFactory  the {@link ServiceFactory} to register
+         * @param serviceExecutor the {@link ServiceExecutor} to run the services on, or {@code null} to run them on the event loops
+         * @return this {@link Builder}
+         * @throws PatternSyntaxException
+         */
+        public Builder registerPathRegex(String regex, ServiceFactory serviceFactory, ServiceExecutor serviceExecutor) throws PatternSyntaxException {
+            return registerPathRegex(Pattern.compile(regex), serviceFactory, serviceExecutor);
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve the requests with a request method to URIs that match a regular expression.
+         *
+         * @param method         the request method, or {@code null} for any request method
+         * @param regex          the regular expression string
+         * @param serviceFactory the {@link ServiceFactory} to register
+         * @return this {@link Builder}
+         * @throws PatternSyntaxException
+         * @see Router.Builder
+         */
+        public Builder registerPathRegex(HttpMethod method, String regex, ServiceFactory serviceFactory) throws PatternSyntaxException {
+            return registerPathRegex(method, regex, serviceFactory, null);
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve the requests with a request method to URIs that match a regular expression with a {@link ServiceExecutor}.
+         *
+         * @param method          the request method, or {@code null} for any request method
+         * @param regex           the regular expression string
+         * @param serviceFactory  the {@link ServiceFactory} to register
+         * @param serviceExecutor the {@link ServiceExecutor} to run the services on, or {@code null} to run them on the event loops
+         * @return this {@link Builder}
+         * @throws PatternSyntaxException
+         * @see Router.Builder
+         */
+        public Builder registerPathRegex(HttpMethod method, String regex, ServiceFactory serviceFactory, ServiceExecutor serviceExecutor) throws PatternSyntaxException {
+            return registerPathRegex(method, Pattern.compile(regex), serviceFactory, serviceExecutor);
+        }
+
         /**
          * Registers a {@link ServiceFactory} to serve all requests to URIs that match a regular expression.
          *
          * @param pattern        the regular expression {@link Pattern}
          * @param serviceFactory the {@link ServiceFactory} to register
          * @return this {@link Builder}
-         * @throws PatternSyntaxException
          */
         public Builder registerPathRegex(Pattern pattern, ServiceFactory serviceFactory) {
-            urlRegexServices.add(new PatternServiceFactoryEntry(pattern, serviceFactory));
+            return registerPathRegex(pattern, serviceFactory, null);
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve all requests to URIs that match a regular expression with a {@link ServiceExecutor}.
+         *
+         * @param pattern         the regular expression {@link Pattern}
+         * @param serviceFactory  the {@link ServiceFactory} to register
+         * @param serviceExecutor the {@link ServiceExecutor} to run the services on, or {@code null} to run them on the event loops
+         * @return this {@link Builder}
+         */
+        public Builder registerPathRegex(Pattern pattern, ServiceFactory serviceFactory, ServiceExecutor serviceExecutor) {
+            routerBuilder.registerPathRegex(pattern, serviceFactory, serviceExecutor);
             return this;
         }
 
         /**
-         * Registers a default {@link ServiceFactory} to serve all requests that couldn't find a match.
+         * Registers a {@link ServiceFactory} to serve the requests with a request method to URIs that match a regular expression.
          *
+         * @param method         the request method, or {@code null} for any request method
+         * @param pattern        the regular expression {@link Pattern}
          * @param serviceFactory the {@link ServiceFactory} to register
          * @return this {@link Builder}
+         * @see Router.Builder
          */
-        public Builder registerDefault(ServiceFactory serviceFactory) {
-            defaultService = serviceFactory;
+        public Builder registerPathRegex(HttpMethod method, Pattern pattern, ServiceFactory serviceFactory) {
+            return registerPathRegex(method, pattern, serviceFactory, null);
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve the requests with a request method to URIs that match a regular expression with a {@link ServiceExecutor}.
+         *
+         * @param method          the request method, or {@code null} for any request method
+         * @param pattern         the regular expression {@link Pattern}
+         * @param serviceFactory  the {@link ServiceFactory} to register
+         * @param serviceExecutor the {@link ServiceExecutor} to run the services on, or {@code null} to run them on the event loops
+         * @return this {@link Builder}
+         * @see Router.Builder
+         */
+        public Builder registerPathRegex(HttpMethod method, Pattern pattern, ServiceFactory serviceFactory, ServiceExecutor serviceExecutor) {
+            routerBuilder.registerPathRegex(method, pattern, serviceFactory, serviceExecutor);
             return this;
         }
-    }
 
-    private static class PatternServiceFactoryEntry {
-        Pattern pattern;
-        ServiceFactory serviceFactory;
+        /**
+         * Registers a {@link Router} to route the requests to a host instead of the services registered to this {@link Builder},
+         * which then only serve the requests to the other hosts.
+         *
+         * @param host   the host name such as "example.com", or a wildcard host name such as "*.example.com"
+         * @param router the {@link Router}
+         * @return this {@link Builder}
+         * @throws IllegalArgumentException if the host name is invalid or conflicts with an existing one
+         * @see RoutingTable
+         */
+        public Builder registerHost(String host, Router router) throws IllegalArgumentException {
+            routingTableBuilder.registerHost(host, router);
+            return this;
+        }
 
-        private PatternServiceFactoryEntry(Pattern pattern, ServiceFactory serviceFactory) {
-            this.pattern = pattern;
-            this.serviceFactory = serviceFactory;
+        /**
+         * Registers a default {@link ServiceFactory} to serve all requests that couldn't find a match.
+         * If none is registered, a response with status "404 Not Found" is sent back right away.
+         *
+         * @param serviceFactory the {@link ServiceFactory} to register
+         * @return this {@link Builder}
+         */
+        public Builder registerDefault(ServiceFactory serviceFactory) {
+            return registerDefault(serviceFactory, null);
+        }
+
+        /**
+         * Registers a default {@link ServiceFactory} to serve all requests that couldn't find a match with a {@link ServiceExecutor}.
+         *
+         * @param serviceFactory  the {@link ServiceFactory} to register
+         * @param serviceExecutor the {@link ServiceExecutor} to run the services on, or {@code null} to run them on the event loops
+         * @return this {@link Builder}
+         */
+        public Builder registerDefault(ServiceFactory serviceFactory, ServiceExecutor serviceExecutor) {
+            routerBuilder.registerDefault(serviceFactory, serviceExecutor);
+            return this;
         }
     }
 }
@@ -16,6 +16,7 @@
 
 package shreckye.asynchttpserver;
 
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerContext;
 import shreckye.asynchttpserver.codec.*;
@@ -64,10 +65,14 @@ public class ConnectionContext extends AbstractConnectionContext<ChannelFuture>
         return nettyChannelHandlerContext.channel().remoteAddress();
     }
 
-    /* TODO: use the pooled allocator to allocate byte buffers
+    /**
+     * Returns the allocator of the connection, to allocate the buffers of the content to send back.
+     *
+     * @return the allocator
+     */
     public ByteBufAllocator alloc() {
         return nettyChannelHandlerContext.alloc();
-    }*/
+    }
 
     @Override
     public ChannelFuture sendResponseWithoutBodyImpl(ResponseWithoutBody responseWithoutBody) {
@@ -91,7 +96,8 @@ public class ConnectionContext extends AbstractConnectionContext<ChannelFuture>
 
     @Override
     public ChannelFuture sendFullResponseImpl(FullResponse fullResponse) {
-        return nettyChannelHandlerContext.writeAndFlush(fullResponse.toNettyFullHttpResponse());
+        // Encoded straight into a buffer by the codec
+        return nettyChannelHandlerContext.writeAndFlush(fullResponse);
     }
 
     @Override
@@ -0,0 +1,86 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver;
+
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+
+import java.util.Arrays;
+
+/**
+ * The {@link Route}s registered to the same URI, path, or pattern for different request methods.
+ *
+ * @author Yongshun Ye
+ */
+class MethodRoutes {
+    HttpMethod[] methods = new HttpMethod[0];
+    Route[] routes = new Route[0];
+    // The route for the methods without their own routes, or null to reject them
+    Route anyMethodRoute = null;
+    Route methodNotAllowedRoute = null;
+
+    /**
+     * Adds a {@link Route} when building a {@link Router}.
+     * If a {@link Route} has already been added for the same method, the first one is kept,
+     * like the first matching regular expression registered is used.
+     *
+     * @param methodRoutes the existing instance, or {@code null} to create one
+     * @param method       the request method, or {@code null} for any method
+     * @param route        the {@link Route}
+     * @return the instance with the {@link Route} added
+     */
+    static MethodRoutes add(MethodRoutes methodRoutes, HttpMethod method, Route route) {
+        if (methodRoutes == null)
+            methodRoutes = new MethodRoutes();
+
+        if (method == null) {
+            if (methodRoutes.anyMethodRoute == null)
+                methodRoutes.anyMethodRoute = route;
+        } else if (!Arrays.asList(methodRoutes.methods).contains(method)) {
+            methodRoutes.methods = Arrays.copyOf(methodRoutes.methods, methodRoutes.methods.length + 1);
+            methodRoutes.methods[methodRoutes.methods.length - 1] = method;
+            methodRoutes.routes = Arrays.copyOf(methodRoutes.routes, methodRoutes.routes.length + 1);
+            methodRoutes.routes[methodRoutes.routes.length - 1] = route;
+
+            StringBuilder allow = new StringBuilder();
+            for (HttpMethod allowedMethod : methodRoutes.methods) {
+                if (allow.length() != 0)
+                    allow.append(", ");
+                allow.append(allowedMethod.name());
+            }
+            methodRoutes.methodNotAllowedRoute = Route.newRejection(HttpResponseStatus.METHOD_NOT_ALLOWED, allow.toString());
+        }
+        return methodRoutes;
+    }
+
+    /**
+     * Selects the {@link Route} for a request method.
+     * The decoded standard methods are the {@link HttpMethod} constants, so they are compared by identity first.
+     *
+     * @param method the request method
+     * @return the selected {@link Route}, or {@code null} if the method is not allowed
+     */
+    Route select(HttpMethod method) {
+        for (int i = 0; i < methods.length; i++)
+            if (methods[i] == method)
+                return routes[i];
+        for (int i = 0; i < methods.length; i++)
+            if (methods[i].equals(method))
+                return routes[i];
+        return anyMethodRoute;
+    }
+}
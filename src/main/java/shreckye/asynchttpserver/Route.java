@@ -0,0 +1,86 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import shreckye.asynchttpserver.codec.DefaultOutboundFullResponse;
+import shreckye.asynchttpserver.codec.StaticFullResponse;
+import shreckye.asynchttpserver.service.Service;
+import shreckye.asynchttpserver.service.ServiceFactory;
+
+/**
+ * A registered target that a request can be routed to,
+ * or a rejection that is responded to right away without creating a {@link shreckye.asynchttpserver.service.Service}.
+ *
+ * @author Yongshun Ye
+ */
+class Route {
+    static final String[] NO_PARAM_NAMES = new String[0];
+
+    final ServiceFactory serviceFactory;
+    final ServiceExecutor serviceExecutor;
+    // The names of the path parameters captured by this route, in the order they are captured
+    final String[] paramNames;
+    // The status of the response to send back if this is a rejection, or null otherwise
+    final HttpResponseStatus rejectionStatus;
+    // The value of the "allow" header of the rejection response
+    final String allow;
+    // The rejection response encoded ahead, or null if this is not a rejection
+    final StaticFullResponse rejectionResponse;
+    // The dispatcher for the class of the services last created, since a factory usually creates services of a single class.
+    // It's resolved ahead for a singleton service. Races only resolve it again, since dispatchers are immutable.
+    ServiceDispatcher dispatcher;
+
+    private Route(ServiceFactory serviceFactory, ServiceExecutor serviceExecutor, String[] paramNames,
+                  HttpResponseStatus rejectionStatus, String allow) {
+        this.serviceFactory = serviceFactory;
+        this.serviceExecutor = serviceExecutor;
+        this.paramNames = paramNames;
+        this.rejectionStatus = rejectionStatus;
+        this.allow = allow;
+        rejectionResponse = rejectionStatus == null ? null : new StaticFullResponse(newRejectionResponse(rejectionStatus, allow));
+        if (serviceFactory instanceof Service)
+            dispatcher = ServiceDispatcher.of(serviceFactory.getClass());
+    }
+
+    Route(ServiceFactory serviceFactory, ServiceExecutor serviceExecutor, String[] paramNames) {
+        this(serviceFactory, serviceExecutor, paramNames, null, null);
+    }
+
+    Route(ServiceFactory serviceFactory, ServiceExecutor serviceExecutor) {
+        this(serviceFactory, serviceExecutor, NO_PARAM_NAMES);
+    }
+
+    ServiceDispatcher dispatcher(Service service) {
+        ServiceDispatcher dispatcher = this.dispatcher;
+        if (dispatcher == null || dispatcher.serviceClass != service.getClass())
+            this.dispatcher = dispatcher = ServiceDispatcher.of(service.getClass());
+        return dispatcher;
+    }
+
+    static DefaultOutboundFullResponse newRejectionResponse(HttpResponseStatus rejectionStatus, String allow) {
+        DefaultOutboundFullResponse response = new DefaultOutboundFullResponse(rejectionStatus);
+        if (allow != null)
+            response.customHeaders().set(HttpHeaderNames.ALLOW, allow);
+        return response;
+    }
+
+    static Route newRejection(HttpResponseStatus rejectionStatus, String allow) {
+        return new Route(null, null, NO_PARAM_NAMES, rejectionStatus, allow);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver;
+
+import io.netty.handler.codec.http.HttpMethod;
+import shreckye.asynchttpserver.codec.PathParams;
+
+import java.util.Arrays;
+import java.util.regex.Matcher;
+
+/**
+ * The reusable state of the route lookups on a connection,
+ * which holds the captured path parameters as offsets into the URI so that a lookup allocates nothing.
+ *
+ * @author Yongshun Ye
+ */
+class RouteMatch {
+    Router router = null;
+    int[] paramOffsets = null;
+    int paramCount = 0;
+    Matcher[] matchers = null;
+    // The most specific routes that the URI matches but the request method doesn't
+    MethodRoutes methodNotAllowed = null;
+
+    void reset(Router router) {
+        if (this.router != router) {
+            this.router = router;
+            paramOffsets = new int[2 * router.maxParamCount];
+            matchers = new Matcher[router.regexCount];
+        }
+        paramCount = 0;
+        methodNotAllowed = null;
+    }
+
+    Route select(MethodRoutes methodRoutes, HttpMethod method) {
+        Route route = methodRoutes.select(method);
+        if (route == null && methodNotAllowed == null)
+            methodNotAllowed = methodRoutes;
+        return route;
+    }
+
+    void addParam(int start, int end) {
+        paramOffsets[2 * paramCount] = start;
+        paramOffsets[2 * paramCount + 1] = end;
+        paramCount++;
+    }
+
+    /**
+     * Returns the path parameters captured by the last lookup, which stay valid after the next lookup.
+     */
+    PathParams pathParams(String uri, Route route) {
+        if (route.paramNames.length == 0)
+            return PathParams.EMPTY;
+        return new PathParams(uri, route.paramNames, Arrays.copyOf(paramOffsets, 2 * route.paramNames.length));
+    }
+
+    Matcher matcher(Router.RegexEntry regexEntry, String uri) {
+        Matcher matcher = matchers[regexEntry.index];
+        if (matcher == null)
+            return matchers[regexEntry.index] = regexEntry.pattern.matcher(uri);
+        return matcher.reset(uri);
+    }
+}
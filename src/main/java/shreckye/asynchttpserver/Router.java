@@ -0,0 +1,1047 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver;
+
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import shreckye.asynchttpserver.service.ServiceFactory;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * An immutable set of {@link ServiceFactory} registrations that finds the one to serve a request.
+ * You need a {@link Builder} to build an instance.
+ * <p>
+ * The URI paths, path templates, and directory paths are compiled into one radix tree,
+ * and the regular expressions are attached to the tree nodes of their literal prefixes,
+ * so that the lookup cost doesn't grow with the number of registrations.
+ * A lookup is done directly on the URI without allocation.
+ * The router finds a match in the following order:
+ * 1. the one registered to the URI
+ * 2. the one registered to the URI path or a path template that matches, static segments before parameter segments
+ * 3. the one registered to the longest directory path or path template with a wildcard tail that matches
+ * 4. the one registered to the first regular expression that matches, in the order they are registered
+ * 5. the default one
+ * <p>
+ * A registration can be limited to a request method. If a request matches some registrations only by its URI and not its method,
+ * it's responded to with "405 Method Not Allowed" and an "allow" header, and if it matches none and there is no default one,
+ * it's responded to with "404 Not Found". Both are sent back before the request body is aggregated or any service is created.
+ *
+ * @author Yongshun Ye
+ */
+public final class Router {
+    static final Route NOT_FOUND_ROUTE = Route.newRejection(HttpResponseStatus.NOT_FOUND, null);
+
+    final HashMap<String, MethodRoutes> uriRoutes = new HashMap<>();
+    final Node root = new Node("");
+    final Route defaultRoute;
+    final int maxParamCount;
+    final int regexCount;
+    // A copy of the registrations to build a modified router from
+    final Builder registrations;
+
+    private Router(Builder builder) {
+        registrations = new Builder(builder);
+        for (UriEntry uriEntry : builder.uriEntries)
+            uriRoutes.put(uriEntry.uri, MethodRoutes.add(uriRoutes.get(uriEntry.uri), uriEntry.method, uriEntry.route));
+
+        int maxParamCount = 0;
+        for (PathEntry pathEntry : builder.pathEntries) {
+            Node node = root;
+            for (String part : pathEntry.parts)
+                node = part == null ? node.paramChild() : node.staticChild(part);
+            if (pathEntry.prefix)
+                node.prefixRoutes = MethodRoutes.add(node.prefixRoutes, pathEntry.method, pathEntry.route);
+            else
+                node.exactRoutes = MethodRoutes.add(node.exactRoutes, pathEntry.method, pathEntry.route);
+            maxParamCount = Math.max(maxParamCount, pathEntry.route.paramNames.length);
+        }
+
+        int regexCount = 0;
+        for (PatternEntry patternEntry : builder.patternEntries) {
+            maxParamCount = Math.max(maxParamCount, patternEntry.route.paramNames.length);
+            Node node = root.staticChild(literalPrefix(patternEntry.pattern));
+            // The registrations of the same regular expression for different methods share an entry
+            RegexEntry regexEntry = null;
+            for (RegexEntry existingEntry : node.regexEntries)
+                if (existingEntry.pattern.pattern().equals(patternEntry.pattern.pattern()) && existingEntry.pattern.flags() == patternEntry.pattern.flags())
+                    regexEntry = existingEntry;
+            if (regexEntry == null) {
+                regexEntry = new RegexEntry(regexCount++, patternEntry.pattern);
+                node.regexEntries = Arrays.copyOf(node.regexEntries, node.regexEntries.length + 1);
+                node.regexEntries[node.regexEntries.length - 1] = regexEntry;
+            }
+            regexEntry.methodRoutes = MethodRoutes.add(regexEntry.methodRoutes, patternEntry.method, patternEntry.route);
+        }
+        this.regexCount = regexCount;
+        this.maxParamCount = maxParamCount;
+
+        defaultRoute = builder.defaultRoute == null ? NOT_FOUND_ROUTE : builder.defaultRoute;
+    }
+
+    /**
+     * Finds the {@link Route} to serve a request.
+     *
+     * @param uri    the URI
+     * @param method the request method
+     * @param match  the state of the lookup, which holds the captured path parameters afterwards
+     * @return the matched {@link Route}, a rejection if the URI only matches for other methods,
+     * or the default one if none matches
+     */
+    Route route(String uri, HttpMethod method, RouteMatch match) {
+        match.reset(this);
+        Route route;
+        MethodRoutes methodRoutes = uriRoutes.get(uri);
+        if (methodRoutes != null && (route = match.select(methodRoutes, method)) != null)
+            return route;
+
+        int end = uri.indexOf('?');
+        if (end == -1)
+            end = uri.length();
+        if ((route = root.match(uri, 0, end, method, match)) != null)
+            return route;
+        match.paramCount = 0;
+        if ((route = root.matchPrefix(uri, 0, end, method, match)) != null)
+            return route;
+
+        if (regexCount != 0) {
+            match.paramCount = 0;
+            if ((route = matchRegex(uri, end, method, match)) != null)
+                return route;
+        }
+
+        if (match.methodNotAllowed != null)
+            return match.methodNotAllowed.methodNotAllowedRoute;
+        return defaultRoute;
+    }
+
+    Route matchRegex(String uri, int end, HttpMethod method, RouteMatch match) {
+        Route route;
+        RegexEntry regexEntry = null;
+        while ((regexEntry = nextRegexEntry(uri, end, regexEntry == null ? -1 : regexEntry.index)) != null) {
+            Matcher matcher = match.matcher(regexEntry, uri).region(0, end);
+            if (matcher.matches() && (route = match.select(regexEntry.methodRoutes, method)) != null) {
+                // The named groups are captured as the path parameters
+                for (String paramName : route.paramNames)
+                    match.addParam(matcher.start(paramName), matcher.end(paramName));
+                return route;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the first registered regular expression after an index whose literal prefix the URI starts with,
+     * which is attached to one of the nodes along the static path of the URI.
+     */
+    RegexEntry nextRegexEntry(String uri, int end, int lastIndex) {
+        RegexEntry next = null;
+        Node node = root;
+        int pos = 0;
+        while (node != null) {
+            // The entries of a node are in the order they are registered
+            for (RegexEntry regexEntry : node.regexEntries)
+                if (regexEntry.index > lastIndex) {
+                    if (next == null || regexEntry.index < next.index)
+                        next = regexEntry;
+                    break;
+                }
+            if (pos == end)
+                break;
+            Node child = node.matchingChild(uri, pos, end);
+            if (child != null)
+                pos += child.label.length();
+            node = child;
+        }
+        return next;
+    }
+
+    /**
+     * Returns the literal text that all the strings matching a regular expression start with.
+     */
+    static String literalPrefix(Pattern pattern) {
+        String regex = pattern.pattern();
+        // Flags change what the characters match and alternations may start with anything
+        if (pattern.flags() != 0 || regex.indexOf('|') != -1)
+            return "";
+
+        StringBuilder literalPrefix = new StringBuilder();
+        int i = regex.startsWith("^") ? 1 : 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            char literal;
+            int next;
+            if (c == '\\') {
+                // Escaped letters and digits are character classes, back references, or quotes
+                if (i + 1 == regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1)))
+                    break;
+                literal = regex.charAt(i + 1);
+                next = i + 2;
+            } else if ("[](){}.*+?^$|".indexOf(c) != -1)
+                break;
+            else {
+                literal = c;
+                next = i + 1;
+            }
+
+            // A quantified character may not be there
+            if (next < regex.length() && "*+?{".indexOf(regex.charAt(next)) != -1)
+                break;
+            literalPrefix.append(literal);
+            i = next;
+        }
+        return literalPrefix.toString();
+    }
+
+    /**
+     * Returns the names of the named groups in a regular expression in the order they appear.
+     */
+    static String[] groupNames(Pattern pattern) {
+        String regex = pattern.pattern();
+        ArrayList<String> groupNames = new ArrayList<>();
+        boolean inCharacterClass = false;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                // Skips quoted text as a whole and any other escaped character
+                if (regex.startsWith("Q", i + 1)) {
+                    int quoteEnd = regex.indexOf("\\E", i + 2);
+                    i = quoteEnd == -1 ? regex.length() : quoteEnd + 1;
+                } else
+                    i++;
+            } else if (inCharacterClass) {
+                if (c == ']')
+                    inCharacterClass = false;
+            } else if (c == '[')
+                inCharacterClass = true;
+            else if (regex.startsWith("(?<", i) && i + 3 < regex.length() && Character.isLetter(regex.charAt(i + 3))) {
+                int nameEnd = regex.indexOf('>', i + 3);
+                groupNames.add(regex.substring(i + 3, nameEnd));
+                i = nameEnd;
+            }
+        }
+        return groupNames.toArray(new String[groupNames.size()]);
+    }
+
+    /**
+     * A node in the radix tree, which matches its label after its parent.
+     */
+    static final class Node {
+        static final Node[] NO_NODES = new Node[0];
+        static final RegexEntry[] NO_REGEX_ENTRIES = new RegexEntry[0];
+
+        String label;
+        char[] firstChars = new char[0];
+        Node[] children = NO_NODES;
+        // Matches a non-empty segment as a path parameter
+        Node paramChild = null;
+        MethodRoutes exactRoutes = null;
+        // Matches anything after this node, which is captured as a path parameter if the route has a name for it
+        MethodRoutes prefixRoutes = null;
+        RegexEntry[] regexEntries = NO_REGEX_ENTRIES;
+
+        Node(String label) {
+            this.label = label;
+        }
+
+        Node paramChild() {
+            if (paramChild == null)
+                paramChild = new Node("");
+            return paramChild;
+        }
+
+        /**
+         * Returns the descendant node that ends with the static text after this node, splitting the nodes as needed.
+         */
+        Node staticChild(String text) {
+            Node node = this;
+            while (!text.isEmpty()) {
+                int index = node.childIndex(text.charAt(0));
+                if (index == -1) {
+                    Node child = new Node(text);
+                    node.firstChars = Arrays.copyOf(node.firstChars, node.firstChars.length + 1);
+                    node.firstChars[node.firstChars.length - 1] = text.charAt(0);
+                    node.children = Arrays.copyOf(node.children, node.children.length + 1);
+                    node.children[node.children.length - 1] = child;
+                    return child;
+                }
+
+                Node child = node.children[index];
+                int common = 0;
+                int maxCommon = Math.min(child.label.length(), text.length());
+                while (common < maxCommon && child.label.charAt(common) == text.charAt(common))
+                    common++;
+                if (common < child.label.length()) {
+                    Node split = new Node(child.label.substring(0, common));
+                    child.label = child.label.substring(common);
+                    split.firstChars = new char[]{child.label.charAt(0)};
+                    split.children = new Node[]{child};
+                    node.children[index] = split;
+                    child = split;
+                }
+
+                node = child;
+                text = text.substring(common);
+            }
+            return node;
+        }
+
+        int childIndex(char c) {
+            for (int i = 0; i < firstChars.length; i++)
+                if (firstChars[i] == c)
+                    return i;
+            return -1;
+        }
+
+        Node matchingChild(String uri, int pos, int end) {
+            int index = childIndex(uri.charAt(pos));
+            if (index == -1)
+                return null;
+            Node child = children[index];
+            int length = child.label.length();
+            return pos + length <= end && uri.regionMatches(pos, child.label, 0, length) ? child : null;
+        }
+
+        /**
+         * Matches the URI paths and the path templates without a wildcard tail, which match the whole path.
+         */
+        Route match(String uri, int pos, int end, HttpMethod method, RouteMatch match) {
+            Route route;
+            if (pos == end)
+                return exactRoutes != null ? match.select(exactRoutes, method) : null;
+
+            Node child = matchingChild(uri, pos, end);
+            if (child != null && (route = child.match(uri, pos + child.label.length(), end, method, match)) != null)
+                return route;
+
+            if (paramChild != null) {
+                int segmentEnd = segmentEnd(uri, pos, end);
+                if (segmentEnd > pos) {
+                    int paramCount = match.paramCount;
+                    match.addParam(pos, segmentEnd);
+                    if ((route = paramChild.match(uri, segmentEnd, end, method, match)) != null)
+                        return route;
+                    match.paramCount = paramCount;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Matches the directory paths and the path templates with a wildcard tail, the longest one first,
+         * after no whole path matches.
+         */
+        Route matchPrefix(String uri, int pos, int end, HttpMethod method, RouteMatch match) {
+            Route route;
+            if (pos < end) {
+                Node child = matchingChild(uri, pos, end);
+                if (child != null && (route = child.matchPrefix(uri, pos + child.label.length(), end, method, match)) != null)
+                    return route;
+
+                if (paramChild != null) {
+                    int segmentEnd = segmentEnd(uri, pos, end);
+                    if (segmentEnd > pos) {
+                        int paramCount = match.paramCount;
+                        match.addParam(pos, segmentEnd);
+                        if ((route = paramChild.matchPrefix(uri, segmentEnd, end, method, match)) != null)
+                            return route;
+                        match.paramCount = paramCount;
+                    }
+                }
+            }
+
+            // Deeper nodes have been tried first, so this is the longest prefix that matches
+            if (prefixRoutes != null && (route = match.select(prefixRoutes, method)) != null) {
+                if (route.paramNames.length > match.paramCount)
+                    match.addParam(pos, end);
+                return route;
+            }
+            return null;
+        }
+
+        static int segmentEnd(String uri, int pos, int end) {
+            while (pos < end && uri.charAt(pos) != '/')
+                pos++;
+            return pos;
+        }
+    }
+
+    static class RegexEntry {
+        final int index;
+        final Pattern pattern;
+        MethodRoutes methodRoutes = null;
+
+        RegexEntry(int index, Pattern pattern) {
+            this.index = index;
+            this.pattern = pattern;
+        }
+    }
+
+    static class UriEntry {
+        // The conflict key with the request method
+        final String key;
+        final String uri;
+        final HttpMethod method;
+        final Route route;
+
+        UriEntry(String key, String uri, HttpMethod method, Route route) {
+            this.key = key;
+            this.uri = uri;
+            this.method = method;
+            this.route = route;
+        }
+    }
+
+    static class PathEntry {
+        // The conflict key with the request method
+        final String key;
+        // The static texts, with null for the parameter segments
+        final ArrayList<String> parts;
+        final boolean prefix;
+        final HttpMethod method;
+        final Route route;
+
+        PathEntry(String key, ArrayList<String> parts, boolean prefix, HttpMethod method, Route route) {
+            this.key = key;
+            this.parts = parts;
+            this.prefix = prefix;
+            this.method = method;
+            this.route = route;
+        }
+    }
+
+    static class PatternEntry {
+        final Pattern pattern;
+        final HttpMethod method;
+        final Route route;
+
+        PatternEntry(Pattern pattern, HttpMethod method, Route route) {
+            this.pattern = pattern;
+            this.method = method;
+            this.route = route;
+        }
+    }
+
+    /**
+     * The builder class to build a {@link Router}.
+     * Each registration method has an overload that takes a request method, so that the requests to the same URI or path
+     * with different request methods are served by different {@link ServiceFactory}s.
+     * A request whose URI or path only matches for other request methods is responded to with "405 Method Not Allowed" right away.
+     * Each registration can be removed with the matching unregistration method, so that a route of a running {@link Router}
+     * can be replaced in a copy of its registrations made with {@link #Builder(Router)}.
+     */
+    public static class Builder {
+        final ArrayList<UriEntry> uriEntries = new ArrayList<>();
+        final ArrayList<PathEntry> pathEntries = new ArrayList<>();
+        // The keys of the registrations with their request methods to find conflicts
+        final HashSet<String> keys = new HashSet<>();
+        final ArrayList<PatternEntry> patternEntries = new ArrayList<>();
+        Route defaultRoute = null;
+
+        /**
+         * Creates a new instance.
+         */
+        public Builder() {
+        }
+
+        /**
+         * Creates a new instance with all the registrations of an existing {@link Router},
+         * so that a modified copy of it can be built while it's still in use.
+         *
+         * @param router the existing {@link Router}
+         */
+        public Builder(Router router) {
+            this(router.registrations);
+        }
+
+        private Builder(Builder builder) {
+            uriEntries.addAll(builder.uriEntries);
+            pathEntries.addAll(builder.pathEntries);
+            keys.addAll(builder.keys);
+            patternEntries.addAll(builder.patternEntries);
+            defaultRoute = builder.defaultRoute;
+        }
+
+        /**
+         * Builds a {@link Router} with the registrations so far. This {@link Builder} can still be used afterwards.
+         *
+         * @return the built {@link Router}
+         */
+        public Router build() {
+            return new Router(this);
+        }
+
+        // The keys of the paths, directory paths and path templates are of the tree nodes they are registered to,
+        // so a template without parameters conflicts with the same path and one with a wildcard tail with the same directory path,
+        // while a path with a literal "{}" or "*" conflicts with neither. A path parameter is keyed as a NUL,
+        // which a URI path can only contain percent-encoded.
+        static String key(String key, HttpMethod method) {
+            return (method == null ? "*" : method.name()) + ' ' + key;
+        }
+
+        private String addKey(String key, HttpMethod method, String conflictMessage) throws IllegalArgumentException {
+            key = key(key, method);
+            if (!keys.add(key))
+                throw new IllegalArgumentException(conflictMessage);
+            return key;
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve all requests to a certain URI.
+         *
+         * @param uri            the URI
+         * @param serviceFactory the {@link ServiceFactory} to register
+         * @return this {@link Builder}
+         * @throws IllegalArgumentException if the URI conflicts with an existing one
+         */
+        public Builder registerUri(String uri, ServiceFactory serviceFactory) throws IllegalArgumentException {
+            return registerUri(null, uri, serviceFactory, null);
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve all requests to a certain URI with a {@link ServiceExecutor}.
+         *
+         * @param uri             the URI
+         * @param serviceFactory  the {@link ServiceFactory} to register
+         * @param serviceExecutor the {@link ServiceExecutor} to run the services on, or {@code null} to run them on the event loops
+         * @return this {@link Builder}
+         * @throws IllegalArgumentException if the URI conflicts with an existing one
+         */
+        public Builder registerUri(String uri, ServiceFactory serviceFactory, ServiceExecutor serviceExecutor) throws IllegalArgumentException {
+            return registerUri(null, uri, serviceFactory, serviceExecutor);
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve the requests with a request method to a certain URI.
+         *
+         * @param method         the request method, or {@code null} for any request method
+         * @param uri            the URI
+         * @param serviceFactory the {@link ServiceFactory} to register
+         * @return this {@link Builder}
+         * @throws IllegalArgumentException if the URI conflicts with an existing one for the request method
+         */
+        public Builder registerUri(HttpMethod method, String uri, ServiceFactory serviceFactory) throws IllegalArgumentException {
+            return registerUri(method, uri, serviceFactory, null);
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve the requests with a request method to a certain URI with a {@link ServiceExecutor}.
+         *
+         * @param method          the request method, or {@code null} for any request method
+         * @param uri             the URI
+         * @param serviceFactory  the {@link ServiceFactory} to register
+         * @param serviceExecutor the {@link ServiceExecutor} to run the services on, or {@code null} to run them on the event loops
+         * @return this {@link Builder}
+         * @throws IllegalArgumentException if the URI conflicts with an existing one for the request method
+         */
+        public Builder registerUri(HttpMethod method, String uri, ServiceFactory serviceFactory, ServiceExecutor serviceExecutor) throws IllegalArgumentException {
+            String key = addKey("uri " + uri, method, "the URI conflicts with an existing one");
+            uriEntries.add(new UriEntry(key, uri, method, new Route(serviceFactory, serviceExecutor)));
+            return this;
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve all requests to a URIs with a certain path.
+         *
+         * @param path           the path
+         * @param serviceFactory the {@link ServiceFactory} to register
+         * @return this {@link Builder}
+         * @throws IllegalArgumentException if the path conflicts with an existing one
+         */
+        public Builder registerUriPath(String path, ServiceFactory serviceFactory) throws IllegalArgumentException {
+            return registerUriPath(null, path, serviceFactory, null);
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve all requests to a URIs with a certain path with a {@link ServiceExecutor}.
+         *
+         * @param path            the path
+         * @param serviceFactory  the {@link ServiceFactory} to register
+         * @param serviceExecutor the {@link ServiceExecutor} to run the services on, or {@code null} to run them on the event loops
+         * @return this {@link Builder}
+         * @throws IllegalArgumentException if the path conflicts with an existing one
+         */
+        public Builder registerUriPath(String path, ServiceFactory serviceFactory, ServiceExecutor serviceExecutor) throws IllegalArgumentException {
+            return registerUriPath(null, path, serviceFactory, serviceExecutor);
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve the requests with a request method to a URIs with a certain path.
+         *
+         * @param method         the request method, or {@code null} for any request method
+         * @param path           the path
+         * @param serviceFactory the {@link ServiceFactory} to register
+         * @return this {@link Builder}
+         * @throws IllegalArgumentException if the path conflicts with an existing one for the request method
+         */
+        public Builder registerUriPath(HttpMethod method, String path, ServiceFactory serviceFactory) throws IllegalArgumentException {
+            return registerUriPath(method, path, serviceFactory, null);
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve the requests with a request method to a URIs with a certain path with a {@link ServiceExecutor}.
+         *
+         * @param method          the request method, or {@code null} for any request method
+         * @param path            the path
+         * @param serviceFactory  the {@link ServiceFactory} to register
+         * @param serviceExecutor the {@link ServiceExecutor} to run the services on, or {@code null} to run them on the event loops
+         * @return this {@link Builder}
+         * @throws IllegalArgumentException if the path conflicts with an existing one for the request method
+         */
+        public Builder registerUriPath(HttpMethod method, String path, ServiceFactory serviceFactory, ServiceExecutor serviceExecutor) throws IllegalArgumentException {
+            String key = addKey("path " + path, method, "the URI path conflicts with an existing one");
+            pathEntries.add(new PathEntry(key, new ArrayList<>(Collections.singletonList(path)), false, method, new Route(serviceFactory, serviceExecutor)));
+            return this;
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve all requests to URIs with a certain directory path prefix.
+         * If the directory paths of several registrations match, the longest one is used.
+         *
+         * @param directoryPath  the directory path
+         * @param serviceFactory the {@link ServiceFactory} to register
+         * @return this {@link Builder}
+         * @throws IllegalArgumentException if the path conflicts with an existing one
+         */
+        public Builder registerUriDirectoryPath(String directoryPath, ServiceFactory serviceFactory) throws IllegalArgumentException {
+            return registerUriDirectoryPath(null, directoryPath, serviceFactory, null);
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve all requests to URIs with a certain directory path prefix with a {@link ServiceExecutor}.
+         * If the directory paths of several registrations match, the longest one is used.
+         *
+         * @param directoryPath   the directory path
+         * @param serviceFactory  the {@link ServiceFactory} to register
+         * @param serviceExecutor the {@link ServiceExecutor} to run the services on, or {@code null} to run them on the event loops
+         * @return this {@link Builder}
+         * @throws IllegalArgumentException if the path conflicts with an existing one
+         */
+        public Builder registerUriDirectoryPath(String directoryPath, ServiceFactory serviceFactory, ServiceExecutor serviceExecutor) throws IllegalArgumentException {
+            return registerUriDirectoryPath(null, directoryPath, serviceFactory, serviceExecutor);
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve the requests with a request method to URIs with a certain directory path prefix.
+         *
+         * @param method         the request method, or {@code null} for any request method
+         * @param directoryPath  the directory path
+         * @param serviceFactory the {@link ServiceFactory} to register
+         * @return this {@link Builder}
+         * @throws IllegalArgumentException if the path conflicts with an existing one for the request method
+         */
+        public Builder registerUriDirectoryPath(HttpMethod method, String directoryPath, ServiceFactory serviceFactory) throws IllegalArgumentException {
+            return registerUriDirectoryPath(method, directoryPath, serviceFactory, null);
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve the requests with a request method to URIs with a certain directory path prefix
+         * with a {@link ServiceExecutor}.
+         *
+         * @param method          the request method, or {@code null} for any request method
+         * @param directoryPath   the directory path
+         * @param serviceFactory  the {@link ServiceFactory} to register
+         * @param serviceExecutor the {@link ServiceExecutor} to run the services on, or {@code null} to run them on the event loops
+         * @return this {@link Builder}
+         * @throws IllegalArgumentException if the path conflicts with an existing one for the request method
+         */
+        public Builder registerUriDirectoryPath(HttpMethod method, String directoryPath, ServiceFactory serviceFactory, ServiceExecutor serviceExecutor) throws IllegalArgumentException {
+            String key = addKey("prefix " + directoryPath, method, "the URI directory path conflicts with an existing one");
+            pathEntries.add(new PathEntry(key, new ArrayList<>(Collections.singletonList(directoryPath)), true, method, new Route(serviceFactory, serviceExecutor)));
+            return this;
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve all requests to URIs with a path that matches a template.
+         * A segment of the template written as "{name}" matches any non-empty segment and captures it as a path parameter,
+         * and a "*" at the end of the template matches anything and captures it as the path parameter named "*".
+         * For example, "/users/{id}/files/*" matches "/users/42/files/a/b.txt".
+         *
+         * @param template       the path template
+         * @param serviceFactory the {@link ServiceFactory} to register
+         * @return this {@link Builder}
+         * @throws IllegalArgumentException if the template is invalid or conflicts with an existing one
+         */
+        public Builder registerPathTemplate(String template, ServiceFactory serviceFactory) throws IllegalArgumentException {
+            return registerPathTemplate(null, template, serviceFactory, null);
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve all requests to URIs with a path that matches a template with a {@link ServiceExecutor}.
+         *
+         * @param template        the path template
+         * @param serviceFactory  the {@link ServiceFactory} to register
+         * @param serviceExecutor the {@link ServiceExecutor} to run the services on, or {@code null} to run them on the event loops
+         * @return this {@link Builder}
+         * @throws IllegalArgumentException if the template is invalid or conflicts with an existing one
+         * @see #registerPathTemplate(String, ServiceFactory)
+         */
+        public Builder registerPathTemplate(String template, ServiceFactory serviceFactory, ServiceExecutor serviceExecutor) throws IllegalArgumentException {
+            return registerPathTemplate(null, template, serviceFactory, serviceExecutor);
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve the requests with a request method to URIs with a path that matches a template.
+         *
+         * @param method         the request method, or {@code null} for any request method
+         * @param template       the path template
+         * @param serviceFactory the {@link ServiceFactory} to register
+         * @return this {@link Builder}
+         * @throws IllegalArgumentException if the template is invalid or conflicts with an existing one for the request method
+         * @see #registerPathTemplate(String, ServiceFactory)
+         */
+        public Builder registerPathTemplate(HttpMethod method, String template, ServiceFactory serviceFactory) throws IllegalArgumentException {
+            return registerPathTemplate(method, template, serviceFactory, null);
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve the requests with a request method to URIs with a path that matches a template
+         * with a {@link ServiceExecutor}.
+         *
+         * @param method          the request method, or {@code null} for any request method
+         * @param template        the path template
+         * @param serviceFactory  the {@link ServiceFactory} to register
+         * @param serviceExecutor the {@link ServiceExecutor} to run the services on, or {@code null} to run them on the event loops
+         * @return this {@link Builder}
+         * @throws IllegalArgumentException if the template is invalid or conflicts with an existing one for the request method
+         * @see #registerPathTemplate(String, ServiceFactory)
+         */
+        public Builder registerPathTemplate(HttpMethod method, String template, ServiceFactory serviceFactory, ServiceExecutor serviceExecutor) throws IllegalArgumentException {
+            PathEntry pathEntry = newTemplateEntry(method, template, serviceFactory, serviceExecutor);
+            if (!keys.add(pathEntry.key))
+                throw new IllegalArgumentException("the path template conflicts with an existing one");
+            pathEntries.add(pathEntry);
+            return this;
+        }
+
+        static PathEntry newTemplateEntry(HttpMethod method, String template, ServiceFactory serviceFactory, ServiceExecutor serviceExecutor)
+                throws IllegalArgumentException {
+            ArrayList<String> parts = new ArrayList<>();
+            ArrayList<String> paramNames = new ArrayList<>();
+            StringBuilder key = new StringBuilder(), staticText = new StringBuilder();
+            boolean prefix = false;
+            for (int i = 0; i < template.length(); ) {
+                char c = template.charAt(i);
+                if (c == '{') {
+                    int closeIndex = template.indexOf('}', i);
+                    if (closeIndex == -1)
+                        throw new IllegalArgumentException("a path parameter is not closed");
+                    if (i == 0 || template.charAt(i - 1) != '/' || closeIndex + 1 < template.length() && template.charAt(closeIndex + 1) != '/')
+                        throw new IllegalArgumentException("a path parameter must be a whole segment");
+                    String paramName = template.substring(i + 1, closeIndex);
+                    if (paramName.isEmpty() || paramNames.contains(paramName))
+                        throw new IllegalArgumentException("a path parameter name is empty or duplicate");
+
+                    parts.add(staticText.toString());
+                    staticText.setLength(0);
+                    parts.add(null);
+                    paramNames.add(paramName);
+                    key.append('\0');
+                    i = closeIndex + 1;
+                } else if (c == '*') {
+                    if (i != template.length() - 1)
+                        throw new IllegalArgumentException("a wildcard can only be at the end of a path template");
+                    prefix = true;
+                    paramNames.add("*");
+                    i++;
+                } else {
+                    staticText.append(c);
+                    key.append(c);
+                    i++;
+                }
+            }
+            parts.add(staticText.toString());
+
+            return new PathEntry(key((prefix ? "prefix " : "path ") + key, method), parts, prefix, method,
+                    new Route(serviceFactory, serviceExecutor, paramNames.toArray(new String[paramNames.size()])));
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve all requests to URIs that match a regular expression.
+         * The named groups in the regular expression are captured as path parameters.
+         *
+         * @param regex          the regular expression string
+         * @param serviceFactory the {@link ServiceFactory} to register
+         * @return this {@link Builder}
+         * @throws PatternSyntaxException
+         */
+        public Builder registerPathRegex(String regex, ServiceFactory serviceFactory) throws PatternSyntaxException {
+            return registerPathRegex(null, Pattern.compile(regex), serviceFactory, null);
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve all requests to URIs that match a regular expression with a {@link ServiceExecutor}.
+         *
+         * @param regex           the regular expression string
+         * @param serviceFactory  the {@link ServiceFactory} to register
+         * @param serviceExecutor the {@link ServiceExecutor} to run the services on, or {@code null} to run them on the event loops
+         * @return this {@link Builder}
+         * @throws PatternSyntaxException
+         */
+        public Builder registerPathRegex(String regex, ServiceFactory serviceFactory, ServiceExecutor serviceExecutor) throws PatternSyntaxException {
+            return registerPathRegex(null, Pattern.compile(regex), serviceFactory, serviceExecutor);
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve all requests to URIs that match a regular expression.
+         *
+         * @param pattern        the regular expression {@link Pattern}
+         * @param serviceFactory the {@link ServiceFactory} to register
+         * @return this {@link Builder}
+         */
+        public Builder registerPathRegex(Pattern pattern, ServiceFactory serviceFactory) {
+            return registerPathRegex(null, pattern, serviceFactory, null);
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve all requests to URIs that match a regular expression with a {@link ServiceExecutor}.
+         *
+         * @param pattern         the regular expression {@link Pattern}
+         * @param serviceFactory  the {@link ServiceFactory} to register
+         * @param serviceExecutor the {@link ServiceExecutor} to run the services on, or {@code null} to run them on the event loops
+         * @return this {@link Builder}
+         */
+        public Builder registerPathRegex(Pattern pattern, ServiceFactory serviceFactory, ServiceExecutor serviceExecutor) {
+            return registerPathRegex(null, pattern, serviceFactory, serviceExecutor);
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve the requests with a request method to URIs that match a regular expression.
+         *
+         * @param method         the request method, or {@code null} for any request method
+         * @param regex          the regular expression string
+         * @param serviceFactory the {@link ServiceFactory} to register
+         * @return this {@link Builder}
+         * @throws PatternSyntaxException
+         */
+        public Builder registerPathRegex(HttpMethod method, String regex, ServiceFactory serviceFactory) throws PatternSyntaxException {
+            return registerPathRegex(method, Pattern.compile(regex), serviceFactory, null);
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve the requests with a request method to URIs that match a regular expression
+         * with a {@link ServiceExecutor}.
+         *
+         * @param method          the request method, or {@code null} for any request method
+         * @param regex           the regular expression string
+         * @param serviceFactory  the {@link ServiceFactory} to register
+         * @param serviceExecutor the {@link ServiceExecutor} to run the services on, or {@code null} to run them on the event loops
+         * @return this {@link Builder}
+         * @throws PatternSyntaxException
+         */
+        public Builder registerPathRegex(HttpMethod method, String regex, ServiceFactory serviceFactory, ServiceExecutor serviceExecutor) throws PatternSyntaxException {
+            return registerPathRegex(method, Pattern.compile(regex), serviceFactory, serviceExecutor);
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve the requests with a request method to URIs that match a regular expression.
+         *
+         * @param method         the request method, or {@code null} for any request method
+         * @param pattern        the regular expression {@link Pattern}
+         * @param serviceFactory the {@link ServiceFactory} to register
+         * @return this {@link Builder}
+         */
+        public Builder registerPathRegex(HttpMethod method, Pattern pattern, ServiceFactory serviceFactory) {
+            return registerPathRegex(method, pattern, serviceFactory, null);
+        }
+
+        /**
+         * Registers a {@link ServiceFactory} to serve the requests with a request method to URIs that match a regular expression
+         * with a {@link ServiceExecutor}.
+         *
+         * @param method          the request method, or {@code null} for any request method
+         * @param pattern         the regular expression {@link Pattern}
+         * @param serviceFactory  the {@link ServiceFactory} to register
+         * @param serviceExecutor the {@link ServiceExecutor} to run the services on, or {@code null} to run them on the event loops
+         * @return this {@link Builder}
+         */
+        public Builder registerPathRegex(HttpMethod method, Pattern pattern, ServiceFactory serviceFactory, ServiceExecutor serviceExecutor) {
+            patternEntries.add(new PatternEntry(pattern, method, new Route(serviceFactory, serviceExecutor, groupNames(pattern))));
+            return this;
+        }
+
+        /**
+         * Registers a default {@link ServiceFactory} to serve all requests that couldn't find a match.
+         * If none is registered, a response with status "404 Not Found" is sent back right away.
+         *
+         * @param serviceFactory the {@link ServiceFactory} to register
+         * @return this {@link Builder}
+         */
+        public Builder registerDefault(ServiceFactory serviceFactory) {
+            return registerDefault(serviceFactory, null);
+        }
+
+        /**
+         * Registers a default {@link ServiceFactory} to serve all requests that couldn't find a match with a {@link ServiceExecutor}.
+         *
+         * @param serviceFactory  the {@link ServiceFactory} to register
+         * @param serviceExecutor the {@link ServiceExecutor} to run the services on, or {@code null} to run them on the event loops
+         * @return this {@link Builder}
+         */
+        public Builder registerDefault(ServiceFactory serviceFactory, ServiceExecutor serviceExecutor) {
+            defaultRoute = new Route(serviceFactory, serviceExecutor);
+            return this;
+        }
+
+        private void removeKey(String key) {
+            if (keys.remove(key)) {
+                uriEntries.removeIf(uriEntry -> uriEntry.key.equals(key));
+                pathEntries.removeIf(pathEntry -> pathEntry.key.equals(key));
+            }
+        }
+
+        /**
+         * Removes the registration to a URI for any request method, so that a different one can be registered in its place.
+         * Nothing is changed if there is no such registration.
+         *
+         * @param uri the URI
+         * @return this {@link Builder}
+         */
+        public Builder unregisterUri(String uri) {
+            return unregisterUri(null, uri);
+        }
+
+        /**
+         * Removes the registration to a URI for a request method.
+         * Nothing is changed if there is no such registration.
+         *
+         * @param method the request method, or {@code null} for the registration for any request method
+         * @param uri    the URI
+         * @return this {@link Builder}
+         */
+        public Builder unregisterUri(HttpMethod method, String uri) {
+            removeKey(key("uri " + uri, method));
+            return this;
+        }
+
+        /**
+         * Removes the registration to a URI path for any request method, so that a different one can be registered in its place.
+         * Nothing is changed if there is no such registration.
+         *
+         * @param path the path
+         * @return this {@link Builder}
+         */
+        public Builder unregisterUriPath(String path) {
+            return unregisterUriPath(null, path);
+        }
+
+        /**
+         * Removes the registration to a URI path for a request method.
+         * Nothing is changed if there is no such registration.
+         *
+         * @param method the request method, or {@code null} for the registration for any request method
+         * @param path   the path
+         * @return this {@link Builder}
+         */
+        public Builder unregisterUriPath(HttpMethod method, String path) {
+            removeKey(key("path " + path, method));
+            return this;
+        }
+
+        /**
+         * Removes the registration to a directory path for any request method, so that a different one can be registered in its place.
+         * Nothing is changed if there is no such registration.
+         *
+         * @param directoryPath the directory path
+         * @return this {@link Builder}
+         */
+        public Builder unregisterUriDirectoryPath(String directoryPath) {
+            return unregisterUriDirectoryPath(null, directoryPath);
+        }
+
+        /**
+         * Removes the registration to a directory path for a request method.
+         * Nothing is changed if there is no such registration.
+         *
+         * @param method        the request method, or {@code null} for the registration for any request method
+         * @param directoryPath the directory path
+         * @return this {@link Builder}
+         */
+        public Builder unregisterUriDirectoryPath(HttpMethod method, String directoryPath) {
+            removeKey(key("prefix " + directoryPath, method));
+            return this;
+        }
+
+        /**
+         * Removes the registration to a path template for any request method, so that a different one can be registered in its place.
+         * The names of the path parameters don't have to be the same as the registered ones.
+         * Nothing is changed if there is no such registration.
+         *
+         * @param template the path template
+         * @return this {@link Builder}
+         * @throws IllegalArgumentException if the template is invalid
+         */
+        public Builder unregisterPathTemplate(String template) throws IllegalArgumentException {
+            return unregisterPathTemplate(null, template);
+        }
+
+        /**
+         * Removes the registration to a path template for a request method.
+         * Nothing is changed if there is no such registration.
+         *
+         * @param method   the request method, or {@code null} for the registration for any request method
+         * @param template the path template
+         * @return this {@link Builder}
+         * @throws IllegalArgumentException if the template is invalid
+         */
+        public Builder unregisterPathTemplate(HttpMethod method, String template) throws IllegalArgumentException {
+            removeKey(newTemplateEntry(method, template, null, null).key);
+            return this;
+        }
+
+        /**
+         * Removes all the registrations to a regular expression for any request method.
+         * Nothing is changed if there is no such registration.
+         *
+         * @param regex the regular expression string
+         * @return this {@link Builder}
+         * @throws PatternSyntaxException
+         */
+        public Builder unregisterPathRegex(String regex) throws PatternSyntaxException {
+            return unregisterPathRegex(null, Pattern.compile(regex));
+        }
+
+        /**
+         * Removes all the registrations to a regular expression for a request method.
+         * A regular expression is the same as a registered one if both its string and its flags are.
+         * Nothing is changed if there is no such registration.
+         *
+         * @param method  the request method, or {@code null} for the registrations for any request method
+         * @param pattern the regular expression {@link Pattern}
+         * @return this {@link Builder}
+         */
+        public Builder unregisterPathRegex(HttpMethod method, Pattern pattern) {
+            patternEntries.removeIf(patternEntry -> Objects.equals(patternEntry.method, method)
+                    && patternEntry.pattern.pattern().equals(pattern.pattern()) && patternEntry.pattern.flags() == pattern.flags());
+            return this;
+        }
+
+        /**
+         * Removes the default {@link ServiceFactory}, so that the requests that couldn't find a match are responded to
+         * with "404 Not Found".
+         *
+         * @return this {@link Builder}
+         */
+        public Builder unregisterDefault() {
+            defaultRoute = null;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver;
+
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * An immutable table of {@link Router}s for different hosts, so that one server can serve several virtual hosts.
+ * You need a {@link Builder} to build an instance.
+ * <p>
+ * The {@link Router} for a request is found by its "host" header, without the port and case-insensitively,
+ * in the following order:
+ * 1. the one registered to the exact host name
+ * 2. the one registered to the longest wildcard host name such as "*.example.com" that matches,
+ * which matches any subdomain but not "example.com" itself
+ * 3. the default one
+ * <p>
+ * A {@link RoutingTable} can be swapped into a running server with {@link AsyncHttpServer#setRoutingTable(RoutingTable)}.
+ *
+ * @author Yongshun Ye
+ */
+public final class RoutingTable {
+    final HashMap<String, Router> hostRouters;
+    // Keyed by the suffixes of the wildcard host names, such as ".example.com"
+    final HashMap<String, Router> wildcardHostRouters;
+    final Router defaultRouter;
+
+    private RoutingTable(Builder builder) {
+        hostRouters = new HashMap<>(builder.hostRouters);
+        wildcardHostRouters = new HashMap<>(builder.wildcardHostRouters);
+        defaultRouter = builder.defaultRouter == null ? new Router.Builder().build() : builder.defaultRouter;
+    }
+
+    /**
+     * Returns the {@link Router} for a host.
+     *
+     * @param host the value of the "host" header, which may contain a port, or {@code null} if there is none
+     * @return the {@link Router}
+     */
+    public Router router(String host) {
+        if (host == null || hostRouters.isEmpty() && wildcardHostRouters.isEmpty())
+            return defaultRouter;
+
+        String hostName = hostName(host);
+        Router router = hostRouters.get(hostName);
+        if (router != null)
+            return router;
+        if (!wildcardHostRouters.isEmpty())
+            for (int i = hostName.indexOf('.'); i != -1; i = hostName.indexOf('.', i + 1))
+                if ((router = wildcardHostRouters.get(hostName.substring(i))) != null)
+                    return router;
+        return defaultRouter;
+    }
+
+    /**
+     * Returns the default {@link Router} for the hosts without their own ones.
+     *
+     * @return the default {@link Router}
+     */
+    public Router defaultRouter() {
+        return defaultRouter;
+    }
+
+    /**
+     * Removes the port and lowercases a host.
+     */
+    static String hostName(String host) {
+        int portIndex;
+        if (host.startsWith("[")) {
+            // An IPv6 address
+            int closeIndex = host.indexOf(']');
+            portIndex = closeIndex == -1 ? -1 : host.indexOf(':', closeIndex);
+        } else
+            portIndex = host.indexOf(':');
+        if (portIndex != -1)
+            host = host.substring(0, portIndex);
+        return host.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The builder class to build a {@link RoutingTable}.
+     */
+    public static class Builder {
+        final HashMap<String, Router> hostRouters = new HashMap<>();
+        final HashMap<String, Router> wildcardHostRouters = new HashMap<>();
+        Router defaultRouter = null;
+
+        /**
+         * Creates a new instance.
+         */
+        public Builder() {
+        }
+
+        /**
+         * Creates a new instance with all the registrations of an existing {@link RoutingTable},
+         * so that a modified copy of it can be built while it's still in use.
+         *
+         * @param routingTable the existing {@link RoutingTable}
+         */
+        public Builder(RoutingTable routingTable) {
+            hostRouters.putAll(routingTable.hostRouters);
+            wildcardHostRouters.putAll(routingTable.wildcardHostRouters);
+            defaultRouter = routingTable.defaultRouter;
+        }
+
+        /**
+         * Builds a {@link RoutingTable} with the registrations so far. This {@link Builder} can still be used afterwards.
+         *
+         * @return the built {@link RoutingTable}
+         */
+        public RoutingTable build() {
+            return new RoutingTable(this);
+        }
+
+        /**
+         * Registers a {@link Router} to route the requests to a host.
+         *
+         * @param host   the host name such as "example.com", or a wildcard host name such as "*.example.com"
+         * @param router the {@link Router}
+         * @return this {@link Builder}
+         * @throws IllegalArgumentException if the host name is invalid or conflicts with an existing one
+         */
+        public Builder registerHost(String host, Router router) throws IllegalArgumentException {
+            String hostName = host.toLowerCase(Locale.ROOT);
+            Router existingRouter;
+            if (hostName.startsWith("*.")) {
+                if (hostName.indexOf('*', 1) != -1 || hostName.length() == 2)
+                    throw new IllegalArgumentException("a wildcard host name must be like \"*.example.com\"");
+                existingRouter = wildcardHostRouters.putIfAbsent(hostName.substring(1), router);
+            } else {
+                if (hostName.isEmpty() || hostName.indexOf('*') != -1)
+                    throw new IllegalArgumentException("a host name is empty or has a wildcard not at the start");
+                existingRouter = hostRouters.putIfAbsent(hostName, router);
+            }
+            if (existingRouter != null)
+                throw new IllegalArgumentException("the host conflicts with an existing one");
+            return this;
+        }
+
+        /**
+         * Removes the {@link Router} registered to a host, so that the requests to it are routed by the default one.
+         *
+         * @param host the host name or the wildcard host name
+         * @return this {@link Builder}
+         */
+        public Builder unregisterHost(String host) {
+            String hostName = host.toLowerCase(Locale.ROOT);
+            if (hostName.startsWith("*."))
+                wildcardHostRouters.remove(hostName.substring(1));
+            else
+                hostRouters.remove(hostName);
+            return this;
+        }
+
+        /**
+         * Specifies the default {@link Router} to route the requests to the hosts without their own {@link Router}s,
+         * including the requests without a "host" header.
+         *
+         * @param defaultRouter the default {@link Router}
+         * @return this {@link Builder}
+         */
+        public Builder defaultRouter(Router defaultRouter) {
+            this.defaultRouter = defaultRouter;
+            return this;
+        }
+    }
+}
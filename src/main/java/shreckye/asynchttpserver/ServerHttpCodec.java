@@ -0,0 +1,202 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.CombinedChannelDuplexHandler;
+import io.netty.handler.codec.DateFormatter;
+import io.netty.handler.codec.http.*;
+import io.netty.util.CharsetUtil;
+import shreckye.asynchttpserver.codec.FullResponse;
+import shreckye.asynchttpserver.codec.ResponseEncoding;
+import shreckye.asynchttpserver.codec.StaticFullResponse;
+
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * The HTTP codec of a connection, which works like Netty's {@link HttpServerCodec}
+ * and also encodes {@link FullResponse}s straight into a buffer without converting them to Netty {@link FullHttpResponse}s.
+ * The header fields and the body of a {@link StaticFullResponse} are already encoded, so only its status line is encoded.
+ * The "date" header, and the "server" header if configured, are added to every final response,
+ * where the "date" header is encoded only once per second.
+ * They are added to Netty {@link HttpResponse}s only if they don't have them,
+ * so they shouldn't be added to {@link FullResponse}s as custom headers.
+ *
+ * @author Yongshun Ye
+ */
+class ServerHttpCodec extends CombinedChannelDuplexHandler<ServerHttpCodec.RequestDecoder, ServerHttpCodec.ResponseEncoder> {
+    // The maximum length of the content copied into the same buffer as the status line and the headers
+    static final int MAX_MERGED_CONTENT_LENGTH = 1024;
+    // The initial size of the buffer for a status line and the headers shared by all responses
+    static final int STATUS_AND_SHARED_HEADERS_SIZE = 128;
+    // The encoded "date" header of the current second, shared by all the connections
+    private static volatile DateLine dateLine = new DateLine(0);
+
+    // The methods of the requests to respond to, in order
+    final Queue<HttpMethod> methods = new ArrayDeque<>();
+    final String server;
+    final byte[] serverLine;
+
+    ServerHttpCodec(int maxInitialLineLength, int maxHeaderSize, int maxChunkSize, boolean validateHeaders, int initialBufferSize,
+                    String server) {
+        this.server = server;
+        serverLine = server == null ? null : ("server: " + server + "\r\n").getBytes(CharsetUtil.US_ASCII);
+        init(new RequestDecoder(maxInitialLineLength, maxHeaderSize, maxChunkSize, validateHeaders, initialBufferSize),
+                new ResponseEncoder());
+    }
+
+    private static DateLine dateLine() {
+        long second = System.currentTimeMillis() / 1000;
+        DateLine dateLine = ServerHttpCodec.dateLine;
+        if (dateLine.second != second)
+            ServerHttpCodec.dateLine = dateLine = new DateLine(second);
+        return dateLine;
+    }
+
+    private static final class DateLine {
+        final long second;
+        final String date;
+        final byte[] bytes;
+
+        DateLine(long second) {
+            this.second = second;
+            date = DateFormatter.format(new Date(second * 1000));
+            bytes = ("date: " + date + "\r\n").getBytes(CharsetUtil.US_ASCII);
+        }
+    }
+
+    final class RequestDecoder extends HttpRequestDecoder {
+        RequestDecoder(int maxInitialLineLength, int maxHeaderSize, int maxChunkSize, boolean validateHeaders, int initialBufferSize) {
+            super(maxInitialLineLength, maxHeaderSize, maxChunkSize, validateHeaders, initialBufferSize);
+        }
+
+        @Override
+        protected void decode(ChannelHandlerContext ctx, ByteBuf buffer, List<Object> out) throws Exception {
+            int oldSize = out.size();
+            super.decode(ctx, buffer, out);
+            for (int i = oldSize, size = out.size(); i < size; i++) {
+                Object msg = out.get(i);
+                if (msg instanceof HttpRequest)
+                    methods.add(((HttpRequest) msg).method());
+            }
+        }
+    }
+
+    final class ResponseEncoder extends HttpResponseEncoder {
+        // The size of the last encoded status line and headers, to allocate the buffer for the next ones
+        int headersSizeEstimate = 256;
+        // The method of the request being responded to
+        HttpMethod method;
+
+        @Override
+        public boolean acceptOutboundMessage(Object msg) throws Exception {
+            return msg instanceof FullResponse || super.acceptOutboundMessage(msg);
+        }
+
+        @Override
+        protected void encode(ChannelHandlerContext ctx, Object msg, List<Object> out) throws Exception {
+            if (msg instanceof FullResponse)
+                encodeFullResponse(ctx, (FullResponse) msg, out);
+            else
+                super.encode(ctx, msg, out);
+        }
+
+        private void encodeFullResponse(ChannelHandlerContext ctx, FullResponse fullResponse, List<Object> out) {
+            HttpResponseStatus status = fullResponse.status();
+            takeMethod(status);
+            int code = status.code();
+            boolean contentAlwaysEmpty = HttpMethod.HEAD.equals(method) || status.codeClass() == HttpStatusClass.INFORMATIONAL
+                    || code == HttpResponseStatus.NO_CONTENT.code() || code == HttpResponseStatus.NOT_MODIFIED.code();
+            if (fullResponse instanceof StaticFullResponse) {
+                ByteBuf buf = ctx.alloc().ioBuffer(STATUS_AND_SHARED_HEADERS_SIZE);
+                encodeStatusAndSharedHeaders(status, buf);
+                out.add(buf);
+                out.add(((StaticFullResponse) fullResponse).retainedEncodedHeadersAndBody(!contentAlwaysEmpty));
+                return;
+            }
+
+            ByteBuf content = fullResponse.bodyContent();
+            int contentLength = contentAlwaysEmpty ? 0 : content.readableBytes();
+            // Small content is copied into the same buffer, so that the response is written at once
+            boolean merged = contentLength <= MAX_MERGED_CONTENT_LENGTH;
+            ByteBuf buf = ctx.alloc().ioBuffer(merged ? headersSizeEstimate + contentLength : headersSizeEstimate);
+            try {
+                encodeStatusAndSharedHeaders(status, buf);
+                fullResponse.encodeHeaders(buf);
+                buf.writeShort(ResponseEncoding.CRLF_SHORT);
+            } catch (Throwable t) {
+                buf.release();
+                content.release();
+                throw t;
+            }
+            headersSizeEstimate = buf.readableBytes();
+
+            if (merged) {
+                buf.writeBytes(content, content.readerIndex(), contentLength);
+                content.release();
+                out.add(buf);
+            } else {
+                out.add(buf);
+                out.add(content);
+            }
+        }
+
+        private void encodeStatusAndSharedHeaders(HttpResponseStatus status, ByteBuf buf) {
+            ResponseEncoding.encodeStatusLine(status, buf);
+            if (status.codeClass() != HttpStatusClass.INFORMATIONAL) {
+                buf.writeBytes(dateLine().bytes);
+                if (serverLine != null)
+                    buf.writeBytes(serverLine);
+            }
+        }
+
+        /**
+         * Takes the method of the request to respond to, unless the response is an interim one that another response follows.
+         */
+        private void takeMethod(HttpResponseStatus status) {
+            if (status.codeClass() != HttpStatusClass.INFORMATIONAL)
+                method = methods.poll();
+        }
+
+        @Override
+        protected boolean isContentAlwaysEmpty(HttpResponse msg) {
+            takeMethod(msg.status());
+            return HttpMethod.HEAD.equals(method) || super.isContentAlwaysEmpty(msg);
+        }
+
+        @Override
+        protected void sanitizeHeadersBeforeEncode(HttpResponse msg, boolean isAlwaysEmpty) {
+            if (msg.status().codeClass() != HttpStatusClass.INFORMATIONAL) {
+                HttpHeaders headers = msg.headers();
+                if (!headers.contains(HttpHeaderNames.DATE))
+                    headers.set(HttpHeaderNames.DATE, dateLine().date);
+                if (server != null && !headers.contains(HttpHeaderNames.SERVER))
+                    headers.set(HttpHeaderNames.SERVER, server);
+            }
+
+            if (!isAlwaysEmpty && HttpMethod.CONNECT.equals(method) && msg.status().codeClass() == HttpStatusClass.SUCCESS)
+                // A successful response to "CONNECT" switches to a tunnel without "transfer-encoding"
+                msg.headers().remove(HttpHeaderNames.TRANSFER_ENCODING);
+            else
+                super.sanitizeHeadersBeforeEncode(msg, isAlwaysEmpty);
+        }
+    }
+}
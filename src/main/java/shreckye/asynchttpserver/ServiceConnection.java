@@ -0,0 +1,281 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver;
+
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.*;
+import io.netty.handler.codec.http.HttpObject;
+import shreckye.asynchttpserver.codec.*;
+import shreckye.asynchttpserver.service.*;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The serving state of a single connection, with the pipeline handlers that serve its requests.
+ * An instance is created for each connection so that connections never share any state.
+ *
+ * @author Yongshun Ye
+ */
+class ServiceConnection {
+    final AsyncHttpServer server;
+    final ConnectionHandler handler;
+    final RequestHandler requestHandler = new RequestHandler();
+    final FullRequestHandler fullRequestHandler = new FullRequestHandler();
+    final RouteMatch routeMatch = new RouteMatch();
+    // The context passed to the handler and the services, created once when the handlers are added
+    ConnectionContext connectionContext;
+    // Wrap the content of the request being served, so they are only valid during each call to the service
+    final DefaultContentBlock contentBlock = new DefaultContentBlock(null);
+    final DefaultLastContentBlock lastContentBlock = new DefaultLastContentBlock(null);
+    // The router found for the last host, since the requests on a connection are usually to the same host
+    RoutingTable lastRoutingTable = null;
+    String lastHost = null;
+    Router lastHostRouter = null;
+
+    ServiceFactory currentServiceFactory;
+    Service currentService;
+    boolean currentServiceFailed = false;
+    // Whether the current service is completing off this handler, on a service executor or asynchronously
+    boolean completionPending = false;
+    ServiceDispatcher currentDispatcher;
+    ServiceExecutor currentServiceExecutor;
+    PathParams currentPathParams;
+    FullResponse fullResponse;
+    // Whether the content of a rejected request is being discarded
+    boolean discardingContent = false;
+
+    ServiceConnection(AsyncHttpServer server, ConnectionHandler handler) {
+        this.server = server;
+        this.handler = handler;
+    }
+
+    void onServiceThrowable(ConnectionContext connectionContext, Service service, Throwable t) {
+        currentServiceFailed = true;
+        handler.onServiceThrowable(connectionContext, service, t);
+    }
+
+    void resetService(ConnectionContext connectionContext) {
+        if (handler.serviceResponseState() != ConnectionHandler.STATE_LAST_CONTENT_BLOCK_SENT)
+            onServiceThrowable(connectionContext, currentService, new Exception("response data hasn't been not completely sent"));
+
+        handler.setServiceResponseState(ConnectionHandler.STATE_INITIAL);
+        if (currentService != null)
+            currentServiceFactory.recycleService(currentService, currentServiceFailed);
+        currentServiceFactory = null;
+        currentService = null;
+        currentServiceFailed = false;
+        completionPending = false;
+        currentDispatcher = null;
+        currentServiceExecutor = null;
+        currentPathParams = null;
+        fullResponse = null;
+    }
+
+    void serveFullRequestOffloaded(ChannelHandlerContext ctx, ConnectionContext connectionContext, FullHttpRequest msg,
+                                   ServiceDispatcher.BlockingFullRequestDispatcher dispatcher) {
+        Service service = currentService;
+        DefaultInboundFullRequest fullRequest = DefaultInboundFullRequest.fromNettyFullHttpResponse(msg, currentPathParams);
+        // Keeps the request content until the service returns and stops reading more requests until the response is sent
+        completionPending = true;
+        msg.retain();
+        ctx.channel().config().setAutoRead(false);
+        boolean accepted = currentServiceExecutor.execute(() -> {
+            FullResponse response = null;
+            Throwable throwable = null;
+            try {
+                response = dispatcher.serve(service, fullRequest, connectionContext);
+            } catch (Throwable t) {
+                throwable = t;
+            } finally {
+                msg.release();
+            }
+
+            FullResponse finalResponse = response;
+            Throwable finalThrowable = throwable;
+            ctx.executor().execute(() -> completeFullRequest(ctx, connectionContext, service, finalResponse, finalThrowable));
+        });
+
+        if (!accepted) {
+            msg.release();
+            connectionContext.sendFullResponse(new DefaultOutboundFullResponse(HttpResponseStatus.SERVICE_UNAVAILABLE));
+            resetService(connectionContext);
+            ctx.channel().config().setAutoRead(true);
+        }
+    }
+
+    void serveFullRequestAsync(ChannelHandlerContext ctx, ConnectionContext connectionContext, FullHttpRequest msg) {
+        Service service = currentService;
+        CompletableFuture<FullResponse> future;
+        try {
+            future = ((AsyncLightweightService) service).onServeFullRequest(DefaultInboundFullRequest.fromNettyFullHttpResponse(msg, currentPathParams))
+                    .toCompletableFuture();
+        } catch (Throwable t) {
+            onServiceThrowable(connectionContext, service, t);
+            resetService(connectionContext);
+            return;
+        }
+
+        // Keeps the request content until the response is completed and stops reading more requests until it's sent
+        completionPending = true;
+        msg.retain();
+        ctx.channel().config().setAutoRead(false);
+        ChannelFutureListener cancelOnClose = closeFuture -> future.cancel(false);
+        ctx.channel().closeFuture().addListener(cancelOnClose);
+        future.whenComplete((response, throwable) -> {
+            msg.release();
+            ctx.executor().execute(() -> {
+                ctx.channel().closeFuture().removeListener(cancelOnClose);
+                completeFullRequest(ctx, connectionContext, service, response, throwable);
+            });
+        });
+    }
+
+    private void completeFullRequest(ChannelHandlerContext ctx, ConnectionContext connectionContext, Service service,
+                                     FullResponse response, Throwable throwable) {
+        if (ctx.channel().isActive()) {
+            try {
+                if (throwable != null)
+                    onServiceThrowable(connectionContext, service, throwable);
+                else if (response != null)
+                    connectionContext.sendFullResponse(response);
+            } catch (Throwable t) {
+                onServiceThrowable(connectionContext, service, t);
+            }
+        } else
+            // Nothing can be sent back on a closed connection, so the response is considered finished
+            handler.setServiceResponseState(ConnectionHandler.STATE_LAST_CONTENT_BLOCK_SENT);
+        resetService(connectionContext);
+        ctx.channel().config().setAutoRead(true);
+    }
+
+    private Router hostRouter(HttpRequest httpRequest) {
+        RoutingTable routingTable = server.routingTable;
+        String host = httpRequest.headers().get(HttpHeaderNames.HOST);
+        if (routingTable != lastRoutingTable || host == null || !host.equals(lastHost)) {
+            lastRoutingTable = routingTable;
+            lastHost = host;
+            lastHostRouter = routingTable.router(host);
+        }
+        return lastHostRouter;
+    }
+
+    /**
+     * Responds to a request rejected by the router without creating a service,
+     * and discards its content without aggregating it.
+     */
+    private void reject(ChannelHandlerContext ctx, ConnectionContext connectionContext, HttpRequest httpRequest, Route route) {
+        if (HttpUtil.is100ContinueExpected(httpRequest)) {
+            // The client may not send the content it's waiting to be asked for, so the connection can't be reused
+            DefaultOutboundFullResponse response = Route.newRejectionResponse(route.rejectionStatus, route.allow);
+            response.setConnection(HttpHeaderValues.CLOSE.toString());
+            connectionContext.sendFullResponse(response).addListener(ChannelFutureListener.CLOSE);
+        } else
+            connectionContext.sendFullResponse(route.rejectionResponse);
+        discardingContent = true;
+    }
+
+    /**
+     * Routes the requests and serves them with their request line and headers and their content blocks.
+     * The requests to be served as full requests are passed on to be aggregated.
+     */
+    class RequestHandler extends SimpleChannelInboundHandler<HttpObject> {
+        @Override
+        public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+            connectionContext = new ConnectionContext(handler, ctx);
+        }
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) throws Exception {
+            handler.onConnected(connectionContext);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            // A service still waiting for the rest of its request will never be completed
+            if (currentService != null && !completionPending) {
+                currentServiceFactory.recycleService(currentService, true);
+                currentService = null;
+            }
+            handler.onDisconnected(connectionContext);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+            handler.onConnectionThrowable(connectionContext, cause);
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, HttpObject msg) throws Exception {
+            try {
+                if (msg instanceof HttpRequest) {
+                    HttpRequest httpRequest = (HttpRequest) msg;
+                    Route route = hostRouter(httpRequest).route(httpRequest.uri(), httpRequest.method(), routeMatch);
+                    if (route.rejectionStatus != null) {
+                        reject(ctx, connectionContext, httpRequest, route);
+                        return;
+                    }
+                    currentPathParams = routeMatch.pathParams(httpRequest.uri(), route);
+                    DefaultInboundRequestWithoutBody requestWithoutBody = DefaultInboundRequestWithoutBody.fromNettyHttpRequest(httpRequest, currentPathParams);
+                    currentServiceFactory = route.serviceFactory;
+                    currentService = currentServiceFactory.createService();
+                    currentDispatcher = route.dispatcher(currentService);
+                    currentServiceExecutor = route.serviceExecutor != null ? route.serviceExecutor : server.defaultServiceExecutor;
+                    handler.onServiceCreated(connectionContext, requestWithoutBody, currentService);
+                    currentDispatcher.serveRequestWithoutBody(ServiceConnection.this, ctx, connectionContext, httpRequest, requestWithoutBody);
+                } else if (discardingContent) {
+                    if (msg instanceof LastHttpContent) {
+                        discardingContent = false;
+                        resetService(connectionContext);
+                    }
+                } else if (currentDispatcher == null) {
+                    // The content of a request whose service failed to be created is ignored
+                } else if (msg instanceof LastHttpContent)
+                    currentDispatcher.serveLastContent(ServiceConnection.this, ctx, connectionContext, (LastHttpContent) msg);
+                else if (msg instanceof HttpContent)
+                    currentDispatcher.serveContent(ServiceConnection.this, ctx, connectionContext, (HttpContent) msg);
+                else
+                    handler.onConnectionThrowable(connectionContext, new Exception("an unknown object received"));
+            } catch (Throwable t) {
+                onServiceThrowable(connectionContext, currentService, t);
+            }
+        }
+    }
+
+    /**
+     * Serves the aggregated full requests.
+     */
+    class FullRequestHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+            handler.onConnectionThrowable(connectionContext, cause);
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest msg) throws Exception {
+            try {
+                currentDispatcher.serveFullRequest(ServiceConnection.this, ctx, connectionContext, msg);
+            } catch (Throwable t) {
+                onServiceThrowable(connectionContext, currentService, t);
+                // A request whose completion is pending is reset when it completes
+                if (!completionPending)
+                    resetService(connectionContext);
+            }
+        }
+    }
+}
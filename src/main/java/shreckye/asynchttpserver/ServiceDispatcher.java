@@ -0,0 +1,259 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.LastHttpContent;
+import shreckye.asynchttpserver.codec.*;
+import shreckye.asynchttpserver.service.*;
+
+/**
+ * Serves the HTTP objects of a request with a {@link Service} of a certain class.
+ * The kind of the {@link Service} is resolved once when an instance is created,
+ * so serving each HTTP object is a single call instead of a chain of type checks.
+ * Instances are immutable and can be shared across threads.
+ *
+ * @author Yongshun Ye
+ */
+abstract class ServiceDispatcher {
+    final Class<?> serviceClass;
+
+    ServiceDispatcher(Class<?> serviceClass) {
+        this.serviceClass = serviceClass;
+    }
+
+    /**
+     * Creates the dispatcher for a class of {@link Service}s.
+     *
+     * @param serviceClass the class of the {@link Service}s
+     * @return the dispatcher, which rejects the requests if the class is not of a known kind of {@link Service}
+     */
+    static ServiceDispatcher of(Class<?> serviceClass) {
+        if (FullResponseService.class.isAssignableFrom(serviceClass))
+            return new FullResponseDispatcher(serviceClass);
+        else if (GeneralService.class.isAssignableFrom(serviceClass))
+            return new GeneralDispatcher(serviceClass);
+        else if (LightweightService.class.isAssignableFrom(serviceClass))
+            return new LightweightDispatcher(serviceClass);
+        else if (AsyncLightweightService.class.isAssignableFrom(serviceClass))
+            return new AsyncLightweightDispatcher(serviceClass);
+        else if (FullRequestService.class.isAssignableFrom(serviceClass))
+            return new FullRequestDispatcher(serviceClass);
+        else
+            return new InvalidDispatcher(serviceClass);
+    }
+
+    abstract void serveRequestWithoutBody(ServiceConnection connection, ChannelHandlerContext ctx, ConnectionContext connectionContext,
+                                          HttpRequest httpRequest, RequestWithoutBody requestWithoutBody) throws Exception;
+
+    abstract void serveContent(ServiceConnection connection, ChannelHandlerContext ctx, ConnectionContext connectionContext,
+                               HttpContent httpContent) throws Exception;
+
+    abstract void serveLastContent(ServiceConnection connection, ChannelHandlerContext ctx, ConnectionContext connectionContext,
+                                   LastHttpContent lastHttpContent) throws Exception;
+
+    /**
+     * Serves an aggregated full request. Only the dispatchers of the {@link Service}s served with full requests receive them,
+     * so the others fail the {@link Service} if one is ever passed on to them.
+     */
+    void serveFullRequest(ServiceConnection connection, ChannelHandlerContext ctx, ConnectionContext connectionContext,
+                          FullHttpRequest fullHttpRequest) {
+        connection.onServiceThrowable(connectionContext, connection.currentService,
+                new IllegalStateException("a full request received for a service not served with full requests"));
+        connection.resetService(connectionContext);
+    }
+
+    static final class FullResponseDispatcher extends ServiceDispatcher {
+        FullResponseDispatcher(Class<?> serviceClass) {
+            super(serviceClass);
+        }
+
+        @Override
+        void serveRequestWithoutBody(ServiceConnection connection, ChannelHandlerContext ctx, ConnectionContext connectionContext,
+                                     HttpRequest httpRequest, RequestWithoutBody requestWithoutBody) throws Exception {
+            FullResponseService fullResponseService = (FullResponseService) connection.currentService;
+            connection.fullResponse = fullResponseService.onCreateFullResponse();
+            fullResponseService.onServeRequestWithoutBody(requestWithoutBody, connection.fullResponse);
+        }
+
+        @Override
+        void serveContent(ServiceConnection connection, ChannelHandlerContext ctx, ConnectionContext connectionContext,
+                          HttpContent httpContent) throws Exception {
+            ((FullResponseService) connection.currentService).onServeContentBlock(connection.contentBlock.setContent(httpContent.content()),
+                    connection.fullResponse);
+        }
+
+        @Override
+        void serveLastContent(ServiceConnection connection, ChannelHandlerContext ctx, ConnectionContext connectionContext,
+                              LastHttpContent lastHttpContent) throws Exception {
+            ((FullResponseService) connection.currentService).onServeLastContentBlock(connection.lastContentBlock.setContent(lastHttpContent.content()),
+                    connection.fullResponse);
+            connectionContext.sendFullResponse(connection.fullResponse);
+            connection.resetService(connectionContext);
+        }
+    }
+
+    static final class GeneralDispatcher extends ServiceDispatcher {
+        GeneralDispatcher(Class<?> serviceClass) {
+            super(serviceClass);
+        }
+
+        @Override
+        void serveRequestWithoutBody(ServiceConnection connection, ChannelHandlerContext ctx, ConnectionContext connectionContext,
+                                     HttpRequest httpRequest, RequestWithoutBody requestWithoutBody) throws Exception {
+            ((GeneralService) connection.currentService).onServeRequestWithoutBody(requestWithoutBody, connectionContext);
+        }
+
+        @Override
+        void serveContent(ServiceConnection connection, ChannelHandlerContext ctx, ConnectionContext connectionContext,
+                          HttpContent httpContent) throws Exception {
+            ((GeneralService) connection.currentService).onServeContentBlock(connection.contentBlock.setContent(httpContent.content()), connectionContext);
+        }
+
+        @Override
+        void serveLastContent(ServiceConnection connection, ChannelHandlerContext ctx, ConnectionContext connectionContext,
+                              LastHttpContent lastHttpContent) throws Exception {
+            ((GeneralService) connection.currentService).onServeLastContentBlock(connection.lastContentBlock.setContent(lastHttpContent.content()), connectionContext);
+            connection.resetService(connectionContext);
+        }
+    }
+
+    /**
+     * Passes the request on to be aggregated and serves it as a full request.
+     */
+    abstract static class FullRequestAggregatingDispatcher extends ServiceDispatcher {
+        FullRequestAggregatingDispatcher(Class<?> serviceClass) {
+            super(serviceClass);
+        }
+
+        @Override
+        final void serveRequestWithoutBody(ServiceConnection connection, ChannelHandlerContext ctx, ConnectionContext connectionContext,
+                                           HttpRequest httpRequest, RequestWithoutBody requestWithoutBody) {
+            ctx.fireChannelRead(httpRequest);
+        }
+
+        @Override
+        final void serveContent(ServiceConnection connection, ChannelHandlerContext ctx, ConnectionContext connectionContext,
+                                HttpContent httpContent) {
+            ctx.fireChannelRead(httpContent.retain());
+        }
+
+        @Override
+        final void serveLastContent(ServiceConnection connection, ChannelHandlerContext ctx, ConnectionContext connectionContext,
+                                    LastHttpContent lastHttpContent) {
+            ctx.fireChannelRead(lastHttpContent.retain());
+        }
+    }
+
+    /**
+     * Serves full requests with the {@link Service}s that may block, on the event loop or on a {@link ServiceExecutor}.
+     */
+    abstract static class BlockingFullRequestDispatcher extends FullRequestAggregatingDispatcher {
+        BlockingFullRequestDispatcher(Class<?> serviceClass) {
+            super(serviceClass);
+        }
+
+        /**
+         * Serves a full request with a {@link Service}.
+         *
+         * @return the full response to send back, or null if the {@link Service} sends it itself
+         */
+        abstract FullResponse serve(Service service, FullRequest fullRequest, ConnectionContext connectionContext) throws Exception;
+
+        @Override
+        final void serveFullRequest(ServiceConnection connection, ChannelHandlerContext ctx, ConnectionContext connectionContext,
+                                    FullHttpRequest fullHttpRequest) {
+            if (connection.currentServiceExecutor != null) {
+                connection.serveFullRequestOffloaded(ctx, connectionContext, fullHttpRequest, this);
+                return;
+            }
+
+            try {
+                FullResponse response = serve(connection.currentService,
+                        DefaultInboundFullRequest.fromNettyFullHttpResponse(fullHttpRequest, connection.currentPathParams), connectionContext);
+                if (response != null)
+                    connectionContext.sendFullResponse(response);
+            } catch (Throwable t) {
+                connection.onServiceThrowable(connectionContext, connection.currentService, t);
+            }
+            connection.resetService(connectionContext);
+        }
+    }
+
+    static final class LightweightDispatcher extends BlockingFullRequestDispatcher {
+        LightweightDispatcher(Class<?> serviceClass) {
+            super(serviceClass);
+        }
+
+        @Override
+        FullResponse serve(Service service, FullRequest fullRequest, ConnectionContext connectionContext) throws Exception {
+            return ((LightweightService) service).onServeFullRequest(fullRequest);
+        }
+    }
+
+    static final class FullRequestDispatcher extends BlockingFullRequestDispatcher {
+        FullRequestDispatcher(Class<?> serviceClass) {
+            super(serviceClass);
+        }
+
+        @Override
+        FullResponse serve(Service service, FullRequest fullRequest, ConnectionContext connectionContext) throws Exception {
+            ((FullRequestService) service).onServeFullRequest(fullRequest, connectionContext);
+            return null;
+        }
+    }
+
+    static final class AsyncLightweightDispatcher extends FullRequestAggregatingDispatcher {
+        AsyncLightweightDispatcher(Class<?> serviceClass) {
+            super(serviceClass);
+        }
+
+        @Override
+        void serveFullRequest(ServiceConnection connection, ChannelHandlerContext ctx, ConnectionContext connectionContext,
+                              FullHttpRequest fullHttpRequest) {
+            connection.serveFullRequestAsync(ctx, connectionContext, fullHttpRequest);
+        }
+    }
+
+    /**
+     * Fails the requests to the {@link Service}s that are not of a known kind and ignores their content.
+     */
+    static final class InvalidDispatcher extends ServiceDispatcher {
+        InvalidDispatcher(Class<?> serviceClass) {
+            super(serviceClass);
+        }
+
+        @Override
+        void serveRequestWithoutBody(ServiceConnection connection, ChannelHandlerContext ctx, ConnectionContext connectionContext,
+                                     HttpRequest httpRequest, RequestWithoutBody requestWithoutBody) throws Exception {
+            throw new Exception("invalid service");
+        }
+
+        @Override
+        void serveContent(ServiceConnection connection, ChannelHandlerContext ctx, ConnectionContext connectionContext,
+                          HttpContent httpContent) {
+        }
+
+        @Override
+        void serveLastContent(ServiceConnection connection, ChannelHandlerContext ctx, ConnectionContext connectionContext,
+                              LastHttpContent lastHttpContent) {
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import shreckye.asynchttpserver.service.FullRequestService;
+import shreckye.asynchttpserver.service.LightweightService;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An executor that runs {@link LightweightService}s and {@link FullRequestService}s off the event loops,
+ * so that services doing blocking operations don't stall the other connections on the same event loop.
+ * The response is sent back on the connection's event loop after the service returns.
+ * <p>
+ * With {@link #newVirtualThreadInstance()}, each service runs on its own virtual thread,
+ * so services written in plain blocking style can scale to many concurrent requests.
+ * <p>
+ * When the executor rejects a request, a response with status "503 Service Unavailable" is sent back.
+ * The numbers of queued, active, completed and rejected requests are recorded for monitoring.
+ *
+ * @author Yongshun Ye
+ */
+public class ServiceExecutor implements AutoCloseable {
+    final ExecutorService executorService;
+    final AtomicInteger queueDepth = new AtomicInteger();
+    final AtomicInteger activeCount = new AtomicInteger();
+    final LongAdder completedCount = new LongAdder();
+    final LongAdder rejectedCount = new LongAdder();
+
+    /**
+     * Creates a new instance that runs services on an {@link ExecutorService},
+     * for example a {@link ThreadPoolExecutor} or a Netty {@link io.netty.util.concurrent.EventExecutorGroup}.
+     *
+     * @param executorService the {@link ExecutorService}
+     */
+    public ServiceExecutor(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
+    /**
+     * Creates a new instance with a fixed number of threads and a bounded queue.
+     *
+     * @param nThreads     the number of threads
+     * @param maxQueueSize the maximum number of requests waiting for a thread, beyond which requests are rejected
+     */
+    public ServiceExecutor(int nThreads, int maxQueueSize) {
+        this(new ThreadPoolExecutor(nThreads, nThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxQueueSize), new DefaultThreadFactory("service-executor")));
+    }
+
+    /**
+     * Creates a new instance that runs each service on a new virtual thread.
+     * Virtual threads are only available on Java 21 and above.
+     * They are looked up reflectively so that this library still runs on Java 8.
+     *
+     * @return the created instance
+     * @throws UnsupportedOperationException if virtual threads are not available on the running JVM
+     */
+    public static ServiceExecutor newVirtualThreadInstance() throws UnsupportedOperationException {
+        ExecutorService executorService;
+        try {
+            executorService = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new UnsupportedOperationException("virtual threads require Java 21 or above", e);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("virtual threads are not available", e);
+        }
+        return new ServiceExecutor(executorService);
+    }
+
+    /**
+     * Submits a task to run.
+     *
+     * @param task the task
+     * @return whether the task is accepted
+     */
+    boolean execute(Runnable task) {
+        queueDepth.incrementAndGet();
+        try {
+            executorService.execute(() -> {
+                queueDepth.decrementAndGet();
+                activeCount.incrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    activeCount.decrementAndGet();
+                    completedCount.increment();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            queueDepth.decrementAndGet();
+            rejectedCount.increment();
+            return false;
+        }
+    }
+
+    /**
+     * Returns the {@link ExecutorService} that runs the services.
+     *
+     * @return the {@link ExecutorService}
+     */
+    public ExecutorService executorService() {
+        return executorService;
+    }
+
+    /**
+     * Returns the number of requests waiting to be served.
+     *
+     * @return the number of requests waiting to be served
+     */
+    public int queueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * Returns the number of requests being served.
+     *
+     * @return the number of requests being served
+     */
+    public int activeCount() {
+        return activeCount.get();
+    }
+
+    /**
+     * Returns the total number of requests served.
+     *
+     * @return the total number of requests served
+     */
+    public long completedCount() {
+        return completedCount.sum();
+    }
+
+    /**
+     * Returns the total number of requests rejected.
+     *
+     * @return the total number of requests rejected
+     */
+    public long rejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * Shuts down the underlying {@link ExecutorService}. Requests already submitted are still served.
+     */
+    @Override
+    public void close() {
+        executorService.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return "ServiceExecutor{" +
+                "queueDepth=" + queueDepth +
+                ", activeCount=" + activeCount +
+                ", completedCount=" + completedCount +
+                ", rejectedCount=" + rejectedCount +
+                '}';
+    }
+}
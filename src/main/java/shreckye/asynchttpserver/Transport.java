@@ -0,0 +1,105 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+
+/**
+ * The Netty transports that an {@link AsyncHttpServer} can run on.
+ *
+ * @author Yongshun Ye
+ */
+public enum Transport {
+    /**
+     * The Java NIO transport, available on all platforms.
+     */
+    NIO {
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+
+        @Override
+        EventLoopGroup newEventLoopGroup(int nThreads) {
+            return new NioEventLoopGroup(nThreads);
+        }
+
+        @Override
+        Class<? extends ServerChannel> serverChannelClass() {
+            return NioServerSocketChannel.class;
+        }
+    },
+
+    /**
+     * The Linux native epoll transport, which has less syscall and GC overhead than {@link #NIO}
+     * and supports the epoll-only socket options.
+     * It's only available on Linux with the native library loaded.
+     */
+    EPOLL {
+        @Override
+        public boolean isAvailable() {
+            return Epoll.isAvailable();
+        }
+
+        @Override
+        EventLoopGroup newEventLoopGroup(int nThreads) {
+            return new EpollEventLoopGroup(nThreads);
+        }
+
+        @Override
+        Class<? extends ServerChannel> serverChannelClass() {
+            return EpollServerSocketChannel.class;
+        }
+    };
+
+    /**
+     * Returns whether this transport can be used on the current platform.
+     *
+     * @return whether this transport is available
+     */
+    public abstract boolean isAvailable();
+
+    /**
+     * Returns this transport if it's available, or {@link #NIO} otherwise.
+     *
+     * @return the transport to actually use
+     */
+    public Transport resolve() {
+        return isAvailable() ? this : NIO;
+    }
+
+    /**
+     * Creates a new event loop group of this transport.
+     *
+     * @param nThreads the number of threads, or 0 to use Netty's default
+     * @return the created event loop group
+     */
+    abstract EventLoopGroup newEventLoopGroup(int nThreads);
+
+    /**
+     * Returns the server channel class of this transport.
+     *
+     * @return the server channel class
+     */
+    abstract Class<? extends ServerChannel> serverChannelClass();
+}
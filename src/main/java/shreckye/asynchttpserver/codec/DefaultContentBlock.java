@@ -38,12 +38,23 @@ public class DefaultContentBlock implements ContentBlock {
      * @param httpContent the Netty {@link HttpContent} instance
      * @return the decoded instance
      */
-    public static DefaultLastContentBlock fromNettyHttpContent(HttpContent httpContent) {
-        return new DefaultLastContentBlock(httpContent.content());
+    public static DefaultContentBlock fromNettyHttpContent(HttpContent httpContent) {
+        return new DefaultContentBlock(httpContent.content());
     }
 
     @Override
     public ByteBuf content() {
         return content;
     }
+
+    /**
+     * Replaces the content data of this block, so that one instance can wrap the blocks of a request one after another.
+     *
+     * @param content the content data as a {@link ByteBuf}
+     * @return this instance
+     */
+    public DefaultContentBlock setContent(ByteBuf content) {
+        this.content = content;
+        return this;
+    }
 }
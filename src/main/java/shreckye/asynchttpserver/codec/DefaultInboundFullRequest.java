@@ -47,6 +47,11 @@ public class DefaultInboundFullRequest extends DefaultInboundRequestWithoutBody
         bodyContent = fullHttpRequest.content();
     }
 
+    protected DefaultInboundFullRequest(FullHttpRequest fullHttpRequest, PathParams pathParams) {
+        super(fullHttpRequest, pathParams);
+        bodyContent = fullHttpRequest.content();
+    }
+
     /**
      * Decodes a new instance from a Netty {@link FullHttpRequest}.
      *
@@ -56,6 +61,16 @@ public class DefaultInboundFullRequest extends DefaultInboundRequestWithoutBody
         return new DefaultInboundFullRequest(fullHttpRequest);
     }
 
+    /**
+     * Decodes a new instance from a Netty {@link FullHttpRequest} with the path parameters captured from its URI.
+     *
+     * @param fullHttpRequest the Netty {@link FullHttpRequest} instance
+     * @param pathParams      the path parameters
+     */
+    public static DefaultInboundFullRequest fromNettyFullHttpResponse(FullHttpRequest fullHttpRequest, PathParams pathParams) {
+        return new DefaultInboundFullRequest(fullHttpRequest, pathParams);
+    }
+
 
     @Override
     public ByteBuf bodyContent() {
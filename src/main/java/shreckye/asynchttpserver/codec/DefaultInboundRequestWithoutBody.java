@@ -22,6 +22,7 @@ import io.netty.handler.codec.http.QueryStringDecoder;
 import io.netty.handler.codec.http.cookie.Cookie;
 import io.netty.handler.codec.http.cookie.ServerCookieDecoder;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -36,6 +37,7 @@ public class DefaultInboundRequestWithoutBody implements RequestWithoutBody {
     final String method;
     final String uri;
     final HttpHeaders headers;
+    PathParams pathParams = PathParams.EMPTY;
 
     // Decoded from the uri when needed
     boolean uriToDecode = true;
@@ -43,16 +45,17 @@ public class DefaultInboundRequestWithoutBody implements RequestWithoutBody {
     boolean queryToDecode = true;
     Map<String, List<String>> queryParams = null;
 
-    // Decoded from the headers when needed
-    boolean toDecodeHost = true;
+    // The well-known headers, filled in one pass over the headers when any of them is first needed
+    boolean headersToDecode = true;
     String host = null;
-    boolean toDecodeConnection = true;
     String connection = null;
-    boolean toDecodeCookie = true;
-    Set<Cookie> cookie = null;
-    boolean toDecodeContentType = true;
     String contentType = null;
-    boolean toDecodeContentLength = true;
+    CharSequence cookieValue = null;
+    CharSequence contentLengthValue = null;
+    // Decoded from the header values when needed
+    boolean cookieToDecode = true;
+    Set<Cookie> cookie = null;
+    boolean contentLengthToDecode = true;
     Long contentLength = null;
 
     /**
@@ -68,10 +71,27 @@ public class DefaultInboundRequestWithoutBody implements RequestWithoutBody {
         this.headers = headers;
     }
 
+    /**
+     * Creates a new instance with the HTTP method, the URI, the HTTP headers, and the path parameters.
+     *
+     * @param method     the HTTP method
+     * @param uri        the URI
+     * @param headers    the headers
+     * @param pathParams the path parameters captured from the URI
+     */
+    public DefaultInboundRequestWithoutBody(String method, String uri, HttpHeaders headers, PathParams pathParams) {
+        this(method, uri, headers);
+        this.pathParams = pathParams;
+    }
+
     protected DefaultInboundRequestWithoutBody(HttpRequest httpRequest) {
         this(httpRequest.method().name(), httpRequest.uri(), httpRequest.headers());
     }
 
+    protected DefaultInboundRequestWithoutBody(HttpRequest httpRequest, PathParams pathParams) {
+        this(httpRequest.method().name(), httpRequest.uri(), httpRequest.headers(), pathParams);
+    }
+
     /**
      * Decodes a new instance from the Netty {@link HttpRequest}.
      *
@@ -81,6 +101,16 @@ public class DefaultInboundRequestWithoutBody implements RequestWithoutBody {
         return new DefaultInboundRequestWithoutBody(httpRequest);
     }
 
+    /**
+     * Decodes a new instance from the Netty {@link HttpRequest} with the path parameters captured from its URI.
+     *
+     * @param httpRequest the Netty {@link HttpRequest}
+     * @param pathParams  the path parameters
+     */
+    public static DefaultInboundRequestWithoutBody fromNettyHttpRequest(HttpRequest httpRequest, PathParams pathParams) {
+        return new DefaultInboundRequestWithoutBody(httpRequest, pathParams);
+    }
+
     @Override
     public String method() {
         return method;
@@ -136,47 +166,71 @@ public class DefaultInboundRequestWithoutBody implements RequestWithoutBody {
         return queryParams;
     }
 
+    @Override
+    public PathParams pathParams() {
+        return pathParams;
+    }
+
 
     @Override
     public HttpHeaders headers() {
         return headers;
     }
 
-    private void decodeHostIfNeeded() {
-        if (toDecodeHost) {
-            host = headers.get(RequestHeaderNames.HOST);
+    private void decodeHeadersIfNeeded() {
+        if (headersToDecode) {
+            // Matches the names by their lengths first, which are all different, and keeps the first value of each like HttpHeaders.get
+            Iterator<Map.Entry<CharSequence, CharSequence>> iterator = headers.iteratorCharSequence();
+            while (iterator.hasNext()) {
+                Map.Entry<CharSequence, CharSequence> header = iterator.next();
+                CharSequence name = header.getKey();
+                switch (name.length()) {
+                    case 4:
+                        if (host == null && RequestHeaderNames.HOST.contentEqualsIgnoreCase(name))
+                            host = header.getValue().toString();
+                        break;
+                    case 6:
+                        if (cookieValue == null && RequestHeaderNames.COOKIE.contentEqualsIgnoreCase(name))
+                            cookieValue = header.getValue();
+                        break;
+                    case 10:
+                        if (connection == null && RequestHeaderNames.CONNECTION.contentEqualsIgnoreCase(name))
+                            connection = header.getValue().toString();
+                        break;
+                    case 12:
+                        if (contentType == null && RequestHeaderNames.CONTENT_TYPE.contentEqualsIgnoreCase(name))
+                            contentType = header.getValue().toString();
+                        break;
+                    case 14:
+                        if (contentLengthValue == null && RequestHeaderNames.CONTENT_LENGTH.contentEqualsIgnoreCase(name))
+                            contentLengthValue = header.getValue();
+                        break;
+                }
+            }
 
-            toDecodeHost = false;
+            headersToDecode = false;
         }
     }
 
     @Override
     public String host() {
-        decodeHostIfNeeded();
+        decodeHeadersIfNeeded();
         return host;
     }
 
-    private void decodeConnectionIfNeeded() {
-        if (toDecodeConnection) {
-            connection = headers.get(RequestHeaderNames.CONNECTION);
-
-            toDecodeConnection = false;
-        }
-    }
-
     @Override
     public String connection() {
-        decodeConnectionIfNeeded();
+        decodeHeadersIfNeeded();
         return connection;
     }
 
     private void decodeCookieIfNeeded() {
-        if (toDecodeCookie) {
-            String cookieString = headers.get(RequestHeaderNames.COOKIE);
-            if (cookieString != null) ;
-            cookie = ServerCookieDecoder.STRICT.decode(cookieString);
+        if (cookieToDecode) {
+            decodeHeadersIfNeeded();
+            if (cookieValue != null)
+                cookie = ServerCookieDecoder.STRICT.decode(cookieValue.toString());
 
-            toDecodeCookie = false;
+            cookieToDecode = false;
         }
     }
 
@@ -186,28 +240,44 @@ public class DefaultInboundRequestWithoutBody implements RequestWithoutBody {
         return cookie;
     }
 
-    private void decodeContentTypeIfNeeded() {
-        if (toDecodeContentType) {
-            contentType = headers.get(RequestHeaderNames.CONTENT_TYPE);
-
-            toDecodeContentType = false;
-        }
-    }
-
     @Override
     public String contentType() {
-        decodeContentTypeIfNeeded();
+        decodeHeadersIfNeeded();
         return contentType;
     }
 
     private void decodeContentLengthIfNeeded() {
-        if (toDecodeContentLength) {
-            String contentLengthString = headers.get(RequestHeaderNames.CONTENT_LENGTH);
-            if (contentLengthString != null)
-                contentLength = Long.parseLong(contentLengthString);
+        if (contentLengthToDecode) {
+            decodeHeadersIfNeeded();
+            if (contentLengthValue != null)
+                contentLength = parseContentLength(contentLengthValue);
+
+            contentLengthToDecode = false;
+        }
+    }
 
-            toDecodeContentLength = false;
+    /**
+     * Parses a "Content-Length" header value in place without creating a {@link String}.
+     *
+     * @param value the header value
+     * @return the content length
+     * @throws NumberFormatException if the value is not a non-negative decimal number in the range of a long,
+     * optionally with a leading plus sign as {@link Long#parseLong(String)} accepts
+     */
+    static long parseContentLength(CharSequence value) throws NumberFormatException {
+        int length = value.length();
+        int start = length > 0 && value.charAt(0) == '+' ? 1 : 0;
+        if (length == start)
+            throw new NumberFormatException("empty content length: " + value);
+
+        long contentLength = 0;
+        for (int i = start; i < length; i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || contentLength > (Long.MAX_VALUE - digit) / 10)
+                throw new NumberFormatException("invalid content length: " + value);
+            contentLength = contentLength * 10 + digit;
         }
+        return contentLength;
     }
 
     @Override
@@ -38,4 +38,10 @@ public class DefaultLastContentBlock extends DefaultContentBlock implements Last
     public static DefaultLastContentBlock fromNettyLastHttpContent(LastHttpContent lastHttpContent) {
         return new DefaultLastContentBlock(lastHttpContent.content());
     }
+
+    @Override
+    public DefaultLastContentBlock setContent(ByteBuf content) {
+        super.setContent(content);
+        return this;
+    }
 }
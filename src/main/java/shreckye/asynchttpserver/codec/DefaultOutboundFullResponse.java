@@ -18,8 +18,10 @@ package shreckye.asynchttpserver.codec;
 
 import eu.medsea.mimeutil.MimeUtil;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.util.CharsetUtil;
 import shreckye.asynchttpserver.service.SimpleFileService;
 
 import javax.annotation.Nonnull;
@@ -74,18 +76,86 @@ public class DefaultOutboundFullResponse extends DefaultOutboundResponseWithoutB
         this(status, contentType, Unpooled.wrappedBuffer(bytes));
     }
 
+    /**
+     * Creates a new instance with the specified status, content-type, and text encoded in UTF-8 as the body content
+     * into a heap buffer, which doesn't need to be released if the response is never sent.
+     *
+     * @param status      the status
+     * @param contentType the content-type
+     * @param string      the text
+     */
     public DefaultOutboundFullResponse(HttpResponseStatus status, @Nullable String contentType, @Nonnull String string) {
-        this(status, contentType, string.getBytes());
+        this(status, contentType, string.getBytes(CharsetUtil.UTF_8));
+    }
+
+    /**
+     * Creates a new instance with the specified status, content-type, and text encoded in UTF-8 as the body content
+     * straight into a buffer from the allocator, without creating a byte array in between.
+     * The buffer is released after the response is sent.
+     *
+     * @param status      the status
+     * @param contentType the content-type
+     * @param text        the text
+     * @param alloc       the allocator, such as {@link shreckye.asynchttpserver.ConnectionContext#alloc()}
+     */
+    public DefaultOutboundFullResponse(HttpResponseStatus status, @Nullable String contentType, @Nonnull CharSequence text, ByteBufAllocator alloc) {
+        this(status, contentType, encodeUtf8(text, alloc));
+    }
+
+    private static ByteBuf encodeUtf8(CharSequence text, ByteBufAllocator alloc) {
+        // The buffer has the exact length, which the writer doesn't expand
+        return new Utf8BodyWriter(alloc, Utf8BodyWriter.utf8Bytes(text, 0, text.length())).append(text).content();
     }
 
     public static DefaultOutboundFullResponse newHtmlInstance(HttpResponseStatus status, String html) {
         return new DefaultOutboundFullResponse(status, MediaType.TEXT_HTML, html);
     }
 
+    /**
+     * Creates a new instance with HTML encoded in UTF-8 straight into a buffer from the allocator.
+     *
+     * @param status the status
+     * @param html   the HTML
+     * @param alloc  the allocator
+     * @return the created instance
+     */
+    public static DefaultOutboundFullResponse newHtmlInstance(HttpResponseStatus status, CharSequence html, ByteBufAllocator alloc) {
+        return new DefaultOutboundFullResponse(status, MediaType.TEXT_HTML_UTF8, html, alloc);
+    }
+
     public static DefaultOutboundFullResponse newJsonInstance(HttpResponseStatus status, String json) {
         return new DefaultOutboundFullResponse(status, MediaType.APPLICATION_JSON, json);
     }
 
+    /**
+     * Creates a new instance with JSON encoded in UTF-8 straight into a buffer from the allocator.
+     *
+     * @param status the status
+     * @param json   the JSON
+     * @param alloc  the allocator
+     * @return the created instance
+     */
+    public static DefaultOutboundFullResponse newJsonInstance(HttpResponseStatus status, CharSequence json, ByteBufAllocator alloc) {
+        return new DefaultOutboundFullResponse(status, MediaType.APPLICATION_JSON, json, alloc);
+    }
+
+    /**
+     * Creates a new instance with an object encoded as JSON by a {@link JsonCodec}
+     * straight into a buffer from the allocator, without creating a {@link String} or a byte array in between.
+     * The content-length is set from the number of bytes written.
+     *
+     * @param status    the status
+     * @param value     the object
+     * @param jsonCodec the {@link JsonCodec}
+     * @param alloc     the allocator
+     * @return the created instance
+     * @throws IOException when the object can't be encoded
+     */
+    public static DefaultOutboundFullResponse newJsonInstance(HttpResponseStatus status, Object value, JsonCodec jsonCodec,
+                                                              ByteBufAllocator alloc) throws IOException {
+        return new DefaultOutboundFullResponse(status, MediaType.APPLICATION_JSON, jsonCodec.encode(value, alloc));
+    }
+
     public static DefaultOutboundFullResponse newArbitraryBinaryDataInstance(HttpResponseStatus status, byte[] data) {
         return new DefaultOutboundFullResponse(status, MediaType.APPLICATION_OCTET_STREAM, data);
     }
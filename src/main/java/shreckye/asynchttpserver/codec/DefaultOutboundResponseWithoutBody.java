@@ -17,6 +17,7 @@
 package shreckye.asynchttpserver.codec;
 
 import eu.medsea.mimeutil.MimeUtil;
+import io.netty.buffer.ByteBuf;
 import io.netty.handler.codec.http.DefaultHttpHeaders;
 import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpResponseStatus;
@@ -37,6 +38,11 @@ import java.util.Set;
  * @author Yongshun Ye
  */
 public class DefaultOutboundResponseWithoutBody implements ResponseWithoutBody {
+    private static final byte[] CONTENT_LENGTH_NAME = ResponseEncoding.encodeHeaderName(ResponseHeaderNames.CONTENT_LENGTH),
+            CONTENT_TYPE_NAME = ResponseEncoding.encodeHeaderName(ResponseHeaderNames.CONTENT_TYPE),
+            CONNECTION_NAME = ResponseEncoding.encodeHeaderName(ResponseHeaderNames.CONNECTION),
+            SET_COOKIE_NAME = ResponseEncoding.encodeHeaderName(ResponseHeaderNames.SET_COOKIE);
+
     HttpResponseStatus status;
     long contentLength;
     @Nullable
@@ -45,11 +51,12 @@ public class DefaultOutboundResponseWithoutBody implements ResponseWithoutBody {
     String connection;
     @Nullable
     Set<Cookie> setCookie;
+    // Created when the first custom header is added
+    @Nullable
     HttpHeaders customHeaders;
 
     protected DefaultOutboundResponseWithoutBody(HttpResponseStatus status) {
         this.status = status;
-        customHeaders = new DefaultHttpHeaders();
     }
 
     /**
@@ -63,7 +70,6 @@ public class DefaultOutboundResponseWithoutBody implements ResponseWithoutBody {
         this.status = status;
         this.contentLength = contentLength;
         this.contentType = contentType;
-        customHeaders = new DefaultHttpHeaders();
     }
 
     /*
@@ -118,12 +124,31 @@ public class DefaultOutboundResponseWithoutBody implements ResponseWithoutBody {
             for (String setCookieHeader : setCookieHeaders)
                 headers.add(ResponseHeaderNames.SET_COOKIE, setCookieHeader);
 
-        headers.add(customHeaders);
+        if (customHeaders != null)
+            headers.add(customHeaders);
 
         return headers;
     }
 
-    private void addIfValueNotNull(HttpHeaders headers, String name, Object value) {
+    @Override
+    public void encodeHeaders(ByteBuf buf) {
+        ResponseEncoding.encodeHeader(CONTENT_LENGTH_NAME, contentLength(), buf);
+        String contentType = contentType();
+        if (contentType != null)
+            ResponseEncoding.encodeHeader(CONTENT_TYPE_NAME, contentType, buf);
+        String connection = connection();
+        if (connection != null)
+            ResponseEncoding.encodeHeader(CONNECTION_NAME, connection, buf);
+        List<String> setCookieHeaders = setCookieHeaders();
+        if (setCookieHeaders != null)
+            for (String setCookieHeader : setCookieHeaders)
+                ResponseEncoding.encodeHeader(SET_COOKIE_NAME, setCookieHeader, buf);
+
+        if (customHeaders != null)
+            ResponseEncoding.encodeHeaders(customHeaders, buf);
+    }
+
+    private void addIfValueNotNull(HttpHeaders headers, CharSequence name, Object value) {
         if (value != null)
             headers.add(name, value);
     }
@@ -202,6 +227,8 @@ public class DefaultOutboundResponseWithoutBody implements ResponseWithoutBody {
      * @return the custom headers
      */
     public HttpHeaders customHeaders() {
+        if (customHeaders == null)
+            customHeaders = new DefaultHttpHeaders();
         return customHeaders;
     }
 
@@ -212,7 +239,7 @@ public class DefaultOutboundResponseWithoutBody implements ResponseWithoutBody {
      * @param value the value of the header
      */
     public void addCustomHeader(String name, Object value) {
-        customHeaders.add(name, value);
+        customHeaders().add(name, value);
     }
 
     /**
@@ -221,6 +248,6 @@ public class DefaultOutboundResponseWithoutBody implements ResponseWithoutBody {
      * @param customHeaders the custom headers to add
      */
     public void addCustomHeaders(HttpHeaders customHeaders) {
-        this.customHeaders.add(customHeaders);
+        customHeaders().add(customHeaders);
     }
 }
@@ -0,0 +1,107 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.CorruptedFrameException;
+
+/**
+ * A view of a field in an "x-www-form-urlencoded" body, decoded by a {@link FormUrlencodedDecoder}.
+ * The name and the value are kept encoded in the body content and are only decoded when asked for.
+ * The instance is reused for the following fields, so it's only valid during the call it's passed to.
+ *
+ * @author Yongshun Ye
+ */
+public final class FormField {
+    ByteBuf buf;
+    int nameIndex, nameLength, valueIndex, valueLength;
+
+    FormField() {
+    }
+
+    void set(ByteBuf buf, int index, int length) {
+        this.buf = buf;
+        nameIndex = index;
+        int equalsIndex = buf.indexOf(index, index + length, (byte) '=');
+        if (equalsIndex < 0) {
+            nameLength = length;
+            valueIndex = index + length;
+            valueLength = 0;
+        } else {
+            nameLength = equalsIndex - index;
+            valueIndex = equalsIndex + 1;
+            valueLength = index + length - valueIndex;
+        }
+    }
+
+    /**
+     * Returns the encoded name as a slice of the body content.
+     *
+     * @return the encoded name
+     */
+    public ByteBuf rawName() {
+        return buf.slice(nameIndex, nameLength);
+    }
+
+    /**
+     * Returns the encoded value as a slice of the body content.
+     *
+     * @return the encoded value
+     */
+    public ByteBuf rawValue() {
+        return buf.slice(valueIndex, valueLength);
+    }
+
+    /**
+     * Decodes and returns the name.
+     *
+     * @return the name
+     * @throws CorruptedFrameException if the name contains an invalid escape sequence
+     */
+    public String name() throws CorruptedFrameException {
+        return FormUrlencodedDecoder.decodeComponent(buf, nameIndex, nameLength);
+    }
+
+    /**
+     * Decodes and returns the value.
+     *
+     * @return the value, which is empty if the field has no "="
+     * @throws CorruptedFrameException if the value contains an invalid escape sequence
+     */
+    public String value() throws CorruptedFrameException {
+        return FormUrlencodedDecoder.decodeComponent(buf, valueIndex, valueLength);
+    }
+
+    /**
+     * Returns whether the decoded name equals a name, without decoding it into a {@link String} if the name is ASCII.
+     *
+     * @param name the name
+     * @return whether the decoded name equals the name
+     * @throws CorruptedFrameException if the name contains an invalid escape sequence
+     */
+    public boolean nameEquals(CharSequence name) throws CorruptedFrameException {
+        return FormUrlencodedDecoder.componentEquals(buf, nameIndex, nameLength, name);
+    }
+
+    @Override
+    public String toString() {
+        return "FormField{" +
+                "name='" + name() + '\'' +
+                ", value='" + value() + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.util.CharsetUtil;
+
+/**
+ * A decoder of "x-www-form-urlencoded" bodies that scans the content in place and passes each field to a {@link FieldHandler}
+ * as a {@link FormField} view, without building a {@link String} of the body or a map of all the fields.
+ * <p>
+ * A whole body can be decoded with {@link #decode(ByteBuf, FieldHandler)}, and a single field can be looked up
+ * with {@link #findValue(ByteBuf, CharSequence)}.
+ * An instance decodes a body incrementally from its content blocks passed to {@link #offer(ByteBuf)},
+ * so a large form doesn't need to be aggregated. Only a field split across blocks is copied,
+ * and a field longer than the maximum field length or a field beyond the maximum number of fields is rejected
+ * by a {@link TooLongFrameException}.
+ * An invalid escape sequence is reported by a {@link CorruptedFrameException} when the field is decoded,
+ * so that it can be told apart from the exceptions thrown by the handler.
+ * An instance is not thread-safe, and it can be reused for another body after {@link #finish()} or {@link #reset()}.
+ *
+ * @author Yongshun Ye
+ */
+public class FormUrlencodedDecoder {
+    public static final int DEFAULT_MAX_FIELD_LENGTH = 64 * 1024;
+    // The same as the maximum number of params of Netty's QueryStringDecoder
+    public static final int DEFAULT_MAX_FIELDS = 1024;
+
+    /**
+     * Handles the decoded fields.
+     */
+    public interface FieldHandler {
+        /**
+         * Handles a field.
+         *
+         * @param field the field, which is only valid during this call
+         * @throws Exception when an exception occurs
+         */
+        void onField(FormField field) throws Exception;
+    }
+
+    final FieldHandler fieldHandler;
+    final int maxFieldLength;
+    final int maxFields;
+    final FormField field = new FormField();
+    // The number of the fields of the body passed to the handler so far
+    int fields;
+    // The beginning of a field split across blocks. It's an unpooled heap buffer
+    // so that it's garbage collected if the body is never finished, for example when the connection is closed.
+    ByteBuf cumulation;
+
+    /**
+     * Creates a new instance with {@link #DEFAULT_MAX_FIELD_LENGTH} and {@link #DEFAULT_MAX_FIELDS}.
+     *
+     * @param fieldHandler the handler of the decoded fields
+     */
+    public FormUrlencodedDecoder(FieldHandler fieldHandler) {
+        this(fieldHandler, DEFAULT_MAX_FIELD_LENGTH);
+    }
+
+    /**
+     * Creates a new instance with {@link #DEFAULT_MAX_FIELDS}.
+     *
+     * @param fieldHandler   the handler of the decoded fields
+     * @param maxFieldLength the maximum length in bytes of an encoded field
+     */
+    public FormUrlencodedDecoder(FieldHandler fieldHandler, int maxFieldLength) {
+        this(fieldHandler, maxFieldLength, DEFAULT_MAX_FIELDS);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param fieldHandler   the handler of the decoded fields
+     * @param maxFieldLength the maximum length in bytes of an encoded field
+     * @param maxFields      the maximum number of non-empty fields in a body
+     */
+    public FormUrlencodedDecoder(FieldHandler fieldHandler, int maxFieldLength, int maxFields) {
+        this.fieldHandler = fieldHandler;
+        this.maxFieldLength = maxFieldLength;
+        this.maxFields = maxFields;
+    }
+
+    /**
+     * Decodes the next block of a body and passes the fields completed in it to the handler.
+     * The reader index of the block is not moved.
+     *
+     * @param content the block
+     * @throws TooLongFrameException when a field is longer than the maximum field length or there are too many fields
+     * @throws Exception             when the handler throws an exception
+     */
+    public void offer(ByteBuf content) throws Exception {
+        int index = content.readerIndex(), end = content.writerIndex();
+        if (cumulation != null && cumulation.isReadable()) {
+            int ampersandIndex = content.indexOf(index, end, (byte) '&');
+            int partEnd = ampersandIndex < 0 ? end : ampersandIndex;
+            checkFieldLength(cumulation.readableBytes() + partEnd - index);
+            cumulation.writeBytes(content, index, partEnd - index);
+            if (ampersandIndex < 0)
+                return;
+            onField(cumulation, cumulation.readerIndex(), cumulation.readableBytes());
+            cumulation.clear();
+            index = ampersandIndex + 1;
+        }
+
+        int ampersandIndex;
+        while ((ampersandIndex = content.indexOf(index, end, (byte) '&')) >= 0) {
+            onField(content, index, ampersandIndex - index);
+            index = ampersandIndex + 1;
+        }
+
+        if (index < end) {
+            checkFieldLength(end - index);
+            if (cumulation == null)
+                cumulation = Unpooled.buffer(end - index);
+            cumulation.writeBytes(content, index, end - index);
+        }
+    }
+
+    /**
+     * Finishes the body and passes its last field to the handler, after which the instance can be reused for another body.
+     *
+     * @throws TooLongFrameException when the last field is one too many
+     * @throws Exception             when the handler throws an exception
+     */
+    public void finish() throws Exception {
+        try {
+            if (cumulation != null && cumulation.isReadable())
+                onField(cumulation, cumulation.readerIndex(), cumulation.readableBytes());
+        } finally {
+            reset();
+        }
+    }
+
+    /**
+     * Discards a body partially decoded, after which the instance can be reused for another body.
+     */
+    public void reset() {
+        if (cumulation != null)
+            cumulation.clear();
+        fields = 0;
+    }
+
+    void checkFieldLength(int length) throws TooLongFrameException {
+        if (length > maxFieldLength)
+            throw new TooLongFrameException("form field is larger than " + maxFieldLength + " bytes");
+    }
+
+    static void checkFields(int fields, int maxFields) throws TooLongFrameException {
+        if (fields > maxFields)
+            throw new TooLongFrameException("form has more than " + maxFields + " fields");
+    }
+
+    void onField(ByteBuf buf, int index, int length) throws Exception {
+        checkFieldLength(length);
+        if (length == 0)
+            return;
+        checkFields(++fields, maxFields);
+        field.set(buf, index, length);
+        fieldHandler.onField(field);
+    }
+
+    /**
+     * Decodes a whole body in place and passes each field to a handler, with at most {@link #DEFAULT_MAX_FIELDS} fields.
+     *
+     * @param content      the body content
+     * @param fieldHandler the handler of the fields
+     * @throws TooLongFrameException when there are too many fields
+     * @throws Exception             when the handler throws an exception
+     */
+    public static void decode(ByteBuf content, FieldHandler fieldHandler) throws Exception {
+        decode(content, DEFAULT_MAX_FIELDS, fieldHandler);
+    }
+
+    /**
+     * Decodes a whole body in place and passes each field to a handler.
+     * The fields before the one beyond the maximum number of fields have been passed to the handler when it's rejected.
+     *
+     * @param content      the body content
+     * @param maxFields    the maximum number of non-empty fields
+     * @param fieldHandler the handler of the fields
+     * @throws TooLongFrameException when there are more fields than the maximum number
+     * @throws Exception             when the handler throws an exception
+     */
+    public static void decode(ByteBuf content, int maxFields, FieldHandler fieldHandler) throws Exception {
+        FormField field = new FormField();
+        int fields = 0;
+        int index = content.readerIndex(), end = content.writerIndex();
+        while (index < end) {
+            int ampersandIndex = content.indexOf(index, end, (byte) '&');
+            int fieldEnd = ampersandIndex < 0 ? end : ampersandIndex;
+            if (fieldEnd > index) {
+                checkFields(++fields, maxFields);
+                field.set(content, index, fieldEnd - index);
+                fieldHandler.onField(field);
+            }
+            index = fieldEnd + 1;
+        }
+    }
+
+    /**
+     * Looks up the value of the first field with a name in a whole body,
+     * decoding only the value found.
+     *
+     * @param content the body content
+     * @param name    the name
+     * @return the value, or {@code null} if there's no field with the name
+     * @throws CorruptedFrameException if a name compared or the value contains an invalid escape sequence
+     */
+    public static String findValue(ByteBuf content, CharSequence name) throws CorruptedFrameException {
+        FormField field = new FormField();
+        int index = content.readerIndex(), end = content.writerIndex();
+        while (index < end) {
+            int ampersandIndex = content.indexOf(index, end, (byte) '&');
+            int fieldEnd = ampersandIndex < 0 ? end : ampersandIndex;
+            if (fieldEnd > index) {
+                field.set(content, index, fieldEnd - index);
+                if (field.nameEquals(name))
+                    return field.value();
+            }
+            index = fieldEnd + 1;
+        }
+        return null;
+    }
+
+    static String decodeComponent(ByteBuf buf, int index, int length) throws CorruptedFrameException {
+        int end = index + length;
+        int firstEscapeIndex = -1;
+        for (int i = index; i < end; i++) {
+            byte b = buf.getByte(i);
+            if (b == '%' || b == '+') {
+                firstEscapeIndex = i;
+                break;
+            }
+        }
+        if (firstEscapeIndex < 0)
+            return buf.toString(index, length, CharsetUtil.UTF_8);
+
+        byte[] bytes = new byte[length];
+        buf.getBytes(index, bytes, 0, firstEscapeIndex - index);
+        int n = firstEscapeIndex - index;
+        for (int i = firstEscapeIndex; i < end; n++) {
+            byte b = buf.getByte(i);
+            if (b == '+') {
+                bytes[n] = ' ';
+                i++;
+            } else if (b == '%') {
+                bytes[n] = decodeEscape(buf, i, end);
+                i += 3;
+            } else {
+                bytes[n] = b;
+                i++;
+            }
+        }
+        return new String(bytes, 0, n, CharsetUtil.UTF_8);
+    }
+
+    static boolean componentEquals(ByteBuf buf, int index, int length, CharSequence s) throws CorruptedFrameException {
+        int end = index + length, sLength = s.length();
+        int j = 0;
+        for (int i = index; i < end; j++) {
+            if (j == sLength)
+                return false;
+            char c = s.charAt(j);
+            if (c >= 0x80)
+                // Compares the decoded string for non-ASCII names, which are encoded in multiple bytes
+                return decodeComponent(buf, index, length).contentEquals(s);
+
+            byte b = buf.getByte(i);
+            if (b == '+') {
+                b = ' ';
+                i++;
+            } else if (b == '%') {
+                b = decodeEscape(buf, i, end);
+                i += 3;
+            } else
+                i++;
+            if (b != c)
+                return false;
+        }
+        return j == sLength;
+    }
+
+    static byte decodeEscape(ByteBuf buf, int percentIndex, int end) throws CorruptedFrameException {
+        if (percentIndex + 2 >= end)
+            throw new CorruptedFrameException("unterminated escape sequence at index " + percentIndex);
+        int high = decodeHexDigit(buf.getByte(percentIndex + 1)), low = decodeHexDigit(buf.getByte(percentIndex + 2));
+        if (high < 0 || low < 0)
+            throw new CorruptedFrameException("invalid escape sequence at index " + percentIndex);
+        return (byte) (high << 4 | low);
+    }
+
+    static int decodeHexDigit(byte b) {
+        if (b >= '0' && b <= '9')
+            return b - '0';
+        if (b >= 'a' && b <= 'f')
+            return b - 'a' + 10;
+        if (b >= 'A' && b <= 'F')
+            return b - 'A' + 10;
+        return -1;
+    }
+}
@@ -17,6 +17,7 @@
 package shreckye.asynchttpserver.codec;
 
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.EmptyHttpHeaders;
 import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpVersion;
 
@@ -32,8 +33,6 @@ public interface FullResponse extends ResponseWithoutBody, Body, HttpObject {
      * @return the Netty {@link FullHttpResponse}
      */
     default FullHttpResponse toNettyFullHttpResponse() {
-        DefaultFullHttpResponse defaultFullHttpResponse = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status(), bodyContent());
-        defaultFullHttpResponse.headers().setAll(headers());
-        return defaultFullHttpResponse;
+        return new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status(), bodyContent(), headers(), EmptyHttpHeaders.INSTANCE);
     }
 }
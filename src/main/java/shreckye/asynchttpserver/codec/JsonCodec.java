@@ -0,0 +1,89 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * A pluggable codec that decodes JSON straight from the content of a body and encodes JSON straight into it,
+ * without copying it through a {@link String} or a byte array.
+ * An instance is usually shared by all the services, so implementations should be thread-safe.
+ *
+ * @author Yongshun Ye
+ * @see shreckye.asynchttpserver.codec.jackson.JacksonJsonCodec
+ */
+public interface JsonCodec {
+    /**
+     * Decodes the readable bytes of a buffer as JSON into an object of a type.
+     * The buffer may be a heap, direct or composite buffer and is not released.
+     *
+     * @param content the buffer
+     * @param type    the type, which may be a generic type such as {@code List<String>}
+     * @param <T>     the type
+     * @return the decoded object
+     * @throws IOException when the content isn't valid JSON for the type
+     */
+    <T> T decode(ByteBuf content, Type type) throws IOException;
+
+    /**
+     * Decodes the readable bytes of a buffer as JSON into an object of a class.
+     *
+     * @param content the buffer
+     * @param type    the class
+     * @param <T>     the type
+     * @return the decoded object
+     * @throws IOException when the content isn't valid JSON for the class
+     */
+    default <T> T decode(ByteBuf content, Class<T> type) throws IOException {
+        return decode(content, (Type) type);
+    }
+
+    /**
+     * Encodes an object as JSON in UTF-8 and writes it to a buffer.
+     *
+     * @param value the object
+     * @param out   the buffer to write to
+     * @throws IOException when the object can't be encoded
+     */
+    void encode(Object value, ByteBuf out) throws IOException;
+
+    /**
+     * Encodes an object as JSON in UTF-8 into a new buffer from an allocator.
+     * The buffer is released if the object can't be encoded.
+     *
+     * @param value the object
+     * @param alloc the allocator
+     * @return the buffer with the encoded JSON
+     * @throws IOException when the object can't be encoded
+     */
+    default ByteBuf encode(Object value, ByteBufAllocator alloc) throws IOException {
+        ByteBuf out = alloc.buffer();
+        boolean encoded = false;
+        try {
+            encode(value, out);
+            encoded = true;
+            return out;
+        } finally {
+            if (!encoded)
+                out.release();
+        }
+    }
+}
@@ -16,9 +16,32 @@
 
 package shreckye.asynchttpserver.codec;
 
+import javax.annotation.Nullable;
+
 public class MediaType {
     public final static String TEXT_HTML = "text/html", TEXT_HTML_UTF8 = TEXT_HTML + "; charset=utf-8",
             APPLICATION_X_WWW_FORM_URLENCODED = "application/x-www-form-urlencoded",
             APPLICATION_JSON = "application/json",
-            APPLICATION_OCTET_STREAM = "application/octet-stream";
+            APPLICATION_OCTET_STREAM = "application/octet-stream",
+            MULTIPART_FORM_DATA = "multipart/form-data";
+
+    /**
+     * Returns whether a "content-type" value is of a media type, ignoring the case and any parameters such as the charset.
+     *
+     * @param contentType the "content-type" value, such as "application/x-www-form-urlencoded; charset=UTF-8"
+     * @param mediaType   the media type, such as {@link #APPLICATION_X_WWW_FORM_URLENCODED}
+     * @return whether the media type matches
+     */
+    public static boolean matches(@Nullable String contentType, String mediaType) {
+        if (contentType == null)
+            return false;
+        int start = 0, end = contentType.indexOf(';');
+        if (end < 0)
+            end = contentType.length();
+        while (start < end && Character.isWhitespace(contentType.charAt(start)))
+            start++;
+        while (end > start && Character.isWhitespace(contentType.charAt(end - 1)))
+            end--;
+        return end - start == mediaType.length() && contentType.regionMatches(true, start, mediaType, 0, mediaType.length());
+    }
 }
@@ -0,0 +1,321 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.util.CharsetUtil;
+
+import java.util.Arrays;
+
+/**
+ * A decoder of "multipart/form-data" bodies that parses the parts incrementally from the content blocks
+ * as they are received and passes them to a {@link PartHandler}, so a body of any size is decoded in constant memory.
+ * <p>
+ * The content blocks are kept as retained slices instead of being copied, and only until they are decoded.
+ * The content of a part is passed on as slices of them, so it can be written out straight from their NIO buffers.
+ * If more than a few blocks are left undecoded, for example when the header fields of a part arrive in many small blocks,
+ * their undecoded bytes are copied into one small heap buffer, so that the decoder never holds more than a few blocks.
+ * A malformed body is rejected with a {@link CorruptedFrameException},
+ * and the header fields of a part longer than the maximum header size are rejected with a {@link TooLongFrameException}.
+ * An instance is not thread-safe. It holds buffers while a body is being decoded,
+ * so {@link #reset()} has to be called if the body isn't finished, for example when the connection is closed.
+ *
+ * @author Yongshun Ye
+ */
+public class MultipartDecoder {
+    public static final int DEFAULT_MAX_HEADER_SIZE = 8 * 1024;
+    // The maximum number of blocks left undecoded, above which their undecoded bytes are copied
+    static final int MAX_RETAINED_BLOCKS = 16;
+
+    /**
+     * Handles the decoded parts.
+     */
+    public interface PartHandler {
+        /**
+         * Handles the start of a part after its header fields are decoded.
+         *
+         * @param part the part
+         * @throws Exception when an exception occurs
+         */
+        void onPartStart(MultipartPart part) throws Exception;
+
+        /**
+         * Handles a block of the content of the current part.
+         * This method can be called from 0 to multiple times for a part.
+         *
+         * @param content the block, which is only valid during this call
+         * @throws Exception when an exception occurs
+         */
+        void onPartContent(ByteBuf content) throws Exception;
+
+        /**
+         * Handles the end of the current part.
+         *
+         * @throws Exception when an exception occurs
+         */
+        void onPartEnd() throws Exception;
+    }
+
+    static final byte STATE_PREAMBLE = 0, STATE_BOUNDARY_SUFFIX = 1, STATE_HEADERS = 2, STATE_BODY = 3, STATE_EPILOGUE = 4;
+
+    final PartHandler partHandler;
+    final int maxHeaderSize;
+    // "\r\n--" followed by the boundary, which precedes every boundary except possibly the first one
+    final byte[] delimiter;
+    // How far the delimiter can be shifted when a byte is read at its last position without a match
+    final int[] delimiterShifts = new int[256];
+    byte state = STATE_PREAMBLE;
+    boolean firstBoundaryChecked = false;
+    MultipartPart part;
+    int headerSize;
+    // The undecoded blocks, which are never more than MAX_RETAINED_BLOCKS plus the block being added,
+    // so the composite buffer never consolidates them itself
+    CompositeByteBuf cumulation;
+
+    /**
+     * Creates a new instance with {@link #DEFAULT_MAX_HEADER_SIZE}.
+     *
+     * @param boundary    the boundary
+     * @param partHandler the handler of the decoded parts
+     * @see #boundary(String)
+     */
+    public MultipartDecoder(String boundary, PartHandler partHandler) {
+        this(boundary, partHandler, DEFAULT_MAX_HEADER_SIZE);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param boundary      the boundary
+     * @param partHandler   the handler of the decoded parts
+     * @param maxHeaderSize the maximum size in bytes of the header fields of a part
+     * @see #boundary(String)
+     */
+    public MultipartDecoder(String boundary, PartHandler partHandler, int maxHeaderSize) {
+        this.partHandler = partHandler;
+        this.maxHeaderSize = maxHeaderSize;
+        delimiter = ("\r\n--" + boundary).getBytes(CharsetUtil.US_ASCII);
+        Arrays.fill(delimiterShifts, delimiter.length);
+        for (int i = 0; i < delimiter.length - 1; i++)
+            delimiterShifts[delimiter[i] & 0xFF] = delimiter.length - 1 - i;
+    }
+
+    /**
+     * Returns the boundary in a "content-type" of "multipart/form-data".
+     *
+     * @param contentType the "content-type"
+     * @return the boundary, or {@code null} if the "content-type" isn't "multipart/form-data" with a boundary
+     */
+    public static String boundary(String contentType) {
+        if (!MediaType.matches(contentType, MediaType.MULTIPART_FORM_DATA))
+            return null;
+        int index = contentType.indexOf(';');
+        while (index >= 0) {
+            int nameStart = index + 1;
+            int equalsIndex = contentType.indexOf('=', nameStart);
+            if (equalsIndex < 0)
+                return null;
+            index = contentType.indexOf(';', equalsIndex);
+            if (contentType.substring(nameStart, equalsIndex).trim().equalsIgnoreCase("boundary")) {
+                String boundary = contentType.substring(equalsIndex + 1, index < 0 ? contentType.length() : index).trim();
+                if (boundary.length() >= 2 && boundary.charAt(0) == '"' && boundary.charAt(boundary.length() - 1) == '"')
+                    boundary = boundary.substring(1, boundary.length() - 1);
+                return boundary.isEmpty() ? null : boundary;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Decodes the next block of a body and passes what's decoded to the handler.
+     * The block is retained if its end can't be decoded yet, and its reader index is not moved.
+     *
+     * @param content the block
+     * @throws CorruptedFrameException when the body is malformed
+     * @throws TooLongFrameException   when the header fields of a part are longer than the maximum header size
+     * @throws Exception               when the handler throws an exception
+     */
+    public void offer(ByteBuf content) throws Exception {
+        if (!content.isReadable())
+            return;
+        if (cumulation == null)
+            cumulation = Unpooled.compositeBuffer(MAX_RETAINED_BLOCKS + 1);
+        cumulation.addComponent(true, content.retainedSlice());
+        decode();
+        cumulation.discardReadComponents();
+        if (cumulation.numComponents() > MAX_RETAINED_BLOCKS)
+            copyUndecoded();
+    }
+
+    /**
+     * Copies the undecoded bytes into one heap buffer and releases the blocks.
+     * At most the maximum header size or the delimiter length is left undecoded, so the copy is small.
+     */
+    void copyUndecoded() {
+        ByteBuf undecoded = Unpooled.buffer(cumulation.readableBytes());
+        cumulation.readBytes(undecoded);
+        cumulation.discardReadComponents();
+        cumulation.addComponent(true, undecoded);
+    }
+
+    /**
+     * Finishes the body, after which the instance can be reused for another body.
+     *
+     * @throws CorruptedFrameException when the body ends before its closing boundary
+     */
+    public void finish() throws CorruptedFrameException {
+        boolean complete = state == STATE_EPILOGUE;
+        reset();
+        if (!complete)
+            throw new CorruptedFrameException("multipart body ends before its closing boundary");
+    }
+
+    /**
+     * Discards a body partially decoded and releases the buffers held,
+     * after which the instance can be reused for another body.
+     */
+    public void reset() {
+        if (cumulation != null) {
+            cumulation.release();
+            cumulation = null;
+        }
+        state = STATE_PREAMBLE;
+        firstBoundaryChecked = false;
+        part = null;
+    }
+
+    void decode() throws Exception {
+        CompositeByteBuf buf = cumulation;
+        for (; ; ) {
+            int readerIndex = buf.readerIndex(), writerIndex = buf.writerIndex();
+            switch (state) {
+                case STATE_PREAMBLE: {
+                    if (!firstBoundaryChecked) {
+                        // The first boundary may start the body without being preceded by a line break
+                        if (writerIndex - readerIndex < delimiter.length - 2)
+                            return;
+                        firstBoundaryChecked = true;
+                        if (matchesDelimiter(buf, readerIndex, 2)) {
+                            buf.readerIndex(readerIndex + delimiter.length - 2);
+                            state = STATE_BOUNDARY_SUFFIX;
+                            continue;
+                        }
+                    }
+                    int delimiterIndex = indexOfDelimiter(buf, readerIndex, writerIndex);
+                    if (delimiterIndex < 0) {
+                        buf.readerIndex(Math.max(readerIndex, writerIndex - delimiter.length + 1));
+                        return;
+                    }
+                    buf.readerIndex(delimiterIndex + delimiter.length);
+                    state = STATE_BOUNDARY_SUFFIX;
+                    continue;
+                }
+                case STATE_BOUNDARY_SUFFIX: {
+                    if (writerIndex - readerIndex < 2)
+                        return;
+                    byte b0 = buf.getByte(readerIndex), b1 = buf.getByte(readerIndex + 1);
+                    if (b0 == '-' && b1 == '-')
+                        state = STATE_EPILOGUE;
+                    else if (b0 == '\r' && b1 == '\n') {
+                        buf.readerIndex(readerIndex + 2);
+                        part = new MultipartPart();
+                        headerSize = 0;
+                        state = STATE_HEADERS;
+                    } else if (b0 == ' ' || b0 == '\t')
+                        // Transport padding
+                        buf.readerIndex(readerIndex + 1);
+                    else
+                        throw new CorruptedFrameException("invalid multipart boundary");
+                    continue;
+                }
+                case STATE_HEADERS: {
+                    int lfIndex = buf.indexOf(readerIndex, writerIndex, (byte) '\n');
+                    int lineLength = (lfIndex < 0 ? writerIndex : lfIndex + 1) - readerIndex;
+                    if (headerSize + lineLength > maxHeaderSize)
+                        throw new TooLongFrameException("multipart part header is larger than " + maxHeaderSize + " bytes");
+                    if (lfIndex < 0)
+                        return;
+                    headerSize += lineLength;
+
+                    int lineEnd = lfIndex > readerIndex && buf.getByte(lfIndex - 1) == '\r' ? lfIndex - 1 : lfIndex;
+                    buf.readerIndex(lfIndex + 1);
+                    if (lineEnd == readerIndex) {
+                        state = STATE_BODY;
+                        partHandler.onPartStart(part);
+                    } else {
+                        int colonIndex = buf.indexOf(readerIndex, lineEnd, (byte) ':');
+                        if (colonIndex < 0)
+                            throw new CorruptedFrameException("invalid multipart part header");
+                        part.headers.add(buf.toString(readerIndex, colonIndex - readerIndex, CharsetUtil.US_ASCII).trim(),
+                                buf.toString(colonIndex + 1, lineEnd - colonIndex - 1, CharsetUtil.UTF_8).trim());
+                    }
+                    continue;
+                }
+                case STATE_BODY: {
+                    int delimiterIndex = indexOfDelimiter(buf, readerIndex, writerIndex);
+                    if (delimiterIndex < 0) {
+                        // Keeps the end that may be the beginning of a delimiter
+                        int tailIndex = buf.indexOf(Math.max(readerIndex, writerIndex - delimiter.length + 1), writerIndex, (byte) '\r');
+                        int contentEnd = tailIndex < 0 ? writerIndex : tailIndex;
+                        if (contentEnd > readerIndex) {
+                            partHandler.onPartContent(buf.slice(readerIndex, contentEnd - readerIndex));
+                            buf.readerIndex(contentEnd);
+                        }
+                        return;
+                    }
+                    if (delimiterIndex > readerIndex)
+                        partHandler.onPartContent(buf.slice(readerIndex, delimiterIndex - readerIndex));
+                    buf.readerIndex(delimiterIndex + delimiter.length);
+                    state = STATE_BOUNDARY_SUFFIX;
+                    part = null;
+                    partHandler.onPartEnd();
+                    continue;
+                }
+                default:
+                    buf.readerIndex(writerIndex);
+                    return;
+            }
+        }
+    }
+
+    /**
+     * Finds the delimiter with the Boyer-Moore-Horspool algorithm,
+     * which only reads a small fraction of the bytes of a part since the delimiter is usually long.
+     */
+    int indexOfDelimiter(ByteBuf buf, int fromIndex, int toIndex) {
+        int lastOffset = delimiter.length - 1;
+        byte lastByte = delimiter[lastOffset];
+        for (int index = fromIndex; index + lastOffset < toIndex; ) {
+            byte b = buf.getByte(index + lastOffset);
+            if (b == lastByte && matchesDelimiter(buf, index, 0))
+                return index;
+            index += delimiterShifts[b & 0xFF];
+        }
+        return -1;
+    }
+
+    boolean matchesDelimiter(ByteBuf buf, int index, int delimiterOffset) {
+        for (int i = delimiterOffset; i < delimiter.length; i++)
+            if (buf.getByte(index + i - delimiterOffset) != delimiter[i])
+                return false;
+        return true;
+    }
+}
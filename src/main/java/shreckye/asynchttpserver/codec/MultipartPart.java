@@ -0,0 +1,136 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver.codec;
+
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
+
+/**
+ * A part of a "multipart/form-data" body with its header fields, decoded by a {@link MultipartDecoder}.
+ * The "name" and "filename" parameters are parsed from the "content-disposition" header field when they are first asked for.
+ *
+ * @author Yongshun Ye
+ */
+public final class MultipartPart {
+    final HttpHeaders headers = new DefaultHttpHeaders(false);
+    boolean contentDispositionParsed = false;
+    String name, filename;
+
+    MultipartPart() {
+    }
+
+    /**
+     * Returns the header fields of this part.
+     *
+     * @return the header fields
+     */
+    public HttpHeaders headers() {
+        return headers;
+    }
+
+    /**
+     * Returns the "name" parameter of the "content-disposition" header field, which is the name of the form field.
+     *
+     * @return the name, or {@code null} if absent
+     */
+    public String name() {
+        parseContentDispositionIfNeeded();
+        return name;
+    }
+
+    /**
+     * Returns the "filename" parameter of the "content-disposition" header field.
+     *
+     * @return the file name, or {@code null} if this part isn't a file
+     */
+    public String filename() {
+        parseContentDispositionIfNeeded();
+        return filename;
+    }
+
+    /**
+     * Returns whether this part is a file, which is when it has a "filename" parameter.
+     *
+     * @return whether this part is a file
+     */
+    public boolean isFile() {
+        return filename() != null;
+    }
+
+    /**
+     * Returns the "content-type" of this part.
+     *
+     * @return the "content-type", or {@code null} if absent
+     */
+    public String contentType() {
+        return headers.get(HttpHeaderNames.CONTENT_TYPE);
+    }
+
+    void parseContentDispositionIfNeeded() {
+        if (contentDispositionParsed)
+            return;
+        contentDispositionParsed = true;
+        String contentDisposition = headers.get(HttpHeaderNames.CONTENT_DISPOSITION);
+        if (contentDisposition == null)
+            return;
+
+        int length = contentDisposition.length();
+        int index = contentDisposition.indexOf(';');
+        while (index >= 0 && index < length) {
+            int nameStart = index + 1;
+            int equalsIndex = contentDisposition.indexOf('=', nameStart);
+            if (equalsIndex < 0)
+                break;
+            String parameterName = contentDisposition.substring(nameStart, equalsIndex).trim();
+
+            int valueStart = equalsIndex + 1;
+            while (valueStart < length && contentDisposition.charAt(valueStart) == ' ')
+                valueStart++;
+            String value;
+            if (valueStart < length && contentDisposition.charAt(valueStart) == '"') {
+                StringBuilder sb = new StringBuilder();
+                int i = valueStart + 1;
+                for (; i < length; i++) {
+                    char c = contentDisposition.charAt(i);
+                    if (c == '"')
+                        break;
+                    if (c == '\\' && i + 1 < length)
+                        c = contentDisposition.charAt(++i);
+                    sb.append(c);
+                }
+                value = sb.toString();
+                index = contentDisposition.indexOf(';', i);
+            } else {
+                index = contentDisposition.indexOf(';', valueStart);
+                value = contentDisposition.substring(valueStart, index < 0 ? length : index).trim();
+            }
+
+            if (parameterName.equalsIgnoreCase("name"))
+                name = value;
+            else if (parameterName.equalsIgnoreCase("filename"))
+                filename = value;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MultipartPart{" +
+                "headers=" + headers +
+                '}';
+    }
+}
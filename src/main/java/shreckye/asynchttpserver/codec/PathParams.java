@@ -0,0 +1,218 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver.codec;
+
+import java.util.NoSuchElementException;
+
+/**
+ * The path parameters captured from the URI of a request by a path template or the named groups of a regular expression.
+ * The values are kept as offsets into the URI, so no {@link String} is created until one is asked for,
+ * and {@link #getInt(String)} and {@link #getLong(String)} parse the values in place.
+ * The values are not percent-decoded.
+ *
+ * @author Yongshun Ye
+ */
+public final class PathParams {
+    /**
+     * The instance without any path parameters.
+     */
+    public static final PathParams EMPTY = new PathParams("", new String[0], new int[0]);
+
+    final String uri;
+    final String[] names;
+    // The start and end offsets of each value, both -1 for a value that's not captured
+    final int[] offsets;
+
+    /**
+     * Creates a new instance with the URI, the parameter names, and the start and end offsets of the values in the URI.
+     *
+     * @param uri     the URI
+     * @param names   the parameter names
+     * @param offsets the start and end offsets of each value in pairs, both -1 for a value that's not captured
+     */
+    public PathParams(String uri, String[] names, int[] offsets) {
+        this.uri = uri;
+        this.names = names;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Returns the number of path parameters.
+     *
+     * @return the number of path parameters
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Returns the name of a path parameter.
+     *
+     * @param index the index of the path parameter
+     * @return the name
+     */
+    public String name(int index) {
+        return names[index];
+    }
+
+    /**
+     * Returns the index of a path parameter.
+     *
+     * @param name the name of the path parameter
+     * @return the index, or -1 if there is no path parameter with the name
+     */
+    public int indexOf(String name) {
+        for (int i = 0; i < names.length; i++)
+            if (names[i].equals(name))
+                return i;
+        return -1;
+    }
+
+    /**
+     * Returns whether a path parameter is captured.
+     *
+     * @param name the name of the path parameter
+     * @return whether the path parameter is captured
+     */
+    public boolean contains(String name) {
+        int index = indexOf(name);
+        return index != -1 && offsets[2 * index] != -1;
+    }
+
+    /**
+     * Returns the value of a path parameter.
+     *
+     * @param index the index of the path parameter
+     * @return the value, or {@code null} if it's not captured
+     */
+    public String get(int index) {
+        int start = offsets[2 * index];
+        return start == -1 ? null : uri.substring(start, offsets[2 * index + 1]);
+    }
+
+    /**
+     * Returns the value of a path parameter.
+     *
+     * @param name the name of the path parameter
+     * @return the value, or {@code null} if there is no such path parameter or it's not captured
+     */
+    public String get(String name) {
+        int index = indexOf(name);
+        return index == -1 ? null : get(index);
+    }
+
+    /**
+     * Parses the value of a path parameter as a decimal {@code int} without creating a {@link String}.
+     *
+     * @param index the index of the path parameter
+     * @return the parsed value
+     * @throws NoSuchElementException if the path parameter is not captured
+     * @throws NumberFormatException  if the value is not a valid {@code int}
+     */
+    public int getInt(int index) throws NoSuchElementException, NumberFormatException {
+        return (int) parseLong(index, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Parses the value of a path parameter as a decimal {@code int} without creating a {@link String}.
+     *
+     * @param name the name of the path parameter
+     * @return the parsed value
+     * @throws NoSuchElementException if there is no such path parameter or it's not captured
+     * @throws NumberFormatException  if the value is not a valid {@code int}
+     */
+    public int getInt(String name) throws NoSuchElementException, NumberFormatException {
+        return getInt(indexOfCaptured(name));
+    }
+
+    /**
+     * Parses the value of a path parameter as a decimal {@code long} without creating a {@link String}.
+     *
+     * @param index the index of the path parameter
+     * @return the parsed value
+     * @throws NoSuchElementException if the path parameter is not captured
+     * @throws NumberFormatException  if the value is not a valid {@code long}
+     */
+    public long getLong(int index) throws NoSuchElementException, NumberFormatException {
+        return parseLong(index, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Parses the value of a path parameter as a decimal {@code long} without creating a {@link String}.
+     *
+     * @param name the name of the path parameter
+     * @return the parsed value
+     * @throws NoSuchElementException if there is no such path parameter or it's not captured
+     * @throws NumberFormatException  if the value is not a valid {@code long}
+     */
+    public long getLong(String name) throws NoSuchElementException, NumberFormatException {
+        return getLong(indexOfCaptured(name));
+    }
+
+    private int indexOfCaptured(String name) throws NoSuchElementException {
+        int index = indexOf(name);
+        if (index == -1)
+            throw new NoSuchElementException("no path parameter named " + name);
+        return index;
+    }
+
+    private long parseLong(int index, long minValue, long maxValue) throws NoSuchElementException, NumberFormatException {
+        int start = offsets[2 * index], end = offsets[2 * index + 1];
+        if (start == -1)
+            throw new NoSuchElementException("the path parameter " + names[index] + " is not captured");
+        if (start == end)
+            throw new NumberFormatException("the path parameter " + names[index] + " is empty");
+
+        // Accumulates negatively like Long.parseLong so that the minimum value can be parsed
+        int i = start;
+        boolean negative = false;
+        char first = uri.charAt(i);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            if (++i == end)
+                throw newNumberFormatException(start, end);
+        }
+        long limit = negative ? minValue : -maxValue;
+        long multiplyLimit = limit / 10;
+        long result = 0;
+        for (; i < end; i++) {
+            int digit = uri.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || result < multiplyLimit)
+                throw newNumberFormatException(start, end);
+            result *= 10;
+            if (result < limit + digit)
+                throw newNumberFormatException(start, end);
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    private NumberFormatException newNumberFormatException(int start, int end) {
+        return new NumberFormatException("For input string: \"" + uri.substring(start, end) + "\"");
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder stringBuilder = new StringBuilder("PathParams{");
+        for (int i = 0; i < names.length; i++) {
+            if (i != 0)
+                stringBuilder.append(", ");
+            stringBuilder.append(names[i]).append("='").append(get(i)).append('\'');
+        }
+        return stringBuilder.append('}').toString();
+    }
+}
@@ -17,17 +17,19 @@
 package shreckye.asynchttpserver.codec;
 
 import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.util.AsciiString;
 
 /**
  * HTTP header names in an HTTP request.
+ * They are {@link AsciiString}s, whose case-insensitive hash codes are computed only once when they are looked up.
  *
  * @author Yongshun Ye
  * @see HttpHeaderNames
  */
 public class RequestHeaderNames {
-    public final static String HOST = HttpHeaderNames.HOST.toString(),
-            CONNECTION = HttpHeaderNames.CONNECTION.toString(),
-            COOKIE = HttpHeaderNames.COOKIE.toString(),
-            CONTENT_TYPE = HttpHeaderNames.CONTENT_TYPE.toString(),
-            CONTENT_LENGTH = HttpHeaderNames.CONTENT_LENGTH.toString();
+    public final static AsciiString HOST = HttpHeaderNames.HOST,
+            CONNECTION = HttpHeaderNames.CONNECTION,
+            COOKIE = HttpHeaderNames.COOKIE,
+            CONTENT_TYPE = HttpHeaderNames.CONTENT_TYPE,
+            CONTENT_LENGTH = HttpHeaderNames.CONTENT_LENGTH;
 }
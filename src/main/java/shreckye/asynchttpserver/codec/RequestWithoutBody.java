@@ -65,6 +65,52 @@ public interface RequestWithoutBody extends MessageWithoutBody, HttpObject {
      */
     Map<String, List<String>> queryParams();
 
+    /**
+     * Returns the path parameters captured by the path template or the regular expression that the request is routed with.
+     *
+     * @return the path parameters, empty if none is captured
+     */
+    default PathParams pathParams() {
+        return PathParams.EMPTY;
+    }
+
+    /**
+     * Returns the value of a path parameter.
+     *
+     * @param name the name of the path parameter
+     * @return the value, or {@code null} if there is no such path parameter
+     * @see #pathParams()
+     */
+    default String pathParam(String name) {
+        return pathParams().get(name);
+    }
+
+    /**
+     * Parses the value of a path parameter as an {@code int} in place.
+     *
+     * @param name the name of the path parameter
+     * @return the parsed value
+     * @throws java.util.NoSuchElementException if there is no such path parameter
+     * @throws NumberFormatException            if the value is not a valid {@code int}
+     * @see #pathParams()
+     */
+    default int pathParamInt(String name) {
+        return pathParams().getInt(name);
+    }
+
+    /**
+     * Parses the value of a path parameter as a {@code long} in place.
+     *
+     * @param name the name of the path parameter
+     * @return the parsed value
+     * @throws java.util.NoSuchElementException if there is no such path parameter
+     * @throws NumberFormatException            if the value is not a valid {@code long}
+     * @see #pathParams()
+     */
+    default long pathParamLong(String name) {
+        return pathParams().getLong(name);
+    }
+
 
     /**
      * Returns the value of the "host" header.
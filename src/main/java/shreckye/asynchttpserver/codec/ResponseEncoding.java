@@ -0,0 +1,154 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.util.AsciiString;
+import io.netty.util.CharsetUtil;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Encodes the status lines and the header fields of HTTP responses straight into {@link ByteBuf}s,
+ * without building Netty {@link io.netty.handler.codec.http.HttpResponse}s.
+ * The status lines of the standard statuses are encoded ahead.
+ *
+ * @author Yongshun Ye
+ */
+public final class ResponseEncoding {
+    public static final int CRLF_SHORT = ('\r' << 8) | '\n';
+    private static final int COLON_AND_SPACE_SHORT = (':' << 8) | ' ';
+    private static final byte[] HTTP_1_1 = "HTTP/1.1 ".getBytes(CharsetUtil.US_ASCII);
+
+    // The standard statuses and their encoded status lines, indexed by their codes
+    private static final HttpResponseStatus[] STATUSES = new HttpResponseStatus[600];
+    private static final byte[][] STATUS_LINES = new byte[600][];
+
+    static {
+        for (int code = 100; code < STATUSES.length; code++) {
+            HttpResponseStatus status = HttpResponseStatus.valueOf(code);
+            STATUSES[code] = status;
+            STATUS_LINES[code] = ("HTTP/1.1 " + status.code() + ' ' + status.reasonPhrase() + "\r\n").getBytes(CharsetUtil.US_ASCII);
+        }
+    }
+
+    private ResponseEncoding() {
+    }
+
+    /**
+     * Encodes the status line of an HTTP/1.1 response.
+     *
+     * @param status the status
+     * @param buf    the buffer to write to
+     */
+    public static void encodeStatusLine(HttpResponseStatus status, ByteBuf buf) {
+        int code = status.code();
+        if (code >= 100 && code < STATUSES.length && STATUSES[code] == status)
+            buf.writeBytes(STATUS_LINES[code]);
+        else {
+            buf.writeBytes(HTTP_1_1);
+            ByteBufUtil.copy(status.codeAsText(), buf);
+            buf.writeByte(' ');
+            ByteBufUtil.writeAscii(buf, status.reasonPhrase());
+            buf.writeShort(CRLF_SHORT);
+        }
+    }
+
+    /**
+     * Encodes a header name followed by a colon and a space, to be written ahead with {@link #encodeHeader(byte[], CharSequence, ByteBuf)}.
+     *
+     * @param name the header name
+     * @return the encoded bytes
+     */
+    public static byte[] encodeHeaderName(AsciiString name) {
+        byte[] bytes = new byte[name.length() + 2];
+        name.copy(0, bytes, 0, name.length());
+        bytes[bytes.length - 2] = ':';
+        bytes[bytes.length - 1] = ' ';
+        return bytes;
+    }
+
+    /**
+     * Encodes a header field.
+     *
+     * @param name  the header name
+     * @param value the header value
+     * @param buf   the buffer to write to
+     */
+    public static void encodeHeader(CharSequence name, CharSequence value, ByteBuf buf) {
+        if (name instanceof AsciiString)
+            ByteBufUtil.copy((AsciiString) name, buf);
+        else
+            ByteBufUtil.writeAscii(buf, name);
+        buf.writeShort(COLON_AND_SPACE_SHORT);
+        ByteBufUtil.writeAscii(buf, value);
+        buf.writeShort(CRLF_SHORT);
+    }
+
+    /**
+     * Encodes a header field with a name encoded by {@link #encodeHeaderName(AsciiString)}.
+     *
+     * @param encodedName the encoded header name
+     * @param value       the header value
+     * @param buf         the buffer to write to
+     */
+    public static void encodeHeader(byte[] encodedName, CharSequence value, ByteBuf buf) {
+        buf.writeBytes(encodedName);
+        ByteBufUtil.writeAscii(buf, value);
+        buf.writeShort(CRLF_SHORT);
+    }
+
+    /**
+     * Encodes a header field with a non-negative decimal value, such as "content-length", without creating a {@link String}.
+     *
+     * @param encodedName the encoded header name
+     * @param value       the header value
+     * @param buf         the buffer to write to
+     */
+    public static void encodeHeader(byte[] encodedName, long value, ByteBuf buf) {
+        buf.writeBytes(encodedName);
+        int digits = 1;
+        for (long remaining = value / 10; remaining > 0; remaining /= 10)
+            digits++;
+        int index = buf.writerIndex() + digits;
+        buf.ensureWritable(digits);
+        do {
+            buf.setByte(--index, (int) ('0' + value % 10));
+            value /= 10;
+        } while (value > 0);
+        buf.writerIndex(buf.writerIndex() + digits);
+        buf.writeShort(CRLF_SHORT);
+    }
+
+    /**
+     * Encodes all the header fields in Netty {@link HttpHeaders}.
+     *
+     * @param headers the headers
+     * @param buf     the buffer to write to
+     */
+    public static void encodeHeaders(HttpHeaders headers, ByteBuf buf) {
+        Iterator<Map.Entry<CharSequence, CharSequence>> iterator = headers.iteratorCharSequence();
+        while (iterator.hasNext()) {
+            Map.Entry<CharSequence, CharSequence> header = iterator.next();
+            encodeHeader(header.getKey(), header.getValue(), buf);
+        }
+    }
+}
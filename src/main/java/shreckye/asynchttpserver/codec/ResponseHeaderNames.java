@@ -17,16 +17,18 @@
 package shreckye.asynchttpserver.codec;
 
 import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.util.AsciiString;
 
 /**
  * HTTP header names in an HTTP response.
+ * They are {@link AsciiString}s, whose case-insensitive hash codes are computed only once when they are looked up.
  *
  * @author Yongshun Ye
  * @see HttpHeaderNames
  */
 public class ResponseHeaderNames {
-    public final static String CONNECTION = HttpHeaderNames.CONNECTION.toString(),
-            SET_COOKIE = HttpHeaderNames.SET_COOKIE.toString(),
-            CONTENT_TYPE = HttpHeaderNames.CONTENT_TYPE.toString(),
-            CONTENT_LENGTH = HttpHeaderNames.CONTENT_LENGTH.toString();
+    public final static AsciiString CONNECTION = HttpHeaderNames.CONNECTION,
+            SET_COOKIE = HttpHeaderNames.SET_COOKIE,
+            CONTENT_TYPE = HttpHeaderNames.CONTENT_TYPE,
+            CONTENT_LENGTH = HttpHeaderNames.CONTENT_LENGTH;
 }
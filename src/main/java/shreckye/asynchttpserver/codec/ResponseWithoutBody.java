@@ -16,6 +16,7 @@
 
 package shreckye.asynchttpserver.codec;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.handler.codec.http.DefaultHttpResponse;
 import io.netty.handler.codec.http.HttpResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
@@ -88,6 +89,18 @@ public interface ResponseWithoutBody extends MessageWithoutBody, HttpObject {
      */
     Long contentLength();
 
+    /**
+     * Encodes the header fields of this instance into a buffer, after the status line.
+     * By default, it encodes {@link #headers()}.
+     * Implementations can override it to encode their header fields directly without building the {@link io.netty.handler.codec.http.HttpHeaders}.
+     *
+     * @param buf the buffer to write to
+     * @see ResponseEncoding
+     */
+    default void encodeHeaders(ByteBuf buf) {
+        ResponseEncoding.encodeHeaders(headers(), buf);
+    }
+
     /**
      * Converts this instance to a Netty {@link HttpResponse}.
      *
@@ -0,0 +1,177 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.cookie.Cookie;
+
+import java.nio.ByteBuffer;
+import java.util.Set;
+
+/**
+ * An immutable {@link FullResponse} whose header fields and body are encoded only once into a direct buffer,
+ * so that sending it only writes a duplicate of the buffer.
+ * It's recommended for responses that never change, such as fixed error pages, health checks, and configuration,
+ * and should be created once and kept, for example in a static field, instead of for each request.
+ * The buffer is freed when the instance is garbage collected.
+ *
+ * @author Yongshun Ye
+ */
+public final class StaticFullResponse implements FullResponse {
+    final HttpResponseStatus status;
+    final HttpHeaders headers;
+    final String connection;
+    final Set<Cookie> setCookie;
+    final String contentType;
+    final Long contentLength;
+    // The encoded header fields, the empty line, and the body, which is never released
+    final ByteBuf encoded;
+    final int headersLength;
+
+    /**
+     * Creates a new instance with the status, the header fields, and the body of a {@link FullResponse},
+     * and releases the body of the {@link FullResponse}.
+     *
+     * @param fullResponse the {@link FullResponse}
+     */
+    public StaticFullResponse(FullResponse fullResponse) {
+        status = fullResponse.status();
+        headers = fullResponse.headers();
+        connection = fullResponse.connection();
+        setCookie = fullResponse.setCookie();
+        contentType = fullResponse.contentType();
+        contentLength = fullResponse.contentLength();
+
+        ByteBuf bodyContent = fullResponse.bodyContent();
+        ByteBuf buf = Unpooled.buffer();
+        try {
+            fullResponse.encodeHeaders(buf);
+            headersLength = buf.readableBytes();
+            buf.writeShort(ResponseEncoding.CRLF_SHORT);
+            buf.writeBytes(bodyContent, bodyContent.readerIndex(), bodyContent.readableBytes());
+
+            ByteBuffer byteBuffer = ByteBuffer.allocateDirect(buf.readableBytes());
+            buf.readBytes(byteBuffer);
+            byteBuffer.flip();
+            encoded = Unpooled.unreleasableBuffer(Unpooled.wrappedBuffer(byteBuffer));
+        } finally {
+            buf.release();
+            bodyContent.release();
+        }
+    }
+
+    /**
+     * Creates a new instance with the specified status, content-type, and body content.
+     *
+     * @param status      the status
+     * @param contentType the content-type
+     * @param bytes       the body content
+     */
+    public StaticFullResponse(HttpResponseStatus status, String contentType, byte[] bytes) {
+        this(new DefaultOutboundFullResponse(status, contentType, bytes));
+    }
+
+    /**
+     * Creates a new instance with the specified status and no body content.
+     *
+     * @param status the status
+     */
+    public StaticFullResponse(HttpResponseStatus status) {
+        this(new DefaultOutboundFullResponse(status));
+    }
+
+    public static StaticFullResponse newHtmlInstance(HttpResponseStatus status, String html) {
+        return new StaticFullResponse(DefaultOutboundFullResponse.newHtmlInstance(status, html));
+    }
+
+    public static StaticFullResponse newJsonInstance(HttpResponseStatus status, String json) {
+        return new StaticFullResponse(DefaultOutboundFullResponse.newJsonInstance(status, json));
+    }
+
+    @Override
+    public HttpResponseStatus status() {
+        return status;
+    }
+
+    /**
+     * Returns a copy of the header fields, since this instance is immutable.
+     *
+     * @return the copy of the header fields
+     */
+    @Override
+    public HttpHeaders headers() {
+        return headers.copy();
+    }
+
+    @Override
+    public String connection() {
+        return connection;
+    }
+
+    @Override
+    public Set<Cookie> setCookie() {
+        return setCookie;
+    }
+
+    @Override
+    public String contentType() {
+        return contentType;
+    }
+
+    @Override
+    public Long contentLength() {
+        return contentLength;
+    }
+
+    /**
+     * Returns a duplicate of the body, which can be released without affecting this instance.
+     *
+     * @return the duplicate of the body
+     */
+    @Override
+    public ByteBuf bodyContent() {
+        return encoded.retainedSlice(headersLength + 2, encoded.readableBytes() - headersLength - 2);
+    }
+
+    @Override
+    public void encodeHeaders(ByteBuf buf) {
+        buf.writeBytes(encoded, encoded.readerIndex(), headersLength);
+    }
+
+    /**
+     * Returns a duplicate of the encoded header fields, the empty line after them, and the body if {@code withBody} is true,
+     * to be written after the status line.
+     *
+     * @param withBody whether to include the body
+     * @return the duplicate of the encoded bytes
+     */
+    public ByteBuf retainedEncodedHeadersAndBody(boolean withBody) {
+        return withBody ? encoded.retainedDuplicate() : encoded.retainedSlice(encoded.readerIndex(), headersLength + 2);
+    }
+
+    @Override
+    public String toString() {
+        return "StaticFullResponse{" +
+                "status=" + status +
+                ", headers=" + headers +
+                ", contentLength=" + contentLength +
+                '}';
+    }
+}
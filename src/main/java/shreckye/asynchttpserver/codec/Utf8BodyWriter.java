@@ -0,0 +1,238 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.handler.codec.http.HttpResponseStatus;
+
+import java.io.Writer;
+import java.nio.CharBuffer;
+
+/**
+ * A {@link Writer} that encodes text in UTF-8 straight into a {@link ByteBuf},
+ * to build a large text body incrementally without creating {@link String}s or byte arrays in between.
+ * A surrogate pair split across two writes is still encoded as one character, and an unpaired surrogate is encoded as '?'
+ * like {@link String#getBytes(java.nio.charset.Charset)} does.
+ * <p>
+ * The buffer is taken by {@link #content()} or {@link #toFullResponse(HttpResponseStatus, String)} when the text is complete,
+ * and released after the response is sent. It should be released by {@link #release()} if no response is made of it.
+ *
+ * @author Yongshun Ye
+ */
+public class Utf8BodyWriter extends Writer {
+    final ByteBuf buf;
+    // The high surrogate written last, waiting for the low surrogate of its pair, or 0 if none
+    char pendingHighSurrogate = 0;
+
+    /**
+     * Creates a new instance that writes into a buffer from the allocator.
+     *
+     * @param alloc the allocator, such as {@link shreckye.asynchttpserver.ConnectionContext#alloc()}
+     */
+    public Utf8BodyWriter(ByteBufAllocator alloc) {
+        this(alloc.ioBuffer());
+    }
+
+    /**
+     * Creates a new instance that writes into a buffer of an initial capacity from the allocator.
+     *
+     * @param alloc           the allocator
+     * @param initialCapacity the initial capacity of the buffer in bytes
+     */
+    public Utf8BodyWriter(ByteBufAllocator alloc, int initialCapacity) {
+        this(alloc.ioBuffer(initialCapacity));
+    }
+
+    /**
+     * Creates a new instance that writes into a buffer.
+     *
+     * @param buf the buffer
+     */
+    public Utf8BodyWriter(ByteBuf buf) {
+        this.buf = buf;
+    }
+
+    @Override
+    public void write(int c) {
+        append((char) c);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) {
+        append(CharBuffer.wrap(cbuf, off, len));
+    }
+
+    @Override
+    public void write(String str, int off, int len) {
+        append(str, off, off + len);
+    }
+
+    @Override
+    public Utf8BodyWriter append(char c) {
+        if (pendingHighSurrogate != 0) {
+            char highSurrogate = pendingHighSurrogate;
+            pendingHighSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                writeCodePoint(Character.toCodePoint(highSurrogate, c));
+                return this;
+            }
+            buf.writeByte('?');
+        }
+
+        if (Character.isHighSurrogate(c))
+            pendingHighSurrogate = c;
+        else
+            writeCodePoint(Character.isLowSurrogate(c) ? '?' : c);
+        return this;
+    }
+
+    @Override
+    public Utf8BodyWriter append(CharSequence csq) {
+        if (csq == null)
+            csq = "null";
+        return append(csq, 0, csq.length());
+    }
+
+    @Override
+    public Utf8BodyWriter append(CharSequence csq, int start, int end) {
+        if (csq == null)
+            csq = "null";
+        if (start == end)
+            return this;
+
+        while (pendingHighSurrogate != 0 && start < end)
+            append(csq.charAt(start++));
+        if (start < end && Character.isHighSurrogate(csq.charAt(end - 1)))
+            pendingHighSurrogate = csq.charAt(--end);
+        if (start == end)
+            return this;
+
+        // Reserves the length first so the bytes are set without checking the capacity each time,
+        // counting the exact length only if the maximum one doesn't fit, so that the buffer is not expanded more than needed
+        if (buf.writableBytes() < ByteBufUtil.utf8MaxBytes(end - start))
+            buf.ensureWritable(utf8Bytes(csq, start, end));
+        int index = buf.writerIndex();
+        for (int i = start; i < end; i++) {
+            char c = csq.charAt(i);
+            if (c < 0x80)
+                buf.setByte(index++, c);
+            else if (!Character.isSurrogate(c))
+                index = setCodePoint(index, c);
+            else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(csq.charAt(i + 1)))
+                index = setCodePoint(index, Character.toCodePoint(c, csq.charAt(++i)));
+            else
+                buf.setByte(index++, '?');
+        }
+        buf.writerIndex(index);
+        return this;
+    }
+
+    /**
+     * Returns the number of bytes that {@link #append(CharSequence, int, int)} writes for a range without pending surrogates.
+     */
+    static int utf8Bytes(CharSequence csq, int start, int end) {
+        int utf8Bytes = 0;
+        for (int i = start; i < end; i++) {
+            char c = csq.charAt(i);
+            if (c < 0x80)
+                utf8Bytes++;
+            else if (c < 0x800)
+                utf8Bytes += 2;
+            else if (!Character.isSurrogate(c))
+                utf8Bytes += 3;
+            else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(csq.charAt(i + 1))) {
+                utf8Bytes += 4;
+                i++;
+            } else
+                utf8Bytes++;
+        }
+        return utf8Bytes;
+    }
+
+    private void writeCodePoint(int codePoint) {
+        buf.ensureWritable(4);
+        buf.writerIndex(setCodePoint(buf.writerIndex(), codePoint));
+    }
+
+    private int setCodePoint(int index, int codePoint) {
+        if (codePoint < 0x80)
+            buf.setByte(index++, codePoint);
+        else if (codePoint < 0x800) {
+            buf.setByte(index++, 0xc0 | (codePoint >> 6));
+            buf.setByte(index++, 0x80 | (codePoint & 0x3f));
+        } else if (codePoint < 0x10000) {
+            buf.setByte(index++, 0xe0 | (codePoint >> 12));
+            buf.setByte(index++, 0x80 | ((codePoint >> 6) & 0x3f));
+            buf.setByte(index++, 0x80 | (codePoint & 0x3f));
+        } else {
+            buf.setByte(index++, 0xf0 | (codePoint >> 18));
+            buf.setByte(index++, 0x80 | ((codePoint >> 12) & 0x3f));
+            buf.setByte(index++, 0x80 | ((codePoint >> 6) & 0x3f));
+            buf.setByte(index++, 0x80 | (codePoint & 0x3f));
+        }
+        return index;
+    }
+
+    /**
+     * Does nothing, since the text is written into the buffer right away.
+     */
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Completes the text, so that a high surrogate written last without its pair is encoded as '?'.
+     * The buffer is not released.
+     */
+    @Override
+    public void close() {
+        if (pendingHighSurrogate != 0) {
+            pendingHighSurrogate = 0;
+            buf.writeByte('?');
+        }
+    }
+
+    /**
+     * Completes the text and returns the buffer it's written into.
+     *
+     * @return the buffer
+     */
+    public ByteBuf content() {
+        close();
+        return buf;
+    }
+
+    /**
+     * Completes the text and creates a {@link FullResponse} with it as the body content.
+     *
+     * @param status      the status
+     * @param contentType the content-type, which should specify the UTF-8 charset for a text type such as {@link MediaType#TEXT_HTML_UTF8}
+     * @return the created {@link FullResponse}
+     */
+    public DefaultOutboundFullResponse toFullResponse(HttpResponseStatus status, String contentType) {
+        return new DefaultOutboundFullResponse(status, contentType, content());
+    }
+
+    /**
+     * Releases the buffer when the text is discarded.
+     */
+    public void release() {
+        buf.release();
+    }
+}
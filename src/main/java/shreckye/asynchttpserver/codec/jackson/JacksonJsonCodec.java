@@ -0,0 +1,86 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver.codec.jackson;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import shreckye.asynchttpserver.codec.JsonCodec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+
+/**
+ * A {@link JsonCodec} backed by a Jackson {@link ObjectMapper}.
+ * Jackson is an optional dependency of this library, so "com.fasterxml.jackson.core:jackson-databind"
+ * has to be added to the application to use this class.
+ * <p>
+ * A heap buffer is parsed in place from its backing array,
+ * and any other buffer is parsed through a {@link ByteBufInputStream}, so the content is never copied as a whole.
+ * An object is encoded through a {@link ByteBufOutputStream}, so the JSON is written straight into the buffer.
+ *
+ * @author Yongshun Ye
+ */
+public class JacksonJsonCodec implements JsonCodec {
+    final ObjectMapper objectMapper;
+
+    /**
+     * Creates a new instance with a new {@link ObjectMapper}.
+     */
+    public JacksonJsonCodec() {
+        this(new ObjectMapper());
+    }
+
+    /**
+     * Creates a new instance with a configured {@link ObjectMapper}.
+     *
+     * @param objectMapper the {@link ObjectMapper}
+     */
+    public JacksonJsonCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Returns the {@link ObjectMapper}.
+     *
+     * @return the {@link ObjectMapper}
+     */
+    public ObjectMapper objectMapper() {
+        return objectMapper;
+    }
+
+    @Override
+    public <T> T decode(ByteBuf content, Type type) throws IOException {
+        JavaType javaType = objectMapper.constructType(type);
+        if (content.hasArray())
+            return objectMapper.readValue(content.array(), content.arrayOffset() + content.readerIndex(),
+                    content.readableBytes(), javaType);
+        else
+            try (InputStream in = new ByteBufInputStream(content.duplicate())) {
+                return objectMapper.readValue(in, javaType);
+            }
+    }
+
+    @Override
+    public void encode(Object value, ByteBuf out) throws IOException {
+        objectMapper.writeValue((OutputStream) new ByteBufOutputStream(out), value);
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver.service;
+
+import shreckye.asynchttpserver.codec.FullRequest;
+import shreckye.asynchttpserver.codec.FullResponse;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * The kind of {@link Service} that serves after a full HTTP request is received
+ * and sends back a full HTTP response when it's completed asynchronously.
+ * This type of {@link Service} is recommended for services that wait on other asynchronous sources,
+ * such as non-blocking calls to backends, without holding a thread during the wait.
+ * <p>
+ * The response is sent back on the connection's event loop when the returned {@link CompletionStage} completes,
+ * and no more requests are read from the connection until then.
+ * If the connection is closed before that, the {@link CompletionStage} is cancelled.
+ * Note that since no more data is read in the meantime, a close by the client is only noticed immediately
+ * on {@link shreckye.asynchttpserver.Transport#EPOLL}.
+ * Since this type of {@link Service} shouldn't block, it always runs on the event loop
+ * even if a {@link shreckye.asynchttpserver.ServiceExecutor} is registered with it.
+ *
+ * @author Yongshun Ye
+ */
+public abstract class AsyncLightweightService implements Service {
+    /**
+     * Serves a full HTTP request and returns a stage that completes with the full HTTP response to send back to the client.
+     * The content of the request stays valid until the returned stage completes.
+     *
+     * @param fullRequest the full HTTP request received
+     * @return the stage that completes with the full HTTP response to send back the the client
+     * @throws Exception when an exception occurs
+     */
+    public abstract CompletionStage<FullResponse> onServeFullRequest(FullRequest fullRequest) throws Exception;
+}
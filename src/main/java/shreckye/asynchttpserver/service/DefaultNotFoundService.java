@@ -17,13 +17,15 @@
 package shreckye.asynchttpserver.service;
 
 import io.netty.handler.codec.http.HttpResponseStatus;
-import shreckye.asynchttpserver.codec.DefaultOutboundFullResponse;
 import shreckye.asynchttpserver.codec.FullRequest;
 import shreckye.asynchttpserver.codec.FullResponse;
+import shreckye.asynchttpserver.codec.StaticFullResponse;
 
 public class DefaultNotFoundService extends LightweightService implements NoResourcesService, SingletonService {
+    static final StaticFullResponse NOT_FOUND_RESPONSE = new StaticFullResponse(HttpResponseStatus.NOT_FOUND);
+
     @Override
     public FullResponse onServeFullRequest(FullRequest fullRequest) throws Exception {
-        return new DefaultOutboundFullResponse(HttpResponseStatus.NOT_FOUND);
+        return NOT_FOUND_RESPONSE;
     }
 }
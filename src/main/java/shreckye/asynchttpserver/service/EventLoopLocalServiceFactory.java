@@ -0,0 +1,76 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver.service;
+
+import io.netty.util.concurrent.FastThreadLocal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * A {@link ServiceFactory} that creates exactly one {@link Service} for each event loop
+ * and always returns the one of the current event loop.
+ * {@link Service#init()} is called when it's created, and {@link Service#release()} is called when the event loop terminates.
+ * <p>
+ * A {@link Service} created by this factory is only used by one thread,
+ * so it can keep caches or counters in its member variables without synchronization,
+ * just like a {@link SingletonService} that doesn't share its state across the event loops.
+ * It serves the requests of all the connections on its event loop, so the serving state of a request
+ * shouldn't be kept in member variables across calls,
+ * and it shouldn't be registered with a {@link shreckye.asynchttpserver.ServiceExecutor}, which runs it on other threads.
+ *
+ * @author Yongshun Ye
+ */
+public class EventLoopLocalServiceFactory implements ServiceFactory {
+    final FastThreadLocal<Service> services;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param serviceFactory the {@link ServiceFactory} that creates the {@link Service} for each event loop
+     */
+    public EventLoopLocalServiceFactory(ServiceFactory serviceFactory) {
+        services = new FastThreadLocal<Service>() {
+            @Override
+            protected Service initialValue() throws UncheckedIOException {
+                Service service = serviceFactory.createService();
+                try {
+                    service.init();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return service;
+            }
+
+            @Override
+            protected void onRemoval(Service service) throws IOException {
+                service.release();
+            }
+        };
+    }
+
+    /**
+     * Returns the {@link Service} of the current event loop, or creates and initializes it on the first call.
+     *
+     * @return the {@link Service}
+     * @throws UncheckedIOException if {@link Service#init()} fails
+     */
+    @Override
+    public Service createService() throws UncheckedIOException {
+        return services.get();
+    }
+}
@@ -44,6 +44,8 @@ public abstract class GeneralService implements Service {
      * Serves a block of content data when it's received.
      * This method can be called from 0 to multiple times during serving a request.
      * When called, it is called after {@link #onServeRequestWithoutBody(RequestWithoutBody, ConnectionContext)} and before {@link #onServeLastContentBlock(LastContentBlock, ConnectionContext)} by the server.
+     * The block instance is reused for the following blocks, so it's only valid during this call.
+     * Retain its content instead of keeping the block to use the data afterwards.
      *
      * @param contentBlock      the block of content data received
      * @param connectionContext the context to send back HTTP objects
@@ -23,6 +23,7 @@ import shreckye.asynchttpserver.codec.FullResponse;
 
 /**
  * A {@link Service} that serves an HTTP request with method "GET" and sends back a JSON content HTTP response.
+ * To send back an object encoded as JSON without creating a {@link String}, use {@link TypedJsonGetService}.
  *
  * @author Yongshun Ye
  */
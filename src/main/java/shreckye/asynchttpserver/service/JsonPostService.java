@@ -17,12 +17,15 @@
 package shreckye.asynchttpserver.service;
 
 import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.util.CharsetUtil;
 import shreckye.asynchttpserver.codec.DefaultOutboundFullResponse;
 import shreckye.asynchttpserver.codec.FullRequest;
 import shreckye.asynchttpserver.codec.FullResponse;
 
 /**
  * A {@link Service} that serves a JSON content HTTP request with method "POST" and sends back a JSON content HTTP response.
+ * The request body is decoded as UTF-8 into a {@link String}.
+ * To decode it straight into an object instead, use {@link TypedJsonPostService}.
  *
  * @author Yongshun Ye
  */
@@ -30,7 +33,7 @@ public abstract class JsonPostService extends PostLightweightService {
     @Override
     public FullResponse onServePost(FullRequest fullRequest) throws Exception {
         return DefaultOutboundFullResponse.newJsonInstance(HttpResponseStatus.OK,
-                onServeJson(fullRequest, new String(fullRequest.bodyContent().array())));
+                onServeJson(fullRequest, fullRequest.bodyContent().toString(CharsetUtil.UTF_8)));
     }
 
     /**
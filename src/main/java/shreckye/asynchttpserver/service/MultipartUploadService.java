@@ -0,0 +1,282 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver.service;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.util.CharsetUtil;
+import shreckye.asynchttpserver.ConnectionContext;
+import shreckye.asynchttpserver.codec.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The kind of {@link GeneralService} that serves a request with method "POST" and the "content-type" "multipart/form-data"
+ * by decoding its parts incrementally with a {@link MultipartDecoder} from the content blocks as they are received,
+ * so an upload of any size is served in constant memory.
+ * <p>
+ * A field part is kept in memory and passed to {@link #onServeField(MultipartPart, String)}.
+ * A file part, which is a part with a "filename", is written to a temporary file
+ * straight from the NIO buffers of the content blocks with {@link FileChannel} writes,
+ * and the file is passed to {@link #onServeFile(MultipartPart, Path, long)}.
+ * The temporary files are deleted after the request is served or the connection is closed,
+ * so move the ones to keep in {@link #onServeFile(MultipartPart, Path, long)}.
+ * The response returned by {@link #onServeUploadEnd(RequestWithoutBody)} is sent back after the last part.
+ * Note that the files are written on the event loop, so a slow disk slows down the other connections on it.
+ * <p>
+ * If the request method isn't "POST", a response with status "405 Method Not Allowed" is sent back,
+ * if the "content-type" isn't "multipart/form-data" with a boundary or the body is malformed,
+ * a response with status "400 Bad Request" is sent back, and if a part is larger than its maximum size,
+ * a response with status "413 Request Entity Too Large" is sent back. The rest of the request is then ignored.
+ *
+ * @author Yongshun Ye
+ */
+public abstract class MultipartUploadService extends GeneralService {
+    public static final int DEFAULT_MAX_FIELD_SIZE = 64 * 1024;
+
+    final Path tempDirectory;
+    final int maxFieldSize;
+    final long maxFileSize;
+    final PartHandler partHandler = new PartHandler();
+    final ChannelFutureListener cleanUpOnClose = future -> cleanUp();
+    final List<Path> files = new ArrayList<>();
+    MultipartDecoder multipartDecoder;
+    RequestWithoutBody requestWithoutBody;
+    ConnectionContext connectionContext;
+    // Whether a response has been sent back before the whole request is received
+    boolean rejected;
+
+    /**
+     * Creates a new instance that writes files to the default temporary-file directory
+     * with {@link #DEFAULT_MAX_FIELD_SIZE}.
+     *
+     * @param maxFileSize the maximum size in bytes of a file part
+     */
+    public MultipartUploadService(long maxFileSize) {
+        this(null, DEFAULT_MAX_FIELD_SIZE, maxFileSize);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param tempDirectory the directory to write the temporary files to, or {@code null} for the default temporary-file directory
+     * @param maxFieldSize  the maximum size in bytes of a field part, which is kept in memory
+     * @param maxFileSize   the maximum size in bytes of a file part
+     */
+    public MultipartUploadService(Path tempDirectory, int maxFieldSize, long maxFileSize) {
+        this.tempDirectory = tempDirectory;
+        this.maxFieldSize = maxFieldSize;
+        this.maxFileSize = maxFileSize;
+    }
+
+    @Override
+    public void onServeRequestWithoutBody(RequestWithoutBody requestWithoutBody, ConnectionContext connectionContext) throws Exception {
+        rejected = false;
+        this.connectionContext = connectionContext;
+        String boundary = MultipartDecoder.boundary(requestWithoutBody.contentType());
+        if (!requestWithoutBody.method().equals(Method.POST))
+            reject(HttpResponseStatus.METHOD_NOT_ALLOWED);
+        else if (boundary == null)
+            reject(HttpResponseStatus.BAD_REQUEST);
+        else {
+            this.requestWithoutBody = requestWithoutBody;
+            multipartDecoder = new MultipartDecoder(boundary, partHandler);
+            connectionContext.getNettyChannelHandlerContext().channel().closeFuture().addListener(cleanUpOnClose);
+        }
+    }
+
+    @Override
+    public void onServeContentBlock(ContentBlock contentBlock, ConnectionContext connectionContext) throws Exception {
+        if (!rejected)
+            decode(contentBlock.content(), false);
+    }
+
+    @Override
+    public void onServeLastContentBlock(LastContentBlock lastContentBlock, ConnectionContext connectionContext) throws Exception {
+        if (!rejected && decode(lastContentBlock.content(), true)) {
+            try {
+                connectionContext.sendFullResponse(onServeUploadEnd(requestWithoutBody));
+            } finally {
+                cleanUp();
+            }
+        }
+    }
+
+    /**
+     * Decodes a content block and returns whether it's decoded without the request being rejected.
+     */
+    boolean decode(ByteBuf content, boolean last) throws Exception {
+        try {
+            multipartDecoder.offer(content);
+            if (last)
+                multipartDecoder.finish();
+            return true;
+        } catch (TooLongFrameException e) {
+            reject(HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE);
+        } catch (CorruptedFrameException e) {
+            // Thrown by the decoder, while the exceptions of onServeField and onServeFile fail the service
+            reject(HttpResponseStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            // The rest of the request is ignored after the service fails
+            rejected = true;
+            cleanUp();
+            throw e;
+        }
+        return false;
+    }
+
+    void reject(HttpResponseStatus status) {
+        rejected = true;
+        connectionContext.sendFullResponse(new DefaultOutboundFullResponse(status));
+        cleanUp();
+    }
+
+    /**
+     * Releases the decoder and deletes the temporary files of the request being served.
+     */
+    void cleanUp() {
+        if (multipartDecoder != null) {
+            multipartDecoder.reset();
+            multipartDecoder = null;
+            connectionContext.getNettyChannelHandlerContext().channel().closeFuture().removeListener(cleanUpOnClose);
+        }
+        partHandler.reset();
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // The file is left in the temporary-file directory
+            }
+        }
+        files.clear();
+        requestWithoutBody = null;
+    }
+
+    /**
+     * Serves a field part after it's received.
+     *
+     * @param part  the part
+     * @param value the content of the part decoded in UTF-8
+     * @throws Exception when an exception occurs
+     */
+    public abstract void onServeField(MultipartPart part, String value) throws Exception;
+
+    /**
+     * Serves a file part after it's written to a temporary file.
+     * The file is deleted after the request is served unless it's moved.
+     *
+     * @param part the part
+     * @param file the temporary file
+     * @param size the size of the file in bytes
+     * @throws Exception when an exception occurs
+     */
+    public abstract void onServeFile(MultipartPart part, Path file, long size) throws Exception;
+
+    /**
+     * Serves the end of the upload after all its parts are served and returns the full response to send back.
+     *
+     * @param requestWithoutBody the request without its body
+     * @return the full response
+     * @throws Exception when an exception occurs
+     */
+    public abstract FullResponse onServeUploadEnd(RequestWithoutBody requestWithoutBody) throws Exception;
+
+    /**
+     * Writes the file parts to temporary files and collects the field parts in memory.
+     */
+    class PartHandler implements MultipartDecoder.PartHandler {
+        MultipartPart part;
+        long partSize;
+        ByteBuf fieldContent;
+        Path file;
+        FileChannel fileChannel;
+
+        @Override
+        public void onPartStart(MultipartPart part) throws Exception {
+            this.part = part;
+            partSize = 0;
+            if (part.isFile()) {
+                file = tempDirectory != null ? Files.createTempFile(tempDirectory, "upload-", ".tmp")
+                        : Files.createTempFile("upload-", ".tmp");
+                files.add(file);
+                fileChannel = FileChannel.open(file, StandardOpenOption.WRITE);
+            } else if (fieldContent == null)
+                fieldContent = Unpooled.buffer();
+        }
+
+        @Override
+        public void onPartContent(ByteBuf content) throws Exception {
+            int length = content.readableBytes();
+            partSize += length;
+            if (fileChannel != null) {
+                if (partSize > maxFileSize)
+                    throw new TooLongFrameException("file part is larger than " + maxFileSize + " bytes");
+                ByteBuffer[] nioBuffers = content.nioBuffers();
+                long written = 0;
+                while (written < length)
+                    written += fileChannel.write(nioBuffers);
+            } else {
+                if (partSize > maxFieldSize)
+                    throw new TooLongFrameException("field part is larger than " + maxFieldSize + " bytes");
+                fieldContent.writeBytes(content, content.readerIndex(), length);
+            }
+        }
+
+        @Override
+        public void onPartEnd() throws Exception {
+            MultipartPart part = this.part;
+            this.part = null;
+            if (fileChannel != null) {
+                fileChannel.close();
+                fileChannel = null;
+                Path file = this.file;
+                this.file = null;
+                onServeFile(part, file, partSize);
+            } else {
+                String value = fieldContent.toString(CharsetUtil.UTF_8);
+                fieldContent.clear();
+                onServeField(part, value);
+            }
+        }
+
+        void reset() {
+            part = null;
+            file = null;
+            if (fileChannel != null) {
+                try {
+                    fileChannel.close();
+                } catch (IOException e) {
+                    // The file is deleted anyway
+                }
+                fileChannel = null;
+            }
+            if (fieldContent != null)
+                fieldContent.clear();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver.service;
+
+import io.netty.util.concurrent.FastThreadLocal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+
+/**
+ * A {@link ServiceFactory} that reuses the {@link Service}s created by another {@link ServiceFactory}.
+ * Each event loop keeps its own free list, so no synchronization is needed.
+ * <p>
+ * {@link Service#init()} is called once when a {@link Service} is created,
+ * and {@link Service#release()} is called when it's evicted because it failed or the free list is full,
+ * or when the event loop terminates.
+ * {@link RecyclableService#reset()} is called before a {@link RecyclableService} is put back to the free list.
+ * The {@link Service}s to pool should be {@link RecyclableService}s unless they hold no serving state.
+ *
+ * @author Yongshun Ye
+ */
+public class PooledServiceFactory implements ServiceFactory {
+    final ServiceFactory serviceFactory;
+    final int maxPoolSize;
+    final FastThreadLocal<ArrayDeque<Service>> pools = new FastThreadLocal<ArrayDeque<Service>>() {
+        @Override
+        protected ArrayDeque<Service> initialValue() {
+            return new ArrayDeque<>();
+        }
+
+        @Override
+        protected void onRemoval(ArrayDeque<Service> pool) {
+            Service service;
+            while ((service = pool.pollLast()) != null)
+                release(service);
+        }
+    };
+
+    /**
+     * Creates a new instance.
+     *
+     * @param serviceFactory the {@link ServiceFactory} that creates the {@link Service}s
+     * @param maxPoolSize    the maximum number of free {@link Service}s kept on each event loop
+     */
+    public PooledServiceFactory(ServiceFactory serviceFactory, int maxPoolSize) {
+        this.serviceFactory = serviceFactory;
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    /**
+     * Takes a free {@link Service}, or creates and initializes one if there is none.
+     *
+     * @return the {@link Service}
+     * @throws UncheckedIOException if {@link Service#init()} fails
+     */
+    @Override
+    public Service createService() throws UncheckedIOException {
+        Service service = pools.get().pollLast();
+        if (service == null) {
+            service = serviceFactory.createService();
+            try {
+                service.init();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return service;
+    }
+
+    @Override
+    public void recycleService(Service service, boolean failed) {
+        ArrayDeque<Service> pool = pools.get();
+        if (failed || pool.size() >= maxPoolSize) {
+            release(service);
+            return;
+        }
+
+        if (service instanceof RecyclableService)
+            try {
+                ((RecyclableService) service).reset();
+            } catch (RuntimeException e) {
+                release(service);
+                return;
+            }
+        pool.addLast(service);
+    }
+
+    private static void release(Service service) {
+        try {
+            service.release();
+        } catch (IOException e) {
+            // The service is dropped anyway
+        }
+    }
+}
@@ -25,6 +25,8 @@ import shreckye.asynchttpserver.codec.Method;
 /**
  * The kind of {@link LightweightService} that only serves a full request with a "GET" request method.
  * If the request method isn't "GET", a response with status "405 Method Not Allowed" will be sent back.
+ * Registering a service for the request method with {@link shreckye.asynchttpserver.Router.Builder} is cheaper,
+ * since the requests with other methods are then rejected before they are aggregated.
  *
  * @author Yongshun Ye
  */
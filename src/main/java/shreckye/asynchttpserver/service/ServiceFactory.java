@@ -17,9 +17,27 @@
 package shreckye.asynchttpserver.service;
 
 /**
+ * A factory that creates a {@link Service} for each request.
  *
  * @author Yongshun Ye
  */
 public interface ServiceFactory {
+    /**
+     * Creates a {@link Service} to serve a request.
+     *
+     * @return the created {@link Service}
+     */
     Service createService();
+
+    /**
+     * Takes back a {@link Service} created by this factory after it has served its request,
+     * on the same event loop thread that created it.
+     * It does nothing by default, which leaves the {@link Service} to be garbage collected.
+     *
+     * @param service the {@link Service}
+     * @param failed  whether the {@link Service} failed to serve the request, in which case it shouldn't be reused
+     * @see PooledServiceFactory
+     */
+    default void recycleService(Service service, boolean failed) {
+    }
 }
@@ -0,0 +1,146 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver.service;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import shreckye.asynchttpserver.ConnectionContext;
+import shreckye.asynchttpserver.codec.*;
+
+/**
+ * The kind of {@link GeneralService} that serves a request with method "POST" and the "content-type" "x-www-form-urlencoded"
+ * by decoding its fields incrementally from the content blocks as they are received, so a large form is never aggregated.
+ * Each field is passed to {@link #onServeFormField(FormField)} as a {@link FormField} view,
+ * and the response returned by {@link #onServeFormEnd(RequestWithoutBody)} is sent back after the last field.
+ * <p>
+ * If the request method isn't "POST", a response with status "405 Method Not Allowed" is sent back,
+ * if the "content-type" isn't "x-www-form-urlencoded" or a field contains an invalid escape sequence,
+ * a response with status "400 Bad Request" is sent back, and if a field is longer than the maximum field length
+ * or there are more fields than the maximum number of fields,
+ * a response with status "413 Request Entity Too Large" is sent back. The rest of the request is then ignored.
+ *
+ * @author Yongshun Ye
+ */
+public abstract class StreamingFormUrlencodedService extends GeneralService {
+    final FormUrlencodedDecoder formUrlencodedDecoder;
+    RequestWithoutBody requestWithoutBody;
+    // Whether a response has been sent back before the whole request is received
+    boolean rejected;
+
+    /**
+     * Creates a new instance with {@link FormUrlencodedDecoder#DEFAULT_MAX_FIELD_LENGTH} and {@link FormUrlencodedDecoder#DEFAULT_MAX_FIELDS}.
+     */
+    public StreamingFormUrlencodedService() {
+        this(FormUrlencodedDecoder.DEFAULT_MAX_FIELD_LENGTH);
+    }
+
+    /**
+     * Creates a new instance with {@link FormUrlencodedDecoder#DEFAULT_MAX_FIELDS}.
+     *
+     * @param maxFieldLength the maximum length in bytes of an encoded field
+     */
+    public StreamingFormUrlencodedService(int maxFieldLength) {
+        this(maxFieldLength, FormUrlencodedDecoder.DEFAULT_MAX_FIELDS);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxFieldLength the maximum length in bytes of an encoded field
+     * @param maxFields      the maximum number of non-empty fields in a form
+     */
+    public StreamingFormUrlencodedService(int maxFieldLength, int maxFields) {
+        formUrlencodedDecoder = new FormUrlencodedDecoder(this::onServeFormField, maxFieldLength, maxFields);
+    }
+
+    @Override
+    public void onServeRequestWithoutBody(RequestWithoutBody requestWithoutBody, ConnectionContext connectionContext) throws Exception {
+        formUrlencodedDecoder.reset();
+        rejected = false;
+        if (!requestWithoutBody.method().equals(Method.POST))
+            reject(HttpResponseStatus.METHOD_NOT_ALLOWED, connectionContext);
+        else if (!MediaType.matches(requestWithoutBody.contentType(), MediaType.APPLICATION_X_WWW_FORM_URLENCODED))
+            reject(HttpResponseStatus.BAD_REQUEST, connectionContext);
+        else
+            this.requestWithoutBody = requestWithoutBody;
+    }
+
+    @Override
+    public void onServeContentBlock(ContentBlock contentBlock, ConnectionContext connectionContext) throws Exception {
+        if (!rejected)
+            decode(contentBlock.content(), false, connectionContext);
+    }
+
+    @Override
+    public void onServeLastContentBlock(LastContentBlock lastContentBlock, ConnectionContext connectionContext) throws Exception {
+        if (!rejected && decode(lastContentBlock.content(), true, connectionContext)) {
+            RequestWithoutBody requestWithoutBody = this.requestWithoutBody;
+            this.requestWithoutBody = null;
+            connectionContext.sendFullResponse(onServeFormEnd(requestWithoutBody));
+        }
+    }
+
+    /**
+     * Decodes a content block and returns whether it's decoded without the request being rejected.
+     */
+    boolean decode(ByteBuf content, boolean last, ConnectionContext connectionContext) throws Exception {
+        try {
+            formUrlencodedDecoder.offer(content);
+            if (last)
+                formUrlencodedDecoder.finish();
+            return true;
+        } catch (TooLongFrameException e) {
+            reject(HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE, connectionContext);
+        } catch (CorruptedFrameException e) {
+            // Thrown by the decoder or a field decoded in the handler, while the other exceptions of the handler fail the service
+            reject(HttpResponseStatus.BAD_REQUEST, connectionContext);
+        } catch (Exception e) {
+            // The rest of the request is ignored after the service fails
+            rejected = true;
+            requestWithoutBody = null;
+            formUrlencodedDecoder.reset();
+            throw e;
+        }
+        return false;
+    }
+
+    void reject(HttpResponseStatus status, ConnectionContext connectionContext) {
+        rejected = true;
+        requestWithoutBody = null;
+        formUrlencodedDecoder.reset();
+        connectionContext.sendFullResponse(new DefaultOutboundFullResponse(status));
+    }
+
+    /**
+     * Serves a field of the form when it's decoded.
+     *
+     * @param field the field, which is only valid during this call
+     * @throws Exception when an exception occurs
+     */
+    public abstract void onServeFormField(FormField field) throws Exception;
+
+    /**
+     * Serves the end of the form after all its fields are served and returns the full response to send back.
+     *
+     * @param requestWithoutBody the request without its body
+     * @return the full response
+     * @throws Exception when an exception occurs
+     */
+    public abstract FullResponse onServeFormEnd(RequestWithoutBody requestWithoutBody) throws Exception;
+}
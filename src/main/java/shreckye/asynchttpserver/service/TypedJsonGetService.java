@@ -0,0 +1,74 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver.service;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import shreckye.asynchttpserver.codec.DefaultOutboundFullResponse;
+import shreckye.asynchttpserver.codec.FullRequest;
+import shreckye.asynchttpserver.codec.FullResponse;
+import shreckye.asynchttpserver.codec.JsonCodec;
+
+/**
+ * A {@link Service} that serves an HTTP request with method "GET" and sends back an object encoded as a JSON content HTTP response.
+ * The object is encoded by a {@link JsonCodec} straight into a buffer from the allocator passed in,
+ * without being copied through a {@link String} or a byte array.
+ * A {@link LightweightService} has no access to the connection, so pass the allocator the server is built with,
+ * which is {@link ByteBufAllocator#DEFAULT} by default.
+ *
+ * @param <Resp> the type of the result object
+ * @author Yongshun Ye
+ */
+public abstract class TypedJsonGetService<Resp> extends GetLightweightService {
+    final JsonCodec jsonCodec;
+    final ByteBufAllocator alloc;
+
+    /**
+     * Creates a new instance that encodes the result objects into buffers from {@link ByteBufAllocator#DEFAULT}.
+     *
+     * @param jsonCodec the {@link JsonCodec} to encode the result object with
+     */
+    public TypedJsonGetService(JsonCodec jsonCodec) {
+        this(jsonCodec, ByteBufAllocator.DEFAULT);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param jsonCodec the {@link JsonCodec} to encode the result object with
+     * @param alloc     the allocator to encode the result objects into
+     */
+    public TypedJsonGetService(JsonCodec jsonCodec, ByteBufAllocator alloc) {
+        this.jsonCodec = jsonCodec;
+        this.alloc = alloc;
+    }
+
+    @Override
+    public FullResponse onServeGet(FullRequest fullRequest) throws Exception {
+        return DefaultOutboundFullResponse.newJsonInstance(HttpResponseStatus.OK, onServeJson(fullRequest),
+                jsonCodec, alloc);
+    }
+
+    /**
+     * Serves and returns an object to be encoded as JSON.
+     *
+     * @param fullRequest the original full request
+     * @return the result object
+     * @throws Exception when an exception occurs
+     */
+    public abstract Resp onServeJson(FullRequest fullRequest) throws Exception;
+}
@@ -0,0 +1,112 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver.service;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import shreckye.asynchttpserver.codec.DefaultOutboundFullResponse;
+import shreckye.asynchttpserver.codec.FullRequest;
+import shreckye.asynchttpserver.codec.FullResponse;
+import shreckye.asynchttpserver.codec.JsonCodec;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * A {@link Service} that serves a JSON content HTTP request with method "POST" decoded into an object
+ * and sends back an object encoded as a JSON content HTTP response.
+ * The request body is decoded by a {@link JsonCodec} straight from its content without being copied into a {@link String},
+ * and the result object is encoded by it straight into a buffer from the allocator passed in.
+ * A {@link LightweightService} has no access to the connection, so pass the allocator the server is built with,
+ * which is {@link ByteBufAllocator#DEFAULT} by default.
+ * If the request body can't be decoded, a response with status "400 Bad Request" is sent back.
+ *
+ * @param <Req>  the type of the decoded request body
+ * @param <Resp> the type of the result object
+ * @author Yongshun Ye
+ */
+public abstract class TypedJsonPostService<Req, Resp> extends PostLightweightService {
+    final JsonCodec jsonCodec;
+    final Type requestType;
+    final ByteBufAllocator alloc;
+
+    /**
+     * Creates a new instance that encodes the result objects into buffers from {@link ByteBufAllocator#DEFAULT}.
+     *
+     * @param jsonCodec   the {@link JsonCodec} to decode the request body and encode the result object with
+     * @param requestType the type of the request body, which may be a generic type
+     */
+    public TypedJsonPostService(JsonCodec jsonCodec, Type requestType) {
+        this(jsonCodec, requestType, ByteBufAllocator.DEFAULT);
+    }
+
+    /**
+     * Creates a new instance that encodes the result objects into buffers from {@link ByteBufAllocator#DEFAULT}.
+     *
+     * @param jsonCodec    the {@link JsonCodec} to decode the request body and encode the result object with
+     * @param requestClass the class of the request body
+     */
+    public TypedJsonPostService(JsonCodec jsonCodec, Class<Req> requestClass) {
+        this(jsonCodec, requestClass, ByteBufAllocator.DEFAULT);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param jsonCodec   the {@link JsonCodec} to decode the request body and encode the result object with
+     * @param requestType the type of the request body, which may be a generic type
+     * @param alloc       the allocator to encode the result objects into
+     */
+    public TypedJsonPostService(JsonCodec jsonCodec, Type requestType, ByteBufAllocator alloc) {
+        this.jsonCodec = jsonCodec;
+        this.requestType = requestType;
+        this.alloc = alloc;
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param jsonCodec    the {@link JsonCodec} to decode the request body and encode the result object with
+     * @param requestClass the class of the request body
+     * @param alloc        the allocator to encode the result objects into
+     */
+    public TypedJsonPostService(JsonCodec jsonCodec, Class<Req> requestClass, ByteBufAllocator alloc) {
+        this(jsonCodec, (Type) requestClass, alloc);
+    }
+
+    @Override
+    public FullResponse onServePost(FullRequest fullRequest) throws Exception {
+        Req request;
+        try {
+            request = jsonCodec.decode(fullRequest.bodyContent(), requestType);
+        } catch (IOException e) {
+            return new DefaultOutboundFullResponse(HttpResponseStatus.BAD_REQUEST);
+        }
+        return DefaultOutboundFullResponse.newJsonInstance(HttpResponseStatus.OK, onServeJson(fullRequest, request),
+                jsonCodec, alloc);
+    }
+
+    /**
+     * Serves a decoded request body and returns an object to be encoded as JSON.
+     *
+     * @param fullRequest the original full request
+     * @param request     the decoded request body
+     * @return the result object
+     * @throws Exception when an exception occurs
+     */
+    public abstract Resp onServeJson(FullRequest fullRequest, Req request) throws Exception;
+}
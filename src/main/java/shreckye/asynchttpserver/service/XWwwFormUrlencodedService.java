@@ -16,29 +16,60 @@
 
 package shreckye.asynchttpserver.service;
 
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
 import io.netty.handler.codec.http.HttpResponseStatus;
-import io.netty.handler.codec.http.QueryStringDecoder;
-import shreckye.asynchttpserver.codec.DefaultOutboundFullResponse;
-import shreckye.asynchttpserver.codec.FullRequest;
-import shreckye.asynchttpserver.codec.FullResponse;
-import shreckye.asynchttpserver.codec.MediaType;
+import shreckye.asynchttpserver.codec.*;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * Serves a request with the "content-type" "x-www-form-urlencoded" and decodes the params.
+ * The params are decoded in place from the request content by a {@link FormUrlencodedDecoder}.
+ * To look up a few fields without building the map, use {@link FormUrlencodedDecoder#findValue} on the request content instead,
+ * and to decode a large form without aggregating it, use {@link StreamingFormUrlencodedService}.
+ * A form with more fields than the maximum number of fields is answered with status "413 Request Entity Too Large",
+ * and one with an invalid escape sequence with status "400 Bad Request".
  *
  * @author Yongshun Ye
  */
 public abstract class XWwwFormUrlencodedService extends PostLightweightService {
+    final int maxFields;
+
+    /**
+     * Creates a new instance with {@link FormUrlencodedDecoder#DEFAULT_MAX_FIELDS}.
+     */
+    public XWwwFormUrlencodedService() {
+        this(FormUrlencodedDecoder.DEFAULT_MAX_FIELDS);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxFields the maximum number of non-empty fields in a form
+     */
+    public XWwwFormUrlencodedService(int maxFields) {
+        this.maxFields = maxFields;
+    }
+
     @Override
     public FullResponse onServePost(FullRequest fullRequest) throws Exception {
-        if (!MediaType.APPLICATION_X_WWW_FORM_URLENCODED.equals(fullRequest.contentType()))
+        if (!MediaType.matches(fullRequest.contentType(), MediaType.APPLICATION_X_WWW_FORM_URLENCODED))
             return new DefaultOutboundFullResponse(HttpResponseStatus.BAD_REQUEST);
 
-        QueryStringDecoder queryStringDecoder = new QueryStringDecoder(new String(fullRequest.bodyContent().array()), false);
-        return onServeFormParams(queryStringDecoder.parameters());
+        Map<String, List<String>> formParams = new LinkedHashMap<>();
+        try {
+            FormUrlencodedDecoder.decode(fullRequest.bodyContent(), maxFields,
+                    field -> formParams.computeIfAbsent(field.name(), name -> new ArrayList<>(1)).add(field.value()));
+        } catch (TooLongFrameException e) {
+            return new DefaultOutboundFullResponse(HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE);
+        } catch (CorruptedFrameException e) {
+            return new DefaultOutboundFullResponse(HttpResponseStatus.BAD_REQUEST);
+        }
+        return onServeFormParams(formParams);
     }
 
     /**
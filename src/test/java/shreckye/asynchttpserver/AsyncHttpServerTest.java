@@ -0,0 +1,191 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver;
+
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.util.CharsetUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import shreckye.asynchttpserver.codec.*;
+import shreckye.asynchttpserver.service.GeneralService;
+import shreckye.asynchttpserver.service.NoResourcesService;
+import shreckye.asynchttpserver.service.Service;
+
+import java.io.*;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Yongshun Ye
+ */
+public class AsyncHttpServerTest {
+    static CountDownLatch requestRouted;
+
+    /**
+     * Responds with its name after the whole body is received.
+     */
+    static class NamedService extends GeneralService implements NoResourcesService {
+        final String name;
+
+        NamedService(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void onServeRequestWithoutBody(RequestWithoutBody requestWithoutBody, ConnectionContext connectionContext) {
+            requestRouted.countDown();
+        }
+
+        @Override
+        public void onServeContentBlock(ContentBlock contentBlock, ConnectionContext connectionContext) {
+        }
+
+        @Override
+        public void onServeLastContentBlock(LastContentBlock lastContentBlock, ConnectionContext connectionContext) {
+            connectionContext.sendFullResponse(new DefaultOutboundFullResponse(HttpResponseStatus.OK, "text/plain", name));
+        }
+    }
+
+    static class QuietConnectionHandler extends ServiceConnectionHandler {
+        @Override
+        public void onConnected(ConnectionContext connectionContext) {
+        }
+
+        @Override
+        public void onDisconnected(ConnectionContext connectionContext) {
+        }
+
+        @Override
+        public void onServiceCreated(ConnectionContext connectionContext, RequestWithoutBody requestWithoutBody, Service service) {
+        }
+
+        @Override
+        public void onConnectionThrowable(ConnectionContext connectionContext, Throwable t) {
+        }
+
+        @Override
+        public void onServiceThrowable(ConnectionContext connectionContext, Service service, Throwable t) {
+            connectionContext.forceSendFullResponse(new DefaultOutboundFullResponse(HttpResponseStatus.INTERNAL_SERVER_ERROR));
+        }
+    }
+
+    int port;
+    AsyncHttpServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        requestRouted = new CountDownLatch(1);
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            port = serverSocket.getLocalPort();
+        }
+        server = new AsyncHttpServer.Builder()
+                .port(port)
+                .hanlderFactory(QuietConnectionHandler::new)
+                .registerUriPath("/a", () -> new NamedService("old"))
+                .buildAndStart();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        server.close();
+    }
+
+    Socket connect() throws IOException, InterruptedException {
+        // The server binds asynchronously
+        for (int i = 0; ; i++)
+            try {
+                Socket socket = new Socket("127.0.0.1", port);
+                socket.setSoTimeout(10000);
+                return socket;
+            } catch (ConnectException e) {
+                if (i == 500)
+                    throw e;
+                Thread.sleep(10);
+            }
+    }
+
+    static void write(Socket socket, String text) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        out.write(text.getBytes(CharsetUtil.US_ASCII));
+        out.flush();
+    }
+
+    static String readBody(Socket socket) throws IOException {
+        InputStream in = socket.getInputStream();
+        int contentLength = -1;
+        StringBuilder line = new StringBuilder();
+        for (; ; ) {
+            int b = in.read();
+            if (b == -1)
+                throw new EOFException();
+            if (b != '\n') {
+                if (b != '\r')
+                    line.append((char) b);
+                continue;
+            }
+            if (line.length() == 0)
+                break;
+            if (line.toString().toLowerCase().startsWith("content-length:"))
+                contentLength = Integer.parseInt(line.substring(15).trim());
+            line.setLength(0);
+        }
+        byte[] body = new byte[contentLength];
+        for (int read = 0; read < contentLength; ) {
+            int n = in.read(body, read, contentLength - read);
+            if (n == -1)
+                throw new EOFException();
+            read += n;
+        }
+        return new String(body, CharsetUtil.US_ASCII);
+    }
+
+    @Test
+    public void testSwapRoutingTableWithRequestInFlight() throws Exception {
+        try (Socket socket = connect()) {
+            write(socket, "POST /a HTTP/1.1\r\nhost: localhost\r\ncontent-length: 6\r\n\r\nabc");
+            assertTrue(requestRouted.await(10, TimeUnit.SECONDS));
+
+            RoutingTable oldTable = server.routingTable();
+            server.updateRoutingTable(routingTable -> new RoutingTable.Builder(routingTable)
+                    .defaultRouter(new Router.Builder(routingTable.defaultRouter())
+                            .unregisterUriPath("/a")
+                            .registerUriPath("/a", () -> new NamedService("new"))
+                            .build())
+                    .build());
+            assertNotSame(oldTable, server.routingTable());
+
+            // The request routed before the swap finishes with its old route
+            write(socket, "def");
+            assertEquals("old", readBody(socket));
+
+            // The next request on the same connection is routed by the new table
+            write(socket, "POST /a HTTP/1.1\r\nhost: localhost\r\ncontent-length: 0\r\n\r\n");
+            assertEquals("new", readBody(socket));
+        }
+
+        try (Socket socket = connect()) {
+            write(socket, "POST /a HTTP/1.1\r\nhost: localhost\r\ncontent-length: 0\r\n\r\n");
+            assertEquals("new", readBody(socket));
+        }
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver;
+
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.junit.Test;
+import shreckye.asynchttpserver.codec.PathParams;
+import shreckye.asynchttpserver.service.Service;
+import shreckye.asynchttpserver.service.ServiceFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Yongshun Ye
+ */
+public class RouterTest {
+    // A distinct instance each time to tell the routes apart
+    static ServiceFactory factory() {
+        return new ServiceFactory() {
+            @Override
+            public Service createService() {
+                return null;
+            }
+        };
+    }
+
+    static Route route(Router router, String uri, HttpMethod method, RouteMatch match) {
+        return router.route(uri, method, match);
+    }
+
+    static Route route(Router router, String uri) {
+        return route(router, uri, HttpMethod.GET, new RouteMatch());
+    }
+
+    @Test
+    public void testUriBeforePaths() {
+        ServiceFactory uri = factory(), path = factory();
+        Router router = new Router.Builder().registerUriPath("/a", path).registerUri("/a?x=1", uri).build();
+        assertSame(uri, route(router, "/a?x=1").serviceFactory);
+        assertSame(path, route(router, "/a?x=2").serviceFactory);
+    }
+
+    @Test
+    public void testStaticSegmentsBeforeParameters() {
+        ServiceFactory staticPath = factory(), template = factory();
+        Router router = new Router.Builder()
+                .registerPathTemplate("/users/{id}", template)
+                .registerUriPath("/users/me", staticPath)
+                .build();
+        assertSame(staticPath, route(router, "/users/me").serviceFactory);
+        RouteMatch match = new RouteMatch();
+        Route route = route(router, "/users/42", HttpMethod.GET, match);
+        assertSame(template, route.serviceFactory);
+        assertEquals(42, match.pathParams("/users/42", route).getInt("id"));
+    }
+
+    @Test
+    public void testParametersBacktrack() {
+        ServiceFactory first = factory(), second = factory();
+        Router router = new Router.Builder()
+                .registerPathTemplate("/a/{x}/c", first)
+                .registerPathTemplate("/a/b/{y}/d", second)
+                .build();
+        RouteMatch match = new RouteMatch();
+        Route route = route(router, "/a/b/c", HttpMethod.GET, match);
+        assertSame(first, route.serviceFactory);
+        assertEquals("b", match.pathParams("/a/b/c", route).get("x"));
+        route = route(router, "/a/b/c/d", HttpMethod.GET, match);
+        assertSame(second, route.serviceFactory);
+        PathParams pathParams = match.pathParams("/a/b/c/d", route);
+        assertEquals(1, pathParams.size());
+        assertEquals("c", pathParams.get("y"));
+    }
+
+    @Test
+    public void testWholePathsBeforeDirectories() {
+        ServiceFactory directory = factory(), template = factory();
+        Router router = new Router.Builder()
+                .registerUriDirectoryPath("/a/b/", directory)
+                .registerPathTemplate("/a/{id}/c", template)
+                .build();
+        RouteMatch match = new RouteMatch();
+        Route route = route(router, "/a/b/c", HttpMethod.GET, match);
+        assertSame(template, route.serviceFactory);
+        assertEquals("b", match.pathParams("/a/b/c", route).get("id"));
+        assertSame(directory, route(router, "/a/b/d").serviceFactory);
+        assertSame(directory, route(router, "/a/b/c/d").serviceFactory);
+    }
+
+    @Test
+    public void testLongestPrefix() {
+        ServiceFactory root = factory(), directory = factory(), wildcard = factory();
+        Router router = new Router.Builder()
+                .registerUriDirectoryPath("/", root)
+                .registerUriDirectoryPath("/files/", directory)
+                .registerPathTemplate("/files/{user}/*", wildcard)
+                .build();
+        assertSame(root, route(router, "/index.html").serviceFactory);
+        assertSame(directory, route(router, "/files/").serviceFactory);
+        RouteMatch match = new RouteMatch();
+        Route route = route(router, "/files/alice/a/b.txt?v=1", HttpMethod.GET, match);
+        assertSame(wildcard, route.serviceFactory);
+        PathParams pathParams = match.pathParams("/files/alice/a/b.txt?v=1", route);
+        assertEquals("alice", pathParams.get("user"));
+        assertEquals("a/b.txt", pathParams.get("*"));
+    }
+
+    @Test
+    public void testRegexesInRegistrationOrder() {
+        ServiceFactory general = factory(), specific = factory(), other = factory();
+        Router router = new Router.Builder()
+                .registerPathRegex("/.*", general)
+                .registerPathRegex("/api/v1/(?<name>[a-z]+)", specific)
+                .registerPathRegex("/api/.*", other)
+                .build();
+        assertSame(general, route(router, "/api/v1/items").serviceFactory);
+
+        router = new Router.Builder()
+                .registerPathRegex("/api/v1/(?<name>[a-z]+)", specific)
+                .registerPathRegex("/api/.*", other)
+                .registerPathRegex("/.*", general)
+                .build();
+        RouteMatch match = new RouteMatch();
+        Route route = route(router, "/api/v1/items?x", HttpMethod.GET, match);
+        assertSame(specific, route.serviceFactory);
+        assertEquals("items", match.pathParams("/api/v1/items?x", route).get("name"));
+        assertSame(other, route(router, "/api/v2/items").serviceFactory);
+        assertSame(general, route(router, "/index.html").serviceFactory);
+    }
+
+    @Test
+    public void testPathsBeforeRegexes() {
+        ServiceFactory regex = factory(), directory = factory();
+        Router router = new Router.Builder()
+                .registerPathRegex("/a/.*", regex)
+                .registerUriDirectoryPath("/a/", directory)
+                .build();
+        assertSame(directory, route(router, "/a/b").serviceFactory);
+    }
+
+    @Test
+    public void testDuplicateRegexFirstWins() {
+        ServiceFactory first = factory(), second = factory(), post = factory(), secondPost = factory();
+        Router router = new Router.Builder()
+                .registerPathRegex("/a/.*", first)
+                .registerPathRegex("/a/.*", second)
+                .registerPathRegex(HttpMethod.POST, "/a/.*", post)
+                .registerPathRegex(HttpMethod.POST, "/a/.*", secondPost)
+                .build();
+        assertSame(first, route(router, "/a/b").serviceFactory);
+        assertSame(post, route(router, "/a/b", HttpMethod.POST, new RouteMatch()).serviceFactory);
+    }
+
+    @Test
+    public void testMethods() {
+        ServiceFactory get = factory(), post = factory(), any = factory();
+        Router router = new Router.Builder()
+                .registerUriPath(HttpMethod.GET, "/a", get)
+                .registerUriPath(HttpMethod.POST, "/a", post)
+                .registerUriPath("/b", any)
+                .build();
+        assertSame(get, route(router, "/a").serviceFactory);
+        assertSame(post, route(router, "/a", HttpMethod.POST, new RouteMatch()).serviceFactory);
+        Route route = route(router, "/a", HttpMethod.PUT, new RouteMatch());
+        assertEquals(HttpResponseStatus.METHOD_NOT_ALLOWED, route.rejectionStatus);
+        assertEquals("GET, POST", route.allow);
+        assertSame(any, route(router, "/b", HttpMethod.DELETE, new RouteMatch()).serviceFactory);
+    }
+
+    @Test
+    public void testConflictsByTreeNode() {
+        ServiceFactory literalWildcard = factory(), directory = factory(), literalParam = factory(), template = factory();
+        Router router = new Router.Builder()
+                .registerUriPath("/x/*", literalWildcard)
+                .registerUriDirectoryPath("/x/", directory)
+                .registerUriPath("/a/{}", literalParam)
+                .registerPathTemplate("/a/{id}", template)
+                .build();
+        assertSame(literalWildcard, route(router, "/x/*").serviceFactory);
+        assertSame(directory, route(router, "/x/y").serviceFactory);
+        assertSame(literalParam, route(router, "/a/{}").serviceFactory);
+        assertSame(template, route(router, "/a/b").serviceFactory);
+
+        Router.Builder builder = new Router.Builder(router);
+        try {
+            builder.registerPathTemplate("/x/*", factory());
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            builder.registerPathTemplate("/a/{name}", factory());
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        builder.registerUriPath("/b", factory());
+        try {
+            builder.registerPathTemplate("/b", factory());
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        builder.registerPathTemplate(HttpMethod.POST, "/b", factory());
+    }
+
+    @Test
+    public void testUnregisterAndReplace() {
+        ServiceFactory uri = factory(), path = factory(), getPath = factory(), directory = factory(), template = factory(),
+                regex = factory(), defaultFactory = factory();
+        Router router = new Router.Builder()
+                .registerUri("/u?x=1", uri)
+                .registerUriPath("/p", path)
+                .registerUriPath(HttpMethod.GET, "/p", getPath)
+                .registerUriDirectoryPath("/d/", directory)
+                .registerPathTemplate("/t/{id}", template)
+                .registerPathRegex("/r/.*", regex)
+                .registerDefault(defaultFactory)
+                .build();
+
+        // Re-registering without unregistering still conflicts
+        try {
+            new Router.Builder(router).registerUriPath("/p", factory());
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+
+        ServiceFactory newUri = factory(), newPath = factory(), newDirectory = factory(), newTemplate = factory(), newRegex = factory();
+        Router replaced = new Router.Builder(router)
+                .unregisterUri("/u?x=1").registerUri("/u?x=1", newUri)
+                .unregisterUriPath("/p").registerUriPath("/p", newPath)
+                .unregisterUriDirectoryPath("/d/").registerUriDirectoryPath("/d/", newDirectory)
+                .unregisterPathTemplate("/t/{name}").registerPathTemplate("/t/{name}", newTemplate)
+                .unregisterPathRegex("/r/.*").registerPathRegex("/r/.*", newRegex)
+                .build();
+        assertSame(newUri, route(replaced, "/u?x=1").serviceFactory);
+        // Only the registration for any request method is replaced
+        assertSame(getPath, route(replaced, "/p").serviceFactory);
+        assertSame(newPath, route(replaced, "/p", HttpMethod.POST, new RouteMatch()).serviceFactory);
+        assertSame(newDirectory, route(replaced, "/d/x").serviceFactory);
+        RouteMatch match = new RouteMatch();
+        Route route = route(replaced, "/t/42", HttpMethod.GET, match);
+        assertSame(newTemplate, route.serviceFactory);
+        assertEquals("42", match.pathParams("/t/42", route).get("name"));
+        assertSame(newRegex, route(replaced, "/r/x").serviceFactory);
+
+        // The router in use is unchanged
+        assertSame(uri, route(router, "/u?x=1").serviceFactory);
+        assertSame(path, route(router, "/p", HttpMethod.POST, new RouteMatch()).serviceFactory);
+        assertSame(directory, route(router, "/d/x").serviceFactory);
+        assertSame(template, route(router, "/t/42").serviceFactory);
+        assertSame(regex, route(router, "/r/x").serviceFactory);
+
+        Router removed = new Router.Builder(router)
+                .unregisterUri("/u?x=1")
+                .unregisterUriPath(HttpMethod.GET, "/p")
+                .unregisterUriDirectoryPath("/d/")
+                .unregisterPathTemplate("/t/{id}")
+                .unregisterPathRegex("/r/.*")
+                .unregisterDefault()
+                // Removing what isn't registered changes nothing
+                .unregisterUriPath(HttpMethod.PUT, "/p")
+                .unregisterUriPath("/none")
+                .build();
+        assertSame(path, route(removed, "/p").serviceFactory);
+        for (String unregisteredUri : new String[]{"/d/x", "/t/42", "/r/x", "/none"})
+            assertEquals(HttpResponseStatus.NOT_FOUND, route(removed, unregisteredUri).rejectionStatus);
+        assertEquals(HttpResponseStatus.NOT_FOUND, route(removed, "/u?x=1").rejectionStatus);
+    }
+
+    @Test
+    public void testNotFound() {
+        Router router = new Router.Builder().registerUriPath("/a", factory()).build();
+        assertEquals(HttpResponseStatus.NOT_FOUND, route(router, "/b").rejectionStatus);
+        ServiceFactory defaultFactory = factory();
+        router = new Router.Builder(router).registerDefault(defaultFactory).build();
+        assertSame(defaultFactory, route(router, "/b").serviceFactory);
+    }
+}
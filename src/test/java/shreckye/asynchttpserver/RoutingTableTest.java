@@ -0,0 +1,130 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Yongshun Ye
+ */
+public class RoutingTableTest {
+    static Router router() {
+        return new Router.Builder().build();
+    }
+
+    @Test
+    public void testExactBeforeWildcard() {
+        Router exact = router(), wildcard = router(), defaultRouter = router();
+        RoutingTable routingTable = new RoutingTable.Builder()
+                .registerHost("*.example.com", wildcard)
+                .registerHost("api.example.com", exact)
+                .defaultRouter(defaultRouter)
+                .build();
+        assertSame(exact, routingTable.router("api.example.com"));
+        assertSame(wildcard, routingTable.router("www.example.com"));
+        assertSame(wildcard, routingTable.router("a.api.example.com"));
+        // A wildcard host name doesn't match its own suffix
+        assertSame(defaultRouter, routingTable.router("example.com"));
+        assertSame(defaultRouter, routingTable.router("example.org"));
+        assertSame(defaultRouter, routingTable.router("badexample.com"));
+    }
+
+    @Test
+    public void testLongestWildcardSuffix() {
+        Router shorter = router(), longer = router();
+        RoutingTable routingTable = new RoutingTable.Builder()
+                .registerHost("*.example.com", shorter)
+                .registerHost("*.eu.example.com", longer)
+                .build();
+        assertSame(longer, routingTable.router("www.eu.example.com"));
+        assertSame(longer, routingTable.router("a.b.eu.example.com"));
+        assertSame(shorter, routingTable.router("eu.example.com"));
+        assertSame(shorter, routingTable.router("www.us.example.com"));
+    }
+
+    @Test
+    public void testPortAndCase() {
+        Router exact = router(), wildcard = router();
+        RoutingTable routingTable = new RoutingTable.Builder()
+                .registerHost("Example.COM", exact)
+                .registerHost("*.Example.com", wildcard)
+                .build();
+        assertSame(exact, routingTable.router("example.com"));
+        assertSame(exact, routingTable.router("EXAMPLE.com:8080"));
+        assertSame(wildcard, routingTable.router("WWW.example.Com:443"));
+        assertSame(routingTable.defaultRouter(), routingTable.router("example.com.evil:80"));
+    }
+
+    @Test
+    public void testMissingHost() {
+        Router exact = router(), defaultRouter = router();
+        RoutingTable routingTable = new RoutingTable.Builder()
+                .registerHost("example.com", exact)
+                .defaultRouter(defaultRouter)
+                .build();
+        assertSame(defaultRouter, routingTable.router(null));
+        assertSame(defaultRouter, routingTable.router(""));
+        assertSame(defaultRouter, routingTable.router(":8080"));
+        assertNotNull(new RoutingTable.Builder().build().router(null));
+    }
+
+    @Test
+    public void testIpv6Literals() {
+        Router loopback = router(), ipv4 = router();
+        RoutingTable routingTable = new RoutingTable.Builder()
+                .registerHost("[::1]", loopback)
+                .registerHost("127.0.0.1", ipv4)
+                .build();
+        assertSame(loopback, routingTable.router("[::1]"));
+        assertSame(loopback, routingTable.router("[::1]:8080"));
+        assertSame(ipv4, routingTable.router("127.0.0.1:8080"));
+        assertSame(routingTable.defaultRouter(), routingTable.router("[::2]:8080"));
+
+        routingTable = new RoutingTable.Builder().registerHost("[2001:DB8::1]", loopback).build();
+        assertSame(loopback, routingTable.router("[2001:db8::1]:443"));
+    }
+
+    @Test
+    public void testInvalidAndConflictingHosts() {
+        RoutingTable.Builder builder = new RoutingTable.Builder().registerHost("example.com", router());
+        for (String host : new String[]{"", "*.", "*", "a.*.com", "*.*.com", "EXAMPLE.com"})
+            try {
+                builder.registerHost(host, router());
+                fail(host);
+            } catch (IllegalArgumentException e) {
+            }
+    }
+
+    @Test
+    public void testUnregisterHost() {
+        Router exact = router(), wildcard = router();
+        RoutingTable routingTable = new RoutingTable.Builder()
+                .registerHost("example.com", exact)
+                .registerHost("*.example.com", wildcard)
+                .build();
+        RoutingTable modified = new RoutingTable.Builder(routingTable).unregisterHost("EXAMPLE.com").build();
+        assertSame(modified.defaultRouter(), modified.router("example.com"));
+        assertSame(wildcard, modified.router("www.example.com"));
+        // The existing table is unchanged
+        assertSame(exact, routingTable.router("example.com"));
+
+        modified = new RoutingTable.Builder(modified).unregisterHost("*.example.com").build();
+        assertSame(modified.defaultRouter(), modified.router("www.example.com"));
+    }
+}
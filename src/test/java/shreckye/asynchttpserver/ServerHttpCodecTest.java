@@ -0,0 +1,288 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package shreckye.asynchttpserver;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DateFormatter;
+import io.netty.handler.codec.http.*;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.Test;
+import shreckye.asynchttpserver.codec.DefaultOutboundFullResponse;
+import shreckye.asynchttpserver.codec.StaticFullResponse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Yongshun Ye
+ */
+public class ServerHttpCodecTest {
+    static final Pattern DATE_LINE = Pattern.compile("date: ([^\r]*)\r\n");
+
+    static EmbeddedChannel channel(String server) {
+        return new EmbeddedChannel(new ServerHttpCodec(4096, 8192, 8192, true, 128, server));
+    }
+
+    static void request(EmbeddedChannel channel, String requests) {
+        channel.writeInbound(Unpooled.copiedBuffer(requests, CharsetUtil.US_ASCII));
+        Object msg;
+        while ((msg = channel.readInbound()) != null)
+            ReferenceCountUtil.release(msg);
+    }
+
+    static List<ByteBuf> respond(EmbeddedChannel channel, Object response) {
+        channel.writeOutbound(response);
+        List<ByteBuf> bufs = new ArrayList<>();
+        ByteBuf buf;
+        while ((buf = channel.readOutbound()) != null)
+            bufs.add(buf);
+        return bufs;
+    }
+
+    /**
+     * Decodes and releases the buffers, and replaces the value of each "date" header with "D" after checking it's the current time.
+     */
+    static String string(List<ByteBuf> bufs) {
+        StringBuilder string = new StringBuilder();
+        for (ByteBuf buf : bufs) {
+            string.append(buf.toString(CharsetUtil.ISO_8859_1));
+            buf.release();
+        }
+
+        Matcher matcher = DATE_LINE.matcher(string);
+        StringBuffer withoutDates = new StringBuffer();
+        while (matcher.find()) {
+            Date date = DateFormatter.parseHttpDate(matcher.group(1));
+            assertNotNull(matcher.group(1), date);
+            assertTrue(matcher.group(1), Math.abs(date.getTime() - System.currentTimeMillis()) < 5000);
+            matcher.appendReplacement(withoutDates, "date: D\r\n");
+        }
+        matcher.appendTail(withoutDates);
+        return withoutDates.toString();
+    }
+
+    static String respondString(EmbeddedChannel channel, Object response) {
+        return string(respond(channel, response));
+    }
+
+    @Test
+    public void testStatusLines() {
+        EmbeddedChannel channel = channel(null);
+        HttpResponseStatus[] statuses = {HttpResponseStatus.OK, HttpResponseStatus.NOT_FOUND, HttpResponseStatus.valueOf(599),
+                new HttpResponseStatus(200, "Fine"), new HttpResponseStatus(299, "Custom")};
+        for (HttpResponseStatus status : statuses) {
+            request(channel, "GET / HTTP/1.1\r\n\r\n");
+            assertEquals("HTTP/1.1 " + status.code() + ' ' + status.reasonPhrase() + "\r\ndate: D\r\ncontent-length: 0\r\n\r\n",
+                    respondString(channel, new DefaultOutboundFullResponse(status)));
+        }
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testInformationalWithoutSharedHeaders() {
+        EmbeddedChannel channel = channel("test");
+        request(channel, "POST / HTTP/1.1\r\ncontent-length: 1\r\nexpect: 100-continue\r\n\r\n");
+        // An interim response has neither "date" nor "server" and doesn't take the method of the request
+        assertEquals("HTTP/1.1 100 Continue\r\n\r\n",
+                respondString(channel, new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.CONTINUE)));
+        request(channel, "x");
+        assertEquals("HTTP/1.1 200 OK\r\ndate: D\r\nserver: test\r\ncontent-length: 2\r\ncontent-type: text/plain\r\n\r\nok",
+                respondString(channel, new DefaultOutboundFullResponse(HttpResponseStatus.OK, "text/plain", "ok")));
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testDateShared() {
+        EmbeddedChannel channel1 = channel(null), channel2 = channel(null);
+        request(channel1, "GET / HTTP/1.1\r\n\r\n");
+        request(channel2, "GET / HTTP/1.1\r\n\r\n");
+        List<ByteBuf> response1 = respond(channel1, new DefaultOutboundFullResponse(HttpResponseStatus.OK));
+        List<ByteBuf> response2 = respond(channel2, new DefaultOutboundFullResponse(HttpResponseStatus.OK));
+        String string1 = response1.get(0).toString(CharsetUtil.ISO_8859_1), string2 = response2.get(0).toString(CharsetUtil.ISO_8859_1);
+        Matcher matcher1 = DATE_LINE.matcher(string1), matcher2 = DATE_LINE.matcher(string2);
+        assertTrue(matcher1.find());
+        assertTrue(matcher2.find());
+        // Both are formatted in the same second unless a second boundary is crossed in between
+        Date date1 = DateFormatter.parseHttpDate(matcher1.group(1)), date2 = DateFormatter.parseHttpDate(matcher2.group(1));
+        assertTrue(date2.getTime() - date1.getTime() >= 0 && date2.getTime() - date1.getTime() <= 1000);
+        string(response1);
+        string(response2);
+    }
+
+    @Test
+    public void testServerLine() {
+        EmbeddedChannel channel = channel("asynchttpserver");
+        request(channel, "GET / HTTP/1.1\r\n\r\n");
+        assertEquals("HTTP/1.1 204 No Content\r\ndate: D\r\nserver: asynchttpserver\r\ncontent-length: 0\r\n\r\n",
+                respondString(channel, new DefaultOutboundFullResponse(HttpResponseStatus.NO_CONTENT)));
+
+        // Netty responses get the shared headers too, unless they have their own
+        request(channel, "GET / HTTP/1.1\r\n\r\n");
+        FullHttpResponse nettyResponse = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        nettyResponse.headers().set(HttpHeaderNames.CONTENT_LENGTH, 0).set(HttpHeaderNames.SERVER, "other");
+        assertEquals("HTTP/1.1 200 OK\r\ncontent-length: 0\r\nserver: other\r\ndate: D\r\n\r\n", respondString(channel, nettyResponse));
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testCustomHeaders() {
+        EmbeddedChannel channel = channel(null);
+        request(channel, "GET / HTTP/1.1\r\n\r\n");
+        DefaultOutboundFullResponse response = new DefaultOutboundFullResponse(HttpResponseStatus.OK, "text/plain", "body");
+        response.setConnection("keep-alive");
+        response.addCustomHeader("x-a", "1");
+        response.addCustomHeader("X-B", 2);
+        response.addCustomHeader("x-a", "3");
+        assertEquals("HTTP/1.1 200 OK\r\ndate: D\r\ncontent-length: 4\r\ncontent-type: text/plain\r\nconnection: keep-alive\r\n" +
+                "x-a: 1\r\nX-B: 2\r\nx-a: 3\r\n\r\nbody", respondString(channel, response));
+        assertFalse(channel.finish());
+    }
+
+    static byte[] body(int length) {
+        byte[] body = new byte[length];
+        for (int i = 0; i < length; i++)
+            body[i] = (byte) ('a' + i % 26);
+        return body;
+    }
+
+    @Test
+    public void testBodyMerged() {
+        EmbeddedChannel channel = channel(null);
+        for (int length : new int[]{0, 1, ServerHttpCodec.MAX_MERGED_CONTENT_LENGTH}) {
+            request(channel, "GET / HTTP/1.1\r\n\r\n");
+            ByteBuf content = Unpooled.directBuffer().writeBytes(body(length));
+            List<ByteBuf> bufs = respond(channel, new DefaultOutboundFullResponse(HttpResponseStatus.OK, "text/plain", content));
+            assertEquals(1, bufs.size());
+            assertEquals(0, content.refCnt());
+            assertEquals("HTTP/1.1 200 OK\r\ndate: D\r\ncontent-length: " + length + "\r\ncontent-type: text/plain\r\n\r\n" +
+                    new String(body(length), CharsetUtil.ISO_8859_1), string(bufs));
+        }
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testBodyNotMerged() {
+        EmbeddedChannel channel = channel(null);
+        int length = ServerHttpCodec.MAX_MERGED_CONTENT_LENGTH + 1;
+        request(channel, "GET / HTTP/1.1\r\n\r\n");
+        ByteBuf content = Unpooled.directBuffer().writeBytes(body(length));
+        List<ByteBuf> bufs = respond(channel, new DefaultOutboundFullResponse(HttpResponseStatus.OK, "text/plain", content));
+        assertEquals(2, bufs.size());
+        // The content itself is written after the headers
+        assertSame(content, bufs.get(1));
+        assertEquals("HTTP/1.1 200 OK\r\ndate: D\r\ncontent-length: " + length + "\r\ncontent-type: text/plain\r\n\r\n" +
+                new String(body(length), CharsetUtil.ISO_8859_1), string(bufs));
+        assertEquals(0, content.refCnt());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testHead() {
+        EmbeddedChannel channel = channel(null);
+        for (int length : new int[]{5, ServerHttpCodec.MAX_MERGED_CONTENT_LENGTH + 1}) {
+            request(channel, "HEAD / HTTP/1.1\r\n\r\n");
+            ByteBuf content = Unpooled.directBuffer().writeBytes(body(length));
+            assertEquals("HTTP/1.1 200 OK\r\ndate: D\r\ncontent-length: " + length + "\r\ncontent-type: text/plain\r\n\r\n",
+                    respondString(channel, new DefaultOutboundFullResponse(HttpResponseStatus.OK, "text/plain", content)));
+            assertEquals(0, content.refCnt());
+        }
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testPipelined() {
+        EmbeddedChannel channel = channel(null);
+        request(channel, "GET /1 HTTP/1.1\r\n\r\nHEAD /2 HTTP/1.1\r\n\r\nPOST /3 HTTP/1.1\r\ncontent-length: 2\r\n\r\nabHEAD /4 HTTP/1.1\r\n\r\n");
+        List<String> responses = new ArrayList<>();
+        for (int i = 1; i <= 3; i++)
+            responses.add(respondString(channel, new DefaultOutboundFullResponse(HttpResponseStatus.OK, "text/plain", "r" + i)));
+        FullHttpResponse nettyResponse = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                Unpooled.copiedBuffer("r4", CharsetUtil.US_ASCII));
+        nettyResponse.headers().set(HttpHeaderNames.CONTENT_LENGTH, 2);
+        responses.add(respondString(channel, nettyResponse));
+
+        String headers = "HTTP/1.1 200 OK\r\ndate: D\r\ncontent-length: 2\r\ncontent-type: text/plain\r\n\r\n";
+        assertEquals(Arrays.asList(headers + "r1", headers, headers + "r3", "HTTP/1.1 200 OK\r\ncontent-length: 2\r\ndate: D\r\n\r\n"),
+                responses);
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testStaticFullResponse() {
+        StaticFullResponse[] responses = {
+                new StaticFullResponse(HttpResponseStatus.NOT_FOUND, "text/plain", "missing".getBytes(CharsetUtil.US_ASCII)),
+                new StaticFullResponse(new DefaultOutboundFullResponse(new HttpResponseStatus(299, "Custom"), "text/plain", "custom"))};
+        EmbeddedChannel channel = channel(null);
+        for (StaticFullResponse response : responses) {
+            ByteBuf shared = response.retainedEncodedHeadersAndBody(true);
+            int refCnt = shared.refCnt();
+            String headers = "HTTP/1.1 " + response.status().code() + ' ' + response.status().reasonPhrase() + "\r\ndate: D\r\n" +
+                    "content-length: " + response.contentLength() + "\r\ncontent-type: text/plain\r\n\r\n";
+            String body = shared.toString(shared.readableBytes() - response.contentLength().intValue(), response.contentLength().intValue(),
+                    CharsetUtil.US_ASCII);
+            for (int i = 0; i < 100; i++) {
+                request(channel, "GET / HTTP/1.1\r\n\r\nHEAD / HTTP/1.1\r\n\r\n");
+                assertEquals(headers + body, respondString(channel, response));
+                assertEquals(headers, respondString(channel, response));
+                assertEquals(refCnt, shared.refCnt());
+            }
+        }
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testStaticFullResponseConcurrent() throws Exception {
+        StaticFullResponse response = new StaticFullResponse(HttpResponseStatus.OK, "text/plain", body(ServerHttpCodec.MAX_MERGED_CONTENT_LENGTH * 2));
+        ByteBuf shared = response.retainedEncodedHeadersAndBody(true);
+        int refCnt = shared.refCnt();
+        String headers = "HTTP/1.1 200 OK\r\ndate: D\r\ncontent-length: " + ServerHttpCodec.MAX_MERGED_CONTENT_LENGTH * 2 +
+                "\r\ncontent-type: text/plain\r\n\r\n";
+        String body = new String(body(ServerHttpCodec.MAX_MERGED_CONTENT_LENGTH * 2), CharsetUtil.ISO_8859_1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++)
+                futures.add(executor.submit(() -> {
+                    EmbeddedChannel channel = channel(null);
+                    for (int i = 0; i < 1000; i++) {
+                        request(channel, "GET / HTTP/1.1\r\n\r\nHEAD / HTTP/1.1\r\n\r\n");
+                        assertEquals(headers + body, respondString(channel, response));
+                        assertEquals(headers, respondString(channel, response));
+                    }
+                    assertFalse(channel.finish());
+                }));
+            for (Future<?> future : futures)
+                future.get(60, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(refCnt, shared.refCnt());
+        assertEquals(headers.substring(headers.indexOf("content-length")) + body, shared.toString(CharsetUtil.ISO_8859_1));
+    }
+}
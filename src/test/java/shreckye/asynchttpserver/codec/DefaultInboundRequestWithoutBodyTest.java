@@ -0,0 +1,145 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package shreckye.asynchttpserver.codec;
+
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.cookie.Cookie;
+import io.netty.util.AsciiString;
+import org.junit.Test;
+
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Yongshun Ye
+ */
+public class DefaultInboundRequestWithoutBodyTest {
+    static DefaultInboundRequestWithoutBody request(String... namesAndValues) {
+        HttpHeaders headers = new DefaultHttpHeaders();
+        for (int i = 0; i < namesAndValues.length; i += 2)
+            headers.add(namesAndValues[i], namesAndValues[i + 1]);
+        return new DefaultInboundRequestWithoutBody("GET", "/", headers);
+    }
+
+    static void assertContentLengthInvalid(String value) {
+        try {
+            DefaultInboundRequestWithoutBody.parseContentLength(value);
+            fail(value);
+        } catch (NumberFormatException e) {
+        }
+    }
+
+    @Test
+    public void testParseContentLength() {
+        String[] values = {"0", "1", "+1", "+0", "1024", "000123", "2147483648", "9223372036854775807", "+9223372036854775807"};
+        for (String value : values) {
+            assertEquals(value, Long.parseLong(value), DefaultInboundRequestWithoutBody.parseContentLength(value));
+            assertEquals(value, Long.parseLong(value), DefaultInboundRequestWithoutBody.parseContentLength(new AsciiString(value)));
+        }
+    }
+
+    @Test
+    public void testParseContentLengthInvalid() {
+        for (String value : new String[]{"", "+", "-", "-0", "-1", "++1", "+-1", " 1", "1 ", "1,1", "1.0", "0x10", "1e3", "a",
+                "\u0661", "9223372036854775808", "99999999999999999999", "+9223372036854775808"})
+            assertContentLengthInvalid(value);
+    }
+
+    @Test
+    public void testContentLength() {
+        assertNull(request().contentLength());
+        assertEquals(Long.valueOf(42), request("content-length", "42").contentLength());
+        assertEquals(Long.valueOf(42), request("Content-Length", "+42").contentLength());
+        assertEquals(Long.valueOf(4294967296L), request("CONTENT-LENGTH", "4294967296").contentLength());
+        try {
+            request("content-length", "-1").contentLength();
+            fail();
+        } catch (NumberFormatException e) {
+        }
+        try {
+            request("content-length", "9223372036854775808").contentLength();
+            fail();
+        } catch (NumberFormatException e) {
+        }
+    }
+
+    @Test
+    public void testMixedCaseNames() {
+        DefaultInboundRequestWithoutBody request = request(
+                "HoSt", "example.com",
+                "cOOKIE", "a=1",
+                "Connection", "close",
+                "CONTENT-type", "text/plain",
+                "content-LENGTH", "3");
+        assertEquals("example.com", request.host());
+        assertEquals("close", request.connection());
+        assertEquals("text/plain", request.contentType());
+        assertEquals(Long.valueOf(3), request.contentLength());
+        Set<Cookie> cookie = request.cookie();
+        assertEquals(1, cookie.size());
+        assertEquals("1", cookie.iterator().next().value());
+    }
+
+    @Test
+    public void testDuplicateNamesKeepFirst() {
+        DefaultInboundRequestWithoutBody request = request(
+                "host", "first.example.com",
+                "Host", "second.example.com",
+                "content-type", "text/plain",
+                "Content-Type", "application/json",
+                "content-length", "1",
+                "CONTENT-LENGTH", "2",
+                "connection", "keep-alive",
+                "connection", "close");
+        assertEquals("first.example.com", request.host());
+        assertEquals("text/plain", request.contentType());
+        assertEquals(Long.valueOf(1), request.contentLength());
+        assertEquals("keep-alive", request.connection());
+        assertEquals(request.headers().get("host"), request.host());
+        assertEquals(request.headers().get("content-type"), request.contentType());
+    }
+
+    @Test
+    public void testNamesOfTheSameLength() {
+        // Each of these has the length of one of the matched names but isn't one
+        DefaultInboundRequestWithoutBody request = request(
+                "hoss", "a",
+                "cookie2", "b",
+                "x-cookie", "c",
+                "connectiox", "d",
+                "content-typo", "e",
+                "content-lengtx", "f",
+                "x-content-length", "5");
+        assertNull(request.host());
+        assertTrue(request.cookie() == null || request.cookie().isEmpty());
+        assertNull(request.connection());
+        assertNull(request.contentType());
+        assertNull(request.contentLength());
+    }
+
+    @Test
+    public void testNoHeaders() {
+        DefaultInboundRequestWithoutBody request = request();
+        assertNull(request.host());
+        assertNull(request.connection());
+        assertNull(request.contentType());
+        assertNull(request.contentLength());
+    }
+}
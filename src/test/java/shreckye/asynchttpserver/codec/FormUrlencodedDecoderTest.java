@@ -0,0 +1,295 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Yongshun Ye
+ */
+public class FormUrlencodedDecoderTest {
+    static final String BODY = "a=1&b%20c=d%2Be+f&&=x&y&%E4%B8%AD=%E6%96%87&last=";
+    static final List<String> FIELDS = Arrays.asList(
+            "a", "1", "b c", "d+e f", "", "x", "y", "", "\u4e2d", "\u6587", "last", "");
+
+    static ByteBuf buffer(String s) {
+        return Unpooled.copiedBuffer(s, CharsetUtil.UTF_8);
+    }
+
+    // A block with some bytes before its reader index, which must be ignored
+    static ByteBuf block(String s) {
+        ByteBuf block = buffer("&&" + s);
+        block.readerIndex(2);
+        return block;
+    }
+
+    static FormUrlencodedDecoder newDecoder(List<String> fields, int maxFieldLength) {
+        return new FormUrlencodedDecoder(field -> {
+            fields.add(field.name());
+            fields.add(field.value());
+        }, maxFieldLength);
+    }
+
+    @Test
+    public void testDecode() throws Exception {
+        List<String> fields = new ArrayList<>();
+        FormUrlencodedDecoder.decode(buffer(BODY), field -> {
+            fields.add(field.name());
+            fields.add(field.value());
+        });
+        assertEquals(FIELDS, fields);
+    }
+
+    @Test
+    public void testEverySplit() throws Exception {
+        List<String> fields = new ArrayList<>();
+        FormUrlencodedDecoder decoder = newDecoder(fields, FormUrlencodedDecoder.DEFAULT_MAX_FIELD_LENGTH);
+        // Splits at every pair of offsets, including at '&', at '=' and inside "%xx"
+        for (int i = 0; i <= BODY.length(); i++)
+            for (int j = i; j <= BODY.length(); j++) {
+                fields.clear();
+                decoder.offer(block(BODY.substring(0, i)));
+                decoder.offer(block(BODY.substring(i, j)));
+                decoder.offer(block(BODY.substring(j)));
+                decoder.finish();
+                assertEquals(i + ", " + j, FIELDS, fields);
+            }
+    }
+
+    @Test
+    public void testOfferKeepsReaderIndex() throws Exception {
+        FormUrlencodedDecoder decoder = newDecoder(new ArrayList<>(), FormUrlencodedDecoder.DEFAULT_MAX_FIELD_LENGTH);
+        ByteBuf block = block("a=1&b");
+        decoder.offer(block);
+        assertEquals(2, block.readerIndex());
+    }
+
+    @Test
+    public void testEmptyFields() throws Exception {
+        List<String> fields = new ArrayList<>();
+        FormUrlencodedDecoder decoder = newDecoder(fields, FormUrlencodedDecoder.DEFAULT_MAX_FIELD_LENGTH);
+        for (String body : new String[]{"", "&", "&&", "&&&"}) {
+            decoder.offer(buffer(body));
+            decoder.finish();
+        }
+        assertEquals(0, fields.size());
+
+        decoder.offer(buffer("&&a=1&"));
+        decoder.offer(buffer("&"));
+        decoder.finish();
+        assertEquals(Arrays.asList("a", "1"), fields);
+    }
+
+    @Test
+    public void testPlus() throws Exception {
+        List<String> fields = new ArrayList<>();
+        FormUrlencodedDecoder.decode(buffer("a+b=c+d&+=+&%2B=%2b"), field -> {
+            fields.add(field.name());
+            fields.add(field.value());
+        });
+        assertEquals(Arrays.asList("a b", "c d", " ", " ", "+", "+"), fields);
+    }
+
+    @Test
+    public void testMaxFieldLengthAcrossBlocks() throws Exception {
+        List<String> fields = new ArrayList<>();
+        FormUrlencodedDecoder decoder = newDecoder(fields, 5);
+        decoder.offer(buffer("a="));
+        decoder.offer(buffer("1"));
+        decoder.offer(buffer("23&b=4"));
+        decoder.finish();
+        assertEquals(Arrays.asList("a", "123", "b", "4"), fields);
+
+        decoder.offer(buffer("a=1"));
+        decoder.offer(buffer("2"));
+        try {
+            decoder.offer(buffer("34"));
+            fail();
+        } catch (TooLongFrameException e) {
+            decoder.reset();
+        }
+
+        decoder.offer(buffer("a=1"));
+        try {
+            decoder.offer(buffer("2345&b=1"));
+            fail();
+        } catch (TooLongFrameException e) {
+            decoder.reset();
+        }
+
+        try {
+            decoder.offer(buffer("b=1&a=12345&c=1"));
+            fail();
+        } catch (TooLongFrameException e) {
+            decoder.reset();
+        }
+
+        fields.clear();
+        decoder.offer(buffer("c=1"));
+        decoder.finish();
+        assertEquals(Arrays.asList("c", "1"), fields);
+    }
+
+    @Test
+    public void testInvalidEscapes() throws Exception {
+        for (String value : new String[]{"%", "%4", "%zz", "%4g", "a%", "a%2"}) {
+            List<FormField> checked = new ArrayList<>();
+            FormUrlencodedDecoder decoder = new FormUrlencodedDecoder(field -> {
+                assertEquals("a", field.name());
+                try {
+                    field.value();
+                    fail(value);
+                } catch (CorruptedFrameException e) {
+                    checked.add(field);
+                }
+            });
+            // The escape is only decoded when asked for, and is not terminated by the next field or block
+            decoder.offer(buffer("a=" + value));
+            decoder.offer(buffer("&a=" + value.substring(0, value.length() / 2)));
+            decoder.offer(buffer(value.substring(value.length() / 2)));
+            decoder.finish();
+            assertEquals(2, checked.size());
+        }
+
+        try {
+            FormUrlencodedDecoder.findValue(buffer("%zz=1&a=2"), "a");
+            fail();
+        } catch (CorruptedFrameException e) {
+        }
+    }
+
+    @Test
+    public void testNameEquals() throws Exception {
+        List<Boolean> results = new ArrayList<>();
+        FormUrlencodedDecoder.decode(buffer("a%62c&%E4%B8%AD&a+b&ab&abc&%C3%A9t%C3%A9"), field -> {
+            results.add(field.nameEquals("abc"));
+            results.add(field.nameEquals("\u4e2d"));
+            results.add(field.nameEquals("a b"));
+            results.add(field.nameEquals("\u00e9t\u00e9"));
+        });
+        assertEquals(Arrays.asList(
+                true, false, false, false,
+                false, true, false, false,
+                false, false, true, false,
+                false, false, false, false,
+                true, false, false, false,
+                false, false, false, true), results);
+    }
+
+    @Test
+    public void testFindValue() {
+        ByteBuf content = buffer("a=1&%E4%B8%AD=%E6%96%87&a=2&b");
+        assertEquals("1", FormUrlencodedDecoder.findValue(content, "a"));
+        assertEquals("\u6587", FormUrlencodedDecoder.findValue(content, "\u4e2d"));
+        assertEquals("", FormUrlencodedDecoder.findValue(content, "b"));
+        assertNull(FormUrlencodedDecoder.findValue(content, "c"));
+    }
+
+    @Test
+    public void testRawNameAndValue() throws Exception {
+        List<String> raw = new ArrayList<>();
+        FormUrlencodedDecoder.decode(buffer("a%20b=c+d&e"), field -> {
+            raw.add(field.rawName().toString(CharsetUtil.US_ASCII));
+            raw.add(field.rawValue().toString(CharsetUtil.US_ASCII));
+        });
+        assertEquals(Arrays.asList("a%20b", "c+d", "e", ""), raw);
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        List<String> fields = new ArrayList<>();
+        FormUrlencodedDecoder decoder = newDecoder(fields, FormUrlencodedDecoder.DEFAULT_MAX_FIELD_LENGTH);
+        decoder.offer(buffer("a=1&b=partial"));
+        decoder.reset();
+        decoder.offer(buffer("c=3"));
+        decoder.finish();
+        assertEquals(Arrays.asList("a", "1", "c", "3"), fields);
+    }
+
+    static String fields(int n) {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < n; i++)
+            body.append(i == 0 ? "" : "&").append('f').append(i).append('=').append(i);
+        return body.toString();
+    }
+
+    @Test
+    public void testMaxFields() throws Exception {
+        List<String> names = new ArrayList<>();
+        FormUrlencodedDecoder.decode(buffer(fields(FormUrlencodedDecoder.DEFAULT_MAX_FIELDS)), field -> names.add(field.name()));
+        assertEquals(FormUrlencodedDecoder.DEFAULT_MAX_FIELDS, names.size());
+        try {
+            FormUrlencodedDecoder.decode(buffer(fields(FormUrlencodedDecoder.DEFAULT_MAX_FIELDS + 1)), field -> {
+            });
+            fail();
+        } catch (TooLongFrameException e) {
+        }
+
+        // Empty fields don't count, and the fields before the one too many have been handled
+        names.clear();
+        FormUrlencodedDecoder.decode(buffer("&a=1&&b&&c=&"), 3, field -> names.add(field.name()));
+        assertEquals(Arrays.asList("a", "b", "c"), names);
+        names.clear();
+        try {
+            FormUrlencodedDecoder.decode(buffer("a=1&b&c=&d"), 3, field -> names.add(field.name()));
+            fail();
+        } catch (TooLongFrameException e) {
+        }
+        assertEquals(Arrays.asList("a", "b", "c"), names);
+    }
+
+    @Test
+    public void testMaxFieldsAcrossBlocks() throws Exception {
+        List<String> fields = new ArrayList<>();
+        FormUrlencodedDecoder decoder = new FormUrlencodedDecoder(field -> fields.add(field.name()),
+                FormUrlencodedDecoder.DEFAULT_MAX_FIELD_LENGTH, 3);
+        // Counted per body, so the instance can be reused after finish() or reset()
+        for (int i = 0; i < 2; i++) {
+            decoder.offer(block("a=1&&b"));
+            decoder.offer(block("b=2&c"));
+            decoder.finish();
+        }
+        assertEquals(Arrays.asList("a", "bb", "c", "a", "bb", "c"), fields);
+
+        decoder.offer(block("a&b&c&"));
+        decoder.reset();
+        decoder.offer(block("a&b&c"));
+        // The last field is only complete when the body is finished
+        try {
+            decoder.offer(block("&d"));
+            decoder.finish();
+            fail();
+        } catch (TooLongFrameException e) {
+        }
+        try {
+            decoder.offer(block("a&b&c&d&"));
+            fail();
+        } catch (TooLongFrameException e) {
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver.codec;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Yongshun Ye
+ */
+public class MediaTypeTest {
+    @Test
+    public void testMatches() {
+        String form = MediaType.APPLICATION_X_WWW_FORM_URLENCODED;
+        assertTrue(MediaType.matches("application/x-www-form-urlencoded", form));
+        assertTrue(MediaType.matches("application/x-www-form-urlencoded; charset=UTF-8", form));
+        assertTrue(MediaType.matches(" Application/X-WWW-Form-Urlencoded ;charset=UTF-8", form));
+        assertFalse(MediaType.matches(null, form));
+        assertFalse(MediaType.matches("", form));
+        assertFalse(MediaType.matches("application/x-www-form-urlencoded-x", form));
+        assertFalse(MediaType.matches("application/x-www-form", form));
+        assertFalse(MediaType.matches("multipart/form-data; boundary=x", form));
+    }
+}
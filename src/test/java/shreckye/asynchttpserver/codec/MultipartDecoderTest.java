@@ -0,0 +1,318 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Yongshun Ye
+ */
+public class MultipartDecoderTest {
+    static final String BOUNDARY = "----Boundary7MA4YWxkTrZu0gW";
+    static final String BODY = "preamble\r\n--" + BOUNDARY + "\r\n" +
+            "Content-Disposition: form-data; name=\"field\"\r\n" +
+            "\r\n" +
+            "value\r\n--not the boundary\r\n" +
+            "--" + BOUNDARY + "  \r\n" +
+            "Content-Disposition: form-data; name=\"file\"; filename=\"a.txt\"\r\n" +
+            "Content-Type: text/plain\r\n" +
+            "\r\n" +
+            "line 1\r\nline 2\r\r\n\r\n-\r\n-" + BOUNDARY + "x\r\n" +
+            "\r\n--" + BOUNDARY + "\r\n" +
+            "Content-Disposition: form-data; name=\"empty\"\r\n" +
+            "\r\n" +
+            "\r\n--" + BOUNDARY + "--\r\n" +
+            "epilogue\r\n--" + BOUNDARY + "\r\n";
+    static final List<String> EVENTS = Arrays.asList(
+            "start field null", "content value\r\n--not the boundary", "end",
+            "start file a.txt", "content line 1\r\nline 2\r\r\n\r\n-\r\n-" + BOUNDARY + "x\r\n", "end",
+            "start empty null", "end");
+
+    /**
+     * Records the parts decoded, joining the content blocks of each part.
+     */
+    static class RecordingHandler implements MultipartDecoder.PartHandler {
+        final List<String> events = new ArrayList<>();
+        StringBuilder content;
+
+        @Override
+        public void onPartStart(MultipartPart part) {
+            events.add("start " + part.name() + ' ' + part.filename());
+            content = null;
+        }
+
+        @Override
+        public void onPartContent(ByteBuf content) {
+            assertTrue(content.isReadable());
+            if (this.content == null)
+                this.content = new StringBuilder();
+            this.content.append(content.toString(CharsetUtil.ISO_8859_1));
+        }
+
+        @Override
+        public void onPartEnd() {
+            if (content != null)
+                events.add("content " + content);
+            events.add("end");
+        }
+    }
+
+    /**
+     * Offers the blocks of a body and releases them right away as a handler of the content blocks would,
+     * and returns them to check that the decoder releases its slices of them too.
+     */
+    static List<ByteBuf> offer(MultipartDecoder decoder, String body, int... splits) throws Exception {
+        List<ByteBuf> blocks = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i <= splits.length; i++) {
+            int end = i < splits.length ? splits[i] : body.length();
+            ByteBuf block = Unpooled.copiedBuffer(body.substring(start, end), CharsetUtil.ISO_8859_1);
+            blocks.add(block);
+            try {
+                decoder.offer(block);
+            } finally {
+                block.release();
+            }
+            start = end;
+        }
+        return blocks;
+    }
+
+    static void assertReleased(List<ByteBuf> blocks) {
+        for (ByteBuf block : blocks)
+            assertEquals(0, block.refCnt());
+    }
+
+    @Test
+    public void testBoundary() {
+        assertEquals("abc", MultipartDecoder.boundary("multipart/form-data; boundary=abc"));
+        assertEquals("a b", MultipartDecoder.boundary("Multipart/Form-Data;charset=UTF-8; Boundary=\"a b\""));
+        assertNull(MultipartDecoder.boundary("multipart/form-data"));
+        assertNull(MultipartDecoder.boundary("multipart/form-data; boundary="));
+        assertNull(MultipartDecoder.boundary("multipart/form-data-x; boundary=abc"));
+        assertNull(MultipartDecoder.boundary("multipart/mixed; boundary=abc"));
+        assertNull(MultipartDecoder.boundary(null));
+    }
+
+    @Test
+    public void testWholeBody() throws Exception {
+        RecordingHandler handler = new RecordingHandler();
+        MultipartDecoder decoder = new MultipartDecoder(BOUNDARY, handler);
+        List<ByteBuf> blocks = offer(decoder, BODY);
+        decoder.finish();
+        assertEquals(EVENTS, handler.events);
+        assertReleased(blocks);
+    }
+
+    @Test
+    public void testEverySplit() throws Exception {
+        // Splits at every offset, including inside the delimiters, the line breaks and the header fields
+        for (int i = 0; i <= BODY.length(); i++) {
+            RecordingHandler handler = new RecordingHandler();
+            MultipartDecoder decoder = new MultipartDecoder(BOUNDARY, handler);
+            List<ByteBuf> blocks = offer(decoder, BODY, i);
+            decoder.finish();
+            assertEquals("split at " + i, EVENTS, handler.events);
+            assertReleased(blocks);
+        }
+    }
+
+    @Test
+    public void testEveryTwoSplits() throws Exception {
+        RecordingHandler handler = new RecordingHandler();
+        MultipartDecoder decoder = new MultipartDecoder(BOUNDARY, handler);
+        for (int i = 0; i <= BODY.length(); i += 3)
+            for (int j = i; j <= BODY.length(); j++) {
+                handler.events.clear();
+                List<ByteBuf> blocks = offer(decoder, BODY, i, j);
+                decoder.finish();
+                assertEquals("split at " + i + ", " + j, EVENTS, handler.events);
+                assertReleased(blocks);
+            }
+    }
+
+    @Test
+    public void testSingleByteBlocks() throws Exception {
+        RecordingHandler handler = new RecordingHandler();
+        MultipartDecoder decoder = new MultipartDecoder(BOUNDARY, handler);
+        List<ByteBuf> blocks = new ArrayList<>();
+        for (int i = 0; i < BODY.length(); i++) {
+            blocks.addAll(offer(decoder, BODY.substring(i, i + 1)));
+            // The undecoded bytes are copied once there are too many blocks, so only a few blocks are ever held
+            assertTrue(decoder.cumulation.numComponents() <= MultipartDecoder.MAX_RETAINED_BLOCKS);
+            assertTrue(retained(blocks) <= MultipartDecoder.MAX_RETAINED_BLOCKS);
+        }
+        decoder.finish();
+        assertEquals(EVENTS, handler.events);
+        assertReleased(blocks);
+    }
+
+    static int retained(List<ByteBuf> blocks) {
+        int retained = 0;
+        for (ByteBuf block : blocks)
+            if (block.refCnt() > 0)
+                retained++;
+        return retained;
+    }
+
+    @Test
+    public void testLongHeaderInSingleByteBlocks() throws Exception {
+        StringBuilder value = new StringBuilder();
+        while (value.length() < MultipartDecoder.DEFAULT_MAX_HEADER_SIZE - 100)
+            value.append("0123456789");
+        String body = "--b\r\nContent-Disposition: form-data; name=\"a\"\r\nX-Long: " + value + "\r\n\r\n1\r\n--b--";
+        RecordingHandler handler = new RecordingHandler();
+        MultipartDecoder decoder = new MultipartDecoder("b", handler);
+        List<ByteBuf> blocks = new ArrayList<>();
+        int maxRetainedBytes = 0;
+        for (int i = 0; i < body.length(); i++) {
+            // Direct blocks like the ones read from a connection, but unpooled so that their instances aren't recycled when checked
+            ByteBuf block = Unpooled.directBuffer(1).writeByte(body.charAt(i));
+            blocks.add(block);
+            try {
+                decoder.offer(block);
+            } finally {
+                block.release();
+            }
+            assertTrue(decoder.cumulation.numComponents() <= MultipartDecoder.MAX_RETAINED_BLOCKS);
+            assertTrue(retained(blocks) <= MultipartDecoder.MAX_RETAINED_BLOCKS);
+            maxRetainedBytes = Math.max(maxRetainedBytes, decoder.cumulation.readableBytes());
+        }
+        // The undecoded bytes of the header line copied are never more than the maximum header size
+        assertTrue(maxRetainedBytes > MultipartDecoder.MAX_RETAINED_BLOCKS);
+        assertTrue(maxRetainedBytes <= MultipartDecoder.DEFAULT_MAX_HEADER_SIZE);
+        decoder.finish();
+        assertEquals(Arrays.asList("start a null", "content 1", "end"), handler.events);
+        assertReleased(blocks);
+    }
+
+    @Test
+    public void testFirstBoundaryWithoutPreamble() throws Exception {
+        RecordingHandler handler = new RecordingHandler();
+        MultipartDecoder decoder = new MultipartDecoder("b", handler);
+        List<ByteBuf> blocks = offer(decoder, "--b\r\nContent-Disposition: form-data; name=\"a\"\r\n\r\n1\r\n--b--", 1, 3);
+        decoder.finish();
+        assertEquals(Arrays.asList("start a null", "content 1", "end"), handler.events);
+        assertReleased(blocks);
+    }
+
+    @Test
+    public void testEmptyPart() throws Exception {
+        RecordingHandler handler = new RecordingHandler();
+        MultipartDecoder decoder = new MultipartDecoder("b", handler);
+        List<ByteBuf> blocks = offer(decoder, "--b\r\nContent-Disposition: form-data; name=\"a\"\r\n\r\n\r\n--b--");
+        decoder.finish();
+        assertEquals(Arrays.asList("start a null", "end"), handler.events);
+        assertReleased(blocks);
+    }
+
+    @Test
+    public void testMissingClosingBoundary() throws Exception {
+        String body = BODY.substring(0, BODY.indexOf("--\r\nepilogue"));
+        for (String truncated : new String[]{"", "--", body.substring(0, 20), body.substring(0, body.length() - 10), body}) {
+            RecordingHandler handler = new RecordingHandler();
+            MultipartDecoder decoder = new MultipartDecoder(BOUNDARY, handler);
+            List<ByteBuf> blocks = offer(decoder, truncated, truncated.length() / 2);
+            try {
+                decoder.finish();
+                fail(truncated);
+            } catch (CorruptedFrameException e) {
+            }
+            assertReleased(blocks);
+            assertNull(decoder.cumulation);
+        }
+    }
+
+    @Test
+    public void testInvalidBoundarySuffix() throws Exception {
+        MultipartDecoder decoder = new MultipartDecoder("b", new RecordingHandler());
+        List<ByteBuf> blocks = new ArrayList<>();
+        try {
+            blocks.addAll(offer(decoder, "--bx\r\n"));
+            fail();
+        } catch (CorruptedFrameException e) {
+            decoder.reset();
+        }
+        assertReleased(blocks);
+    }
+
+    @Test
+    public void testInvalidHeader() throws Exception {
+        MultipartDecoder decoder = new MultipartDecoder("b", new RecordingHandler());
+        try {
+            offer(decoder, "--b\r\nno colon\r\n\r\n");
+            fail();
+        } catch (CorruptedFrameException e) {
+            decoder.reset();
+        }
+        assertNull(decoder.cumulation);
+    }
+
+    @Test
+    public void testOversizedHeader() throws Exception {
+        String header = "--b\r\nContent-Disposition: form-data; name=\"a\"\r\nX-Long: " + new String(new char[100]).replace('\0', 'x') + "\r\n\r\n";
+        int headerSize = header.length() - "--b\r\n".length();
+
+        RecordingHandler handler = new RecordingHandler();
+        MultipartDecoder decoder = new MultipartDecoder("b", handler, headerSize);
+        List<ByteBuf> blocks = offer(decoder, header + "1\r\n--b--", 50, 100);
+        decoder.finish();
+        assertEquals(Arrays.asList("start a null", "content 1", "end"), handler.events);
+        assertReleased(blocks);
+
+        for (int i = 0; i <= header.length(); i++) {
+            decoder = new MultipartDecoder("b", new RecordingHandler(), headerSize - 1);
+            List<ByteBuf> oversizedBlocks = new ArrayList<>();
+            try {
+                // Counted across blocks, and even before the line is complete
+                oversizedBlocks.addAll(offer(decoder, header.substring(0, i)));
+                oversizedBlocks.addAll(offer(decoder, header.substring(i)));
+                fail("split at " + i);
+            } catch (TooLongFrameException e) {
+                decoder.reset();
+            }
+            assertReleased(oversizedBlocks);
+        }
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        RecordingHandler handler = new RecordingHandler();
+        MultipartDecoder decoder = new MultipartDecoder(BOUNDARY, handler);
+        List<ByteBuf> blocks = offer(decoder, BODY.substring(0, BODY.indexOf("line 2")));
+        assertNotNull(decoder.cumulation);
+        decoder.reset();
+        assertReleased(blocks);
+
+        handler.events.clear();
+        blocks = offer(decoder, BODY);
+        decoder.finish();
+        assertEquals(EVENTS, handler.events);
+        assertReleased(blocks);
+    }
+}
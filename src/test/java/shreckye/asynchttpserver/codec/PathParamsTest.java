@@ -0,0 +1,163 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver.codec;
+
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import org.junit.Test;
+
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Yongshun Ye
+ */
+public class PathParamsTest {
+    /**
+     * Captures each value as a segment of a URI, like a path template does.
+     */
+    static PathParams pathParams(String... values) {
+        StringBuilder uri = new StringBuilder("/p");
+        String[] names = new String[values.length];
+        int[] offsets = new int[2 * values.length];
+        for (int i = 0; i < values.length; i++) {
+            names[i] = "p" + i;
+            uri.append('/');
+            if (values[i] == null)
+                offsets[2 * i] = offsets[2 * i + 1] = -1;
+            else {
+                offsets[2 * i] = uri.length();
+                uri.append(values[i]);
+                offsets[2 * i + 1] = uri.length();
+            }
+        }
+        uri.append("?q=1");
+        return new PathParams(uri.toString(), names, offsets);
+    }
+
+    static void assertIntInvalid(String value) {
+        try {
+            pathParams(value).getInt(0);
+            fail(value);
+        } catch (NumberFormatException e) {
+        }
+    }
+
+    static void assertLongInvalid(String value) {
+        try {
+            pathParams(value).getLong(0);
+            fail(value);
+        } catch (NumberFormatException e) {
+        }
+    }
+
+    @Test
+    public void testGetInt() {
+        String[] values = {"0", "7", "42", "-42", "+42", "007", "-0", "2147483647", "-2147483648", "+2147483647"};
+        for (String value : values)
+            assertEquals(value, Integer.parseInt(value), pathParams(value).getInt(0));
+    }
+
+    @Test
+    public void testGetLong() {
+        String[] values = {"0", "-1", "+1", "2147483648", "-2147483649", "9223372036854775807", "-9223372036854775808", "00009223372036854775807"};
+        for (String value : values)
+            assertEquals(value, Long.parseLong(value), pathParams(value).getLong(0));
+    }
+
+    @Test
+    public void testIntOverflow() {
+        for (String value : new String[]{"2147483648", "-2147483649", "9999999999", "99999999999999999999"})
+            assertIntInvalid(value);
+    }
+
+    @Test
+    public void testLongOverflow() {
+        for (String value : new String[]{"9223372036854775808", "-9223372036854775809", "18446744073709551616", "99999999999999999999"})
+            assertLongInvalid(value);
+    }
+
+    @Test
+    public void testInvalid() {
+        for (String value : new String[]{"", "-", "+", "--1", "+-1", "1-", " 1", "1 ", "1.0", "0x10", "1e3", "a", "12a",
+                "\u0661", "%31", "%2D1"}) {
+            assertIntInvalid(value);
+            assertLongInvalid(value);
+        }
+    }
+
+    @Test
+    public void testNotCaptured() {
+        PathParams pathParams = pathParams("1", null);
+        assertEquals(1, pathParams.getInt("p0"));
+        assertFalse(pathParams.contains("p1"));
+        assertNull(pathParams.get("p1"));
+        try {
+            pathParams.getInt("p1");
+            fail();
+        } catch (NoSuchElementException e) {
+        }
+        try {
+            pathParams.getLong("p2");
+            fail();
+        } catch (NoSuchElementException e) {
+        }
+    }
+
+    @Test
+    public void testValuesNotDecoded() {
+        PathParams pathParams = pathParams("a%20b", "12", "-3");
+        assertEquals("a%20b", pathParams.get("p0"));
+        assertEquals(12, pathParams.getInt("p1"));
+        assertEquals(-3L, pathParams.getLong(2));
+        assertEquals("PathParams{p0='a%20b', p1='12', p2='-3'}", pathParams.toString());
+    }
+
+    @Test
+    public void testRequestDefaults() {
+        RequestWithoutBody request = new DefaultInboundRequestWithoutBody("GET", "/p/12/-3000000000/x",
+                new DefaultHttpHeaders(), new PathParams("/p/12/-3000000000/x", new String[]{"id", "offset", "name"}, new int[]{3, 5, 6, 17, 18, 19}));
+        assertEquals("12", request.pathParam("id"));
+        assertEquals(12, request.pathParamInt("id"));
+        assertEquals(-3000000000L, request.pathParamLong("offset"));
+        assertNull(request.pathParam("missing"));
+        try {
+            request.pathParamInt("offset");
+            fail();
+        } catch (NumberFormatException e) {
+        }
+        try {
+            request.pathParamLong("name");
+            fail();
+        } catch (NumberFormatException e) {
+        }
+        try {
+            request.pathParamInt("missing");
+            fail();
+        } catch (NoSuchElementException e) {
+        }
+
+        RequestWithoutBody withoutParams = new DefaultInboundRequestWithoutBody("GET", "/", new DefaultHttpHeaders());
+        assertEquals(0, withoutParams.pathParams().size());
+        assertNull(withoutParams.pathParam("id"));
+        try {
+            withoutParams.pathParamLong("id");
+            fail();
+        } catch (NoSuchElementException e) {
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package shreckye.asynchttpserver.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.util.AsciiString;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Yongshun Ye
+ */
+public class ResponseEncodingTest {
+    static final byte[] CONTENT_LENGTH_NAME = ResponseEncoding.encodeHeaderName(ResponseHeaderNames.CONTENT_LENGTH);
+
+    static String string(ByteBuf buf) {
+        try {
+            return buf.toString(CharsetUtil.ISO_8859_1);
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Test
+    public void testStatusLine() {
+        for (int code = 100; code < 600; code++) {
+            HttpResponseStatus status = HttpResponseStatus.valueOf(code);
+            ByteBuf buf = Unpooled.buffer(0);
+            ResponseEncoding.encodeStatusLine(status, buf);
+            assertEquals("HTTP/1.1 " + code + ' ' + status.reasonPhrase() + "\r\n", string(buf));
+        }
+
+        // Not the cached instances
+        HttpResponseStatus[] statuses = {new HttpResponseStatus(200, "Fine"), new HttpResponseStatus(404, "Gone Fishing"),
+                new HttpResponseStatus(600, "Beyond"), new HttpResponseStatus(99, "Below")};
+        for (HttpResponseStatus status : statuses) {
+            ByteBuf buf = Unpooled.buffer(0);
+            ResponseEncoding.encodeStatusLine(status, buf);
+            assertEquals("HTTP/1.1 " + status.code() + ' ' + status.reasonPhrase() + "\r\n", string(buf));
+        }
+    }
+
+    @Test
+    public void testDecimalHeader() {
+        long[] values = {0, 1, 9, 10, 99, 100, 1024, Integer.MAX_VALUE, 1L << 32, 999999999999999999L, Long.MAX_VALUE};
+        for (long value : values) {
+            // Starts at a non-zero writer index of a buffer that has to grow
+            ByteBuf buf = Unpooled.buffer(1).writeByte('x');
+            ResponseEncoding.encodeHeader(CONTENT_LENGTH_NAME, value, buf);
+            assertEquals("xcontent-length: " + value + "\r\n", string(buf));
+        }
+    }
+
+    @Test
+    public void testHeaders() {
+        ByteBuf buf = Unpooled.buffer(0);
+        ResponseEncoding.encodeHeader("X-String", "a", buf);
+        ResponseEncoding.encodeHeader(AsciiString.of("x-ascii"), AsciiString.of("b"), buf);
+        ResponseEncoding.encodeHeader(ResponseEncoding.encodeHeaderName(AsciiString.of("x-encoded")), "c", buf);
+        ResponseEncoding.encodeHeaders(new DefaultHttpHeaders().add("x-1", 1).add("X-2", "two").add("x-1", "one"), buf);
+        assertEquals("X-String: a\r\nx-ascii: b\r\nx-encoded: c\r\nx-1: 1\r\nX-2: two\r\nx-1: one\r\n", string(buf));
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package shreckye.asynchttpserver.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Yongshun Ye
+ */
+public class StaticFullResponseTest {
+    static final String HEADERS = "content-length: 5\r\ncontent-type: text/plain\r\n\r\n";
+
+    @Test
+    public void testEncoded() {
+        ByteBuf body = Unpooled.directBuffer().writeBytes("hello".getBytes(CharsetUtil.US_ASCII));
+        StaticFullResponse response = new StaticFullResponse(new DefaultOutboundFullResponse(HttpResponseStatus.OK, "text/plain", body));
+        assertEquals(0, body.refCnt());
+        assertTrue(response.encoded.isDirect());
+        assertEquals(HttpResponseStatus.OK, response.status());
+        assertEquals(Long.valueOf(5), response.contentLength());
+        assertEquals("text/plain", response.contentType());
+
+        ByteBuf headers = Unpooled.buffer();
+        response.encodeHeaders(headers);
+        assertEquals(HEADERS.substring(0, HEADERS.length() - 2), headers.toString(CharsetUtil.US_ASCII));
+        headers.release();
+    }
+
+    @Test
+    public void testRepeatedDuplicates() {
+        StaticFullResponse response = new StaticFullResponse(HttpResponseStatus.OK, "text/plain", "hello".getBytes(CharsetUtil.US_ASCII));
+        int refCnt = response.encoded.refCnt();
+        for (int i = 0; i < 1000; i++) {
+            ByteBuf withBody = response.retainedEncodedHeadersAndBody(true);
+            ByteBuf withoutBody = response.retainedEncodedHeadersAndBody(false);
+            ByteBuf bodyContent = response.bodyContent();
+            assertEquals(HEADERS + "hello", withBody.toString(CharsetUtil.US_ASCII));
+            assertEquals(HEADERS, withoutBody.toString(CharsetUtil.US_ASCII));
+            assertEquals("hello", bodyContent.toString(CharsetUtil.US_ASCII));
+
+            // Reading and releasing a duplicate, as a write does, affects neither the others nor the shared buffer
+            withBody.skipBytes(withBody.readableBytes());
+            withBody.release();
+            withoutBody.release();
+            bodyContent.release();
+            assertEquals(refCnt, response.encoded.refCnt());
+            assertEquals(0, response.encoded.readerIndex());
+        }
+    }
+
+    @Test
+    public void testHeadersCopied() {
+        StaticFullResponse response = StaticFullResponse.newJsonInstance(HttpResponseStatus.OK, "{}");
+        response.headers().set("x-changed", "1");
+        assertFalse(response.headers().contains("x-changed"));
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package shreckye.asynchttpserver.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Yongshun Ye
+ */
+public class Utf8BodyWriterTest {
+    static final UnpooledByteBufAllocator ALLOC = new UnpooledByteBufAllocator(false);
+
+    static final String[] STRINGS = {
+            "",
+            "ascii",
+            "\u00e9\u00df\u07ff", // 2 bytes each
+            "\u0800\u4e2d\u6587\uffff", // 3 bytes each
+            "\ud83d\ude00\udbff\udfff\ud800\udc00", // 4 bytes each
+            "a\u00e9\u4e2d\ud83d\ude00z",
+            "\ud83d", // a lone high surrogate
+            "a\ud83d", // a lone high surrogate at the end
+            "\ude00a", // a lone low surrogate at the start
+            "\ude00\ud83d", // a pair in the wrong order
+            "\ud83d\ud83d\ude00", // a high surrogate before a pair
+            "\ud83d\ude00\ude00", // a low surrogate after a pair
+            "\ud83da\ude00", // surrogates separated
+    };
+
+    static byte[] bytes(ByteBuf buf) {
+        try {
+            return ByteBufUtil.getBytes(buf);
+        } finally {
+            buf.release();
+        }
+    }
+
+    static byte[] expected(String string) {
+        return string.getBytes(CharsetUtil.UTF_8);
+    }
+
+    static byte[] appendAt(String string, int... splits) {
+        Utf8BodyWriter writer = new Utf8BodyWriter(ALLOC);
+        int start = 0;
+        for (int split : splits) {
+            writer.append(string, start, split);
+            start = split;
+        }
+        writer.append(string, start, string.length());
+        return bytes(writer.content());
+    }
+
+    @Test
+    public void testWhole() {
+        for (String string : STRINGS) {
+            assertArrayEquals(string, expected(string), bytes(new Utf8BodyWriter(ALLOC).append(string).content()));
+            assertArrayEquals(string, expected(string), bytes(new Utf8BodyWriter(ALLOC).append(new StringBuilder(string)).content()));
+        }
+    }
+
+    @Test
+    public void testSplitOnce() {
+        for (String string : STRINGS)
+            for (int split = 0; split <= string.length(); split++)
+                assertArrayEquals(string + " at " + split, expected(string), appendAt(string, split));
+    }
+
+    @Test
+    public void testSplitTwice() {
+        for (String string : STRINGS)
+            for (int split1 = 0; split1 <= string.length(); split1++)
+                for (int split2 = split1; split2 <= string.length(); split2++)
+                    assertArrayEquals(string + " at " + split1 + " and " + split2, expected(string), appendAt(string, split1, split2));
+    }
+
+    @Test
+    public void testWriterMethods() {
+        StringBuilder all = new StringBuilder();
+        for (String string : STRINGS)
+            all.append(string);
+        String string = all.toString();
+
+        Utf8BodyWriter writer = new Utf8BodyWriter(ALLOC);
+        for (int i = 0; i < string.length(); i++)
+            writer.write(string.charAt(i));
+        assertArrayEquals(expected(string), bytes(writer.content()));
+
+        writer = new Utf8BodyWriter(ALLOC);
+        for (int i = 0; i < string.length(); i++)
+            writer.append(string.charAt(i));
+        assertArrayEquals(expected(string), bytes(writer.content()));
+
+        writer = new Utf8BodyWriter(ALLOC);
+        char[] chars = string.toCharArray();
+        for (int i = 0; i < chars.length; i += 3)
+            writer.write(chars, i, Math.min(3, chars.length - i));
+        assertArrayEquals(expected(string), bytes(writer.content()));
+
+        writer = new Utf8BodyWriter(ALLOC);
+        for (int i = 0; i < string.length(); i += 2)
+            writer.write(string, i, Math.min(2, string.length() - i));
+        assertArrayEquals(expected(string), bytes(writer.content()));
+    }
+
+    @Test
+    public void testLoneHighSurrogateAtEnd() {
+        Utf8BodyWriter writer = new Utf8BodyWriter(ALLOC);
+        writer.append("a\ud83d");
+        // Pending until the text is completed or the next character comes
+        assertEquals(1, writer.buf.readableBytes());
+        writer.close();
+        assertArrayEquals(expected("a\ud83d"), bytes(writer.content()));
+
+        writer = new Utf8BodyWriter(ALLOC);
+        writer.append("a\ud83d").append("b");
+        assertArrayEquals(expected("a\ud83db"), bytes(writer.content()));
+    }
+
+    @Test
+    public void testRandom() {
+        Random random = new Random(42);
+        char[] samples = {'a', '\u007f', '\u0080', '\u00e9', '\u07ff', '\u0800', '\u4e2d', '\uffff', '\ud800', '\ud83d', '\udbff',
+                '\udc00', '\ude00', '\udfff'};
+        for (int round = 0; round < 1000; round++) {
+            char[] chars = new char[random.nextInt(32)];
+            for (int i = 0; i < chars.length; i++)
+                chars[i] = samples[random.nextInt(samples.length)];
+            String string = new String(chars);
+
+            Utf8BodyWriter writer = new Utf8BodyWriter(ALLOC, 0);
+            for (int start = 0; start < string.length(); ) {
+                int end = start + random.nextInt(string.length() - start + 1);
+                writer.append(string, start, end);
+                start = end;
+            }
+            assertArrayEquals(string, expected(string), bytes(writer.content()));
+            assertEquals(string, expected(string).length, Utf8BodyWriter.utf8Bytes(string, 0, string.length()));
+        }
+    }
+
+    @Test
+    public void testUtf8Bytes() {
+        for (String string : STRINGS) {
+            assertEquals(string, expected(string).length, Utf8BodyWriter.utf8Bytes(string, 0, string.length()));
+            for (int start = 0; start <= string.length(); start++)
+                for (int end = start; end <= string.length(); end++) {
+                    String range = string.substring(start, end);
+                    assertEquals(range, expected(range).length, Utf8BodyWriter.utf8Bytes(string, start, end));
+                }
+        }
+    }
+
+    @Test
+    public void testExactlySized() {
+        for (String string : STRINGS) {
+            // Reserved by utf8Bytes, which the writer never expands
+            ByteBuf content = new DefaultOutboundFullResponse(HttpResponseStatus.OK, MediaType.TEXT_HTML_UTF8, string, ALLOC).bodyContent();
+            assertEquals(string, expected(string).length, content.capacity());
+            assertArrayEquals(string, expected(string), bytes(content));
+        }
+
+        // A buffer with exactly enough room is filled without being expanded, even though the maximum length wouldn't fit
+        String string = "a\u00e9\u4e2d\ud83d\ude00";
+        Utf8BodyWriter writer = new Utf8BodyWriter(ALLOC, 10);
+        writer.append(string);
+        assertEquals(10, writer.buf.capacity());
+        assertEquals(0, writer.buf.writableBytes());
+        assertArrayEquals(expected(string), bytes(writer.content()));
+    }
+}
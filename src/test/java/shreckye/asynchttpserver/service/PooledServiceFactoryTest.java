@@ -0,0 +1,224 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package shreckye.asynchttpserver.service;
+
+import io.netty.channel.DefaultEventLoop;
+import io.netty.channel.EventLoop;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Yongshun Ye
+ */
+public class PooledServiceFactoryTest {
+    static class CountingService implements RecyclableService {
+        final AtomicInteger inits = new AtomicInteger(), resets = new AtomicInteger(), releases = new AtomicInteger();
+        volatile boolean failReset = false;
+
+        @Override
+        public void init() {
+            inits.incrementAndGet();
+        }
+
+        @Override
+        public void reset() {
+            resets.incrementAndGet();
+            if (failReset)
+                throw new IllegalStateException();
+        }
+
+        @Override
+        public void release() throws IOException {
+            releases.incrementAndGet();
+            throw new IOException("ignored by the factory");
+        }
+    }
+
+    final AtomicInteger created = new AtomicInteger();
+    PooledServiceFactory factory;
+    EventLoop eventLoop1, eventLoop2;
+
+    @Before
+    public void setUp() {
+        factory = new PooledServiceFactory(() -> {
+            created.incrementAndGet();
+            return new CountingService();
+        }, 2);
+        eventLoop1 = new DefaultEventLoop();
+        eventLoop2 = new DefaultEventLoop();
+    }
+
+    @After
+    public void tearDown() {
+        eventLoop1.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        eventLoop2.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    static <T> T on(EventLoop eventLoop, Callable<T> task) throws Exception {
+        return eventLoop.submit(task).get(10, TimeUnit.SECONDS);
+    }
+
+    CountingService create() {
+        return (CountingService) factory.createService();
+    }
+
+    @Test
+    public void testReusedOnTheSameEventLoop() throws Exception {
+        CountingService service = on(eventLoop1, () -> {
+            CountingService first = create();
+            factory.recycleService(first, false);
+            assertSame(first, create());
+            return first;
+        });
+        assertEquals(1, created.get());
+        assertEquals(1, service.inits.get());
+        assertEquals(1, service.resets.get());
+        assertEquals(0, service.releases.get());
+    }
+
+    @Test
+    public void testFreeListsPerEventLoop() throws Exception {
+        CountingService service = on(eventLoop1, () -> {
+            CountingService first = create();
+            factory.recycleService(first, false);
+            return first;
+        });
+        // Another event loop doesn't take the free service of the first one
+        CountingService other = on(eventLoop2, this::create);
+        assertNotSame(service, other);
+        assertEquals(2, created.get());
+        assertSame(service, on(eventLoop1, this::create));
+    }
+
+    @Test
+    public void testFailedServiceReleased() throws Exception {
+        on(eventLoop1, () -> {
+            CountingService failed = create();
+            factory.recycleService(failed, true);
+            assertEquals(1, failed.releases.get());
+            assertEquals(0, failed.resets.get());
+            assertNotSame(failed, create());
+
+            CountingService failedReset = create();
+            failedReset.failReset = true;
+            factory.recycleService(failedReset, false);
+            assertEquals(1, failedReset.releases.get());
+            assertNotSame(failedReset, create());
+            return null;
+        });
+        assertEquals(4, created.get());
+    }
+
+    @Test
+    public void testPoolCap() throws Exception {
+        on(eventLoop1, () -> {
+            CountingService service1 = create(), service2 = create(), service3 = create();
+            factory.recycleService(service1, false);
+            factory.recycleService(service2, false);
+            factory.recycleService(service3, false);
+            // The free list is full at 2
+            assertEquals(0, service1.releases.get());
+            assertEquals(0, service2.releases.get());
+            assertEquals(1, service3.releases.get());
+
+            // Taken last in, first out
+            assertSame(service2, create());
+            assertSame(service1, create());
+            return null;
+        });
+        assertEquals(3, created.get());
+        on(eventLoop1, this::create);
+        assertEquals(4, created.get());
+    }
+
+    @Test
+    public void testReleasedWhenEventLoopTerminates() throws Exception {
+        CountingService service = on(eventLoop1, () -> {
+            CountingService free = create();
+            factory.recycleService(free, false);
+            return free;
+        });
+        assertEquals(0, service.releases.get());
+        eventLoop1.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        // The thread locals are removed when the thread exits, which is after the termination
+        for (int i = 0; i < 1000 && service.releases.get() == 0; i++)
+            Thread.sleep(10);
+        assertEquals(1, service.releases.get());
+    }
+
+    @Test
+    public void testNonEventLoopThreads() throws Exception {
+        // A plain thread has its own free list too
+        CountingService service = create();
+        factory.recycleService(service, false);
+        assertSame(service, create());
+        factory.recycleService(service, false);
+
+        CountingService[] other = new CountingService[1];
+        Thread thread = new Thread(() -> {
+            other[0] = create();
+            factory.recycleService(other[0], false);
+        });
+        thread.start();
+        thread.join();
+        assertNotSame(service, other[0]);
+        assertSame(service, create());
+        assertNotSame(service, on(eventLoop1, this::create));
+        assertEquals(3, created.get());
+    }
+
+    @Test
+    public void testInitFailure() {
+        PooledServiceFactory failingFactory = new PooledServiceFactory(() -> new CountingService() {
+            @Override
+            public void init() {
+                throw new UncheckedIOException(new IOException("init"));
+            }
+        }, 2);
+        try {
+            failingFactory.createService();
+            fail();
+        } catch (UncheckedIOException e) {
+        }
+
+        PooledServiceFactory ioFailingFactory = new PooledServiceFactory(() -> new Service() {
+            @Override
+            public void init() throws IOException {
+                throw new IOException("init");
+            }
+
+            @Override
+            public void release() {
+            }
+        }, 2);
+        try {
+            ioFailingFactory.createService();
+            fail();
+        } catch (UncheckedIOException e) {
+            assertEquals("init", e.getCause().getMessage());
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package shreckye.asynchttpserver.service;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+import shreckye.asynchttpserver.ConnectionContext;
+import shreckye.asynchttpserver.ServiceConnectionHandler;
+import shreckye.asynchttpserver.codec.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Yongshun Ye
+ */
+public class StreamingFormUrlencodedServiceTest {
+    static class FormService extends StreamingFormUrlencodedService implements NoResourcesService {
+        final List<String> names = new ArrayList<>();
+
+        FormService(int maxFieldLength, int maxFields) {
+            super(maxFieldLength, maxFields);
+        }
+
+        @Override
+        public void onServeFormField(FormField field) {
+            names.add(field.name());
+        }
+
+        @Override
+        public FullResponse onServeFormEnd(RequestWithoutBody requestWithoutBody) {
+            return new DefaultOutboundFullResponse(HttpResponseStatus.OK);
+        }
+    }
+
+    static class QuietConnectionHandler extends ServiceConnectionHandler {
+        @Override
+        public void onConnected(ConnectionContext connectionContext) {
+        }
+
+        @Override
+        public void onDisconnected(ConnectionContext connectionContext) {
+        }
+
+        @Override
+        public void onServiceCreated(ConnectionContext connectionContext, RequestWithoutBody requestWithoutBody, Service service) {
+        }
+
+        @Override
+        public void onConnectionThrowable(ConnectionContext connectionContext, Throwable t) {
+        }
+
+        @Override
+        public void onServiceThrowable(ConnectionContext connectionContext, Service service, Throwable t) {
+        }
+    }
+
+    /**
+     * Posts a form in blocks and returns the status of the response sent back.
+     */
+    static HttpResponseStatus post(StreamingFormUrlencodedService service, String... blocks) throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+        ConnectionContext connectionContext = new ConnectionContext(new QuietConnectionHandler(), channel.pipeline().firstContext());
+        DefaultHttpHeaders headers = new DefaultHttpHeaders();
+        headers.set(RequestHeaderNames.CONTENT_TYPE, MediaType.APPLICATION_X_WWW_FORM_URLENCODED);
+        service.onServeRequestWithoutBody(new DefaultInboundRequestWithoutBody(Method.POST, "/", headers), connectionContext);
+        for (int i = 0; i < blocks.length - 1; i++)
+            service.onServeContentBlock(new DefaultContentBlock(Unpooled.copiedBuffer(blocks[i], CharsetUtil.UTF_8)), connectionContext);
+        service.onServeLastContentBlock(new DefaultLastContentBlock(Unpooled.copiedBuffer(blocks[blocks.length - 1], CharsetUtil.UTF_8)),
+                connectionContext);
+
+        FullResponse response = channel.readOutbound();
+        assertNull(channel.readOutbound());
+        channel.finishAndReleaseAll();
+        return response == null ? null : response.status();
+    }
+
+    @Test
+    public void testMaxFields() throws Exception {
+        FormService service = new FormService(FormUrlencodedDecoder.DEFAULT_MAX_FIELD_LENGTH, 3);
+        assertEquals(HttpResponseStatus.OK, post(service, "a=1&", "b=2&&c", "=3"));
+        assertEquals(Arrays.asList("a", "b", "c"), service.names);
+
+        // Counted again for the next request
+        service.names.clear();
+        assertEquals(HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE, post(service, "a=1&b=2&", "c=3&d=4", ""));
+        assertEquals(Arrays.asList("a", "b", "c"), service.names);
+        service.names.clear();
+        assertEquals(HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE, post(service, "a&b&c", "&d"));
+        assertEquals(HttpResponseStatus.OK, post(service, "a&b&c"));
+    }
+
+    @Test
+    public void testMaxFieldLength() throws Exception {
+        FormService service = new FormService(4, 3);
+        assertEquals(HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE, post(service, "a=1&b=", "2345"));
+        assertEquals(HttpResponseStatus.BAD_REQUEST, post(service, "%z=1"));
+        assertEquals(HttpResponseStatus.OK, post(service, "a=12&b=", "34"));
+    }
+}
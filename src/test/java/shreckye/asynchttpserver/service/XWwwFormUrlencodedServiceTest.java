@@ -0,0 +1,86 @@
+/*
+ *    Copyright 2018 Yongshun Ye
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package shreckye.asynchttpserver.service;
+
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+import shreckye.asynchttpserver.codec.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Yongshun Ye
+ */
+public class XWwwFormUrlencodedServiceTest {
+    static class FormService extends XWwwFormUrlencodedService implements NoResourcesService {
+        Map<String, List<String>> formParams;
+
+        FormService(int maxFields) {
+            super(maxFields);
+        }
+
+        @Override
+        public FullResponse onServeFormParams(Map<String, List<String>> formParams) {
+            this.formParams = formParams;
+            return new DefaultOutboundFullResponse(HttpResponseStatus.OK);
+        }
+    }
+
+    static FullResponse post(XWwwFormUrlencodedService service, String body) throws Exception {
+        DefaultHttpHeaders headers = new DefaultHttpHeaders();
+        headers.set(RequestHeaderNames.CONTENT_TYPE, MediaType.APPLICATION_X_WWW_FORM_URLENCODED);
+        return service.onServeFullRequest(new DefaultInboundFullRequest(Method.POST, "/", headers,
+                Unpooled.copiedBuffer(body, CharsetUtil.UTF_8)));
+    }
+
+    @Test
+    public void testMaxFields() throws Exception {
+        FormService service = new FormService(3);
+        assertEquals(HttpResponseStatus.OK, post(service, "a=1&b=2&&a=3").status());
+        assertEquals(Arrays.asList("1", "3"), service.formParams.get("a"));
+        assertEquals(Collections.singletonList("2"), service.formParams.get("b"));
+
+        service.formParams = null;
+        assertEquals(HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE, post(service, "a=1&b=2&c=3&d=4").status());
+        assertNull(service.formParams);
+    }
+
+    @Test
+    public void testDefaultMaxFields() throws Exception {
+        StringBuilder body = new StringBuilder("f=0");
+        for (int i = 1; i < FormUrlencodedDecoder.DEFAULT_MAX_FIELDS; i++)
+            body.append("&f=").append(i);
+        FormService service = new FormService(FormUrlencodedDecoder.DEFAULT_MAX_FIELDS);
+        assertEquals(HttpResponseStatus.OK, post(service, body.toString()).status());
+        assertEquals(FormUrlencodedDecoder.DEFAULT_MAX_FIELDS, service.formParams.get("f").size());
+        assertEquals(HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE, post(service, body + "&g").status());
+    }
+
+    @Test
+    public void testInvalidEscape() throws Exception {
+        assertEquals(HttpResponseStatus.BAD_REQUEST, post(new FormService(3), "a=%zz").status());
+    }
+}